@@ -0,0 +1,105 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.spi.ToolProvider;
+import java.util.stream.Stream;
+
+// Cold-start benchmark. Starts the app as a fresh JVM, again and again, on a text-mode list in
+// a temporary directory, with --startup-timing, which exits as soon as the list is shown. It
+// compares four setups: plain, with --fast-start (binary startup snapshot), with a class data
+// sharing archive, and with both. It reports the median time until the list was loaded and
+// until the process was gone. Without a display the child times loading without the window.
+//
+// AppCDS only archives classes from jars, so the class directory is packed into one first.
+//
+//   java -cp out ColdStartBenchmark [tasks] [runs]      (default 200000 7)
+class ColdStartBenchmark {
+    public static void main(String[] args) throws Exception {
+        int taskCount = args.length > 0 ? Integer.parseInt(args[0]) : 200_000;
+        int runs = args.length > 1 ? Integer.parseInt(args[1]) : 7;
+
+        Path directory = Files.createTempDirectory("todo-coldstart");
+        try {
+            Path jar = directory.resolve("todo.jar");
+            Path classes = Paths.get(System.getProperty("java.class.path").split(java.io.File.pathSeparator)[0]);
+            ToolProvider.findFirst("jar").orElseThrow().run(System.out, System.err,
+                    "--create", "--file", jar.toString(), "-C", classes.toString(), ".");
+            Path lists = Files.createDirectory(directory.resolve("lists"));
+            writeTasks(lists.resolve("tasks.txt"), taskCount, 0);
+            writeTasks(lists.resolve("completed_tasks.txt"), taskCount / 4, taskCount);
+
+            Path archive = directory.resolve("todo.jsa");
+            // The training run records the archive and, with --fast-start, writes the snapshot
+            run(List.of("-XX:ArchiveClassesAtExit=" + archive), jar, lists, true);
+
+            System.out.printf("%,d tasks, %d runs each, median%n", taskCount + taskCount / 4, runs);
+            measure("plain", List.of(), jar, lists, false, runs);
+            measure("snapshot", List.of(), jar, lists, true, runs);
+            measure("CDS", List.of("-XX:SharedArchiveFile=" + archive), jar, lists, false, runs);
+            measure("snapshot + CDS", List.of("-XX:SharedArchiveFile=" + archive), jar, lists, true, runs);
+        } finally {
+            try (Stream<Path> files = Files.walk(directory)) {
+                files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+            }
+        }
+    }
+
+    private static void writeTasks(Path file, int count, int first) throws IOException {
+        try (BufferedWriter out = Files.newBufferedWriter(file)) {
+            for (int i = first; i < first + count; i++) {
+                out.write(i % 5 == 0 ? "(B) Recurring chore " + i % 100 + " due:2030-01-01" : "Task number " + i);
+                out.newLine();
+            }
+        }
+    }
+
+    private static void measure(String name, List<String> jvmOptions, Path jar, Path lists, boolean fastStart, int runs)
+            throws Exception {
+        long[] loaded = new long[runs];
+        long[] exited = new long[runs];
+        for (int i = 0; i < runs; i++) {
+            long[] times = run(jvmOptions, jar, lists, fastStart);
+            loaded[i] = times[0];
+            exited[i] = times[1];
+        }
+        Arrays.sort(loaded);
+        Arrays.sort(exited);
+        System.out.printf("%-16s loaded %5d ms   exited %5d ms%n", name, loaded[runs / 2], exited[runs / 2]);
+    }
+
+    // The child's own "loaded" time and the wall time until it exited
+    private static long[] run(List<String> jvmOptions, Path jar, Path lists, boolean fastStart) throws Exception {
+        List<String> command = new ArrayList<>();
+        command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+        command.addAll(jvmOptions);
+        command.addAll(List.of("-cp", jar.toString(), "ToDoListApp", "--lists=" + lists, "--startup-timing"));
+        if (fastStart) {
+            command.add("--fast-start");
+        }
+        long start = System.nanoTime();
+        Process process = new ProcessBuilder(command).redirectErrorStream(true).start();
+        long loaded = -1;
+        try (BufferedReader out = new BufferedReader(new InputStreamReader(process.getInputStream()))) {
+            String line;
+            while ((line = out.readLine()) != null) {
+                if (line.startsWith("loaded")) {
+                    loaded = Long.parseLong(line.replaceAll("[^0-9]", ""));
+                } else if (!line.startsWith("window") && !line.startsWith("first page")) {
+                    System.out.println("  " + line);
+                }
+            }
+        }
+        if (process.waitFor() != 0 || loaded < 0) {
+            throw new IOException("Startup run failed: " + String.join(" ", command));
+        }
+        return new long[] { loaded, (System.nanoTime() - start) / 1_000_000 };
+    }
+}
@@ -0,0 +1,72 @@
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+
+// Measures the heap a list takes with a String per description, as the text files used to be
+// read, and with the descriptions in a DescriptionPool, for a list of recurring tasks (few
+// distinct descriptions) and one where every description differs. Also times decoding a pooled
+// description, which each displayed row pays.
+//
+//   java -cp out DescriptionPoolBenchmark [tasks] [distinct recurring descriptions]
+//                                                          (default 1000000 1000)
+class DescriptionPoolBenchmark {
+    private static long sink;
+
+    public static void main(String[] args) {
+        int taskCount = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        int distinct = args.length > 1 ? Integer.parseInt(args[1]) : 1_000;
+
+        System.out.printf("%,d tasks%n", taskCount);
+        compare("recurring, " + distinct + " distinct", taskCount, i -> "Water the plants in room " + (i % distinct));
+        compare("all distinct", taskCount, i -> "Reply to the message from customer number " + i);
+    }
+
+    private interface Descriptions {
+        String get(int i);
+    }
+
+    private static void compare(String name, int taskCount, Descriptions descriptions) {
+        long before = usedHeap();
+        TaskStore strings = new TaskStore();
+        ArrayList<ToDoListApp.Task> loaded = new ArrayList<>(taskCount);
+        for (int i = 0; i < taskCount; i++) {
+            // A new String per task, as reading a line gives
+            loaded.add(new ToDoListApp.Task(i + 1, new String(descriptions.get(i))));
+        }
+        strings.addAll(loaded);
+        loaded = null;
+        long stringBytes = usedHeap() - before;
+        sink += strings.size();
+        strings = null;
+
+        before = usedHeap();
+        DescriptionPool pool = new DescriptionPool();
+        TaskStore pooled = new TaskStore();
+        loaded = new ArrayList<>(taskCount);
+        for (int i = 0; i < taskCount; i++) {
+            loaded.add(new ToDoListApp.Task(i + 1, pool, pool.intern(descriptions.get(i)), 0));
+        }
+        pooled.addAll(loaded);
+        loaded = null;
+        long pooledBytes = usedHeap() - before;
+
+        long start = System.nanoTime();
+        for (int round = 0; round < 5; round++) {
+            for (ToDoListApp.Task task : pooled) {
+                sink += task.getDescription().length();
+            }
+        }
+        double decodeNanos = (System.nanoTime() - start) / 5.0 / taskCount;
+
+        System.out.printf("%-26s strings %,6d MB   pooled %,6d MB (%,d distinct, %,d MB of pages)   saved %.0f%%   decode %.0f ns%n",
+                name, stringBytes >> 20, pooledBytes >> 20, pool.size(), pool.pageBytes() >> 20,
+                100.0 * (stringBytes - pooledBytes) / stringBytes, decodeNanos);
+        sink += pooled.size();
+    }
+
+    private static long usedHeap() {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+}
@@ -0,0 +1,77 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Stream;
+
+// Measures the version history on a long list: records it once, then a version after each of a
+// run of small edits, and reports what each version added to the history files next to what a
+// full copy of the list would take, how long recording took, and how long comparing the first
+// and last versions and reading one back took.
+//
+//   java -cp out HistoryBenchmark [tasks] [versions]      (default 1000000 100)
+class HistoryBenchmark {
+    public static void main(String[] args) throws IOException {
+        int taskCount = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        int versionCount = args.length > 1 ? Integer.parseInt(args[1]) : 100;
+
+        TaskStore tasks = new TaskStore();
+        long copyBytes = 0;
+        for (int i = 0; i < taskCount; i++) {
+            ToDoListApp.Task task = new ToDoListApp.Task(i + 1, "Task number " + i + (i % 3 == 0 ? " with a longer description" : ""),
+                    0, i % 4, i % 5 == 0 ? 20_000 + i % 400 : ToDoListApp.Task.NO_DUE_DATE);
+            tasks.add(task);
+            copyBytes += task.toLine().length() + 1;
+        }
+        TaskStore completedTasks = new TaskStore();
+
+        Path directory = Files.createTempDirectory("todo-history");
+        try {
+            TaskHistory history = new TaskHistory(directory.resolve("tasks.txt").toString());
+            long start = System.nanoTime();
+            TaskHistory.Version first = history.record(tasks.snapshot(), completedTasks.snapshot());
+            long firstNanos = System.nanoTime() - start;
+            long firstBytes = history.storedBytes();
+            System.out.printf("%,d tasks, %,d bytes as text   first version: %,d bytes stored in %d ms%n", taskCount, copyBytes,
+                    firstBytes, firstNanos / 1_000_000);
+
+            // Each version edits, adds or removes one task somewhere in the list
+            Random random = new Random(1);
+            long nextId = taskCount + 1;
+            long recordNanos = 0;
+            TaskHistory.Version last = first;
+            for (int v = 0; v < versionCount; v++) {
+                int index = random.nextInt(tasks.size());
+                switch (v % 3) {
+                    case 0 -> tasks.replace(tasks.get(index).withDescription("Edited in version " + v));
+                    case 1 -> tasks.add(index, new ToDoListApp.Task(nextId++, "Added in version " + v));
+                    default -> tasks.remove(tasks.get(index).getId());
+                }
+                start = System.nanoTime();
+                last = history.record(tasks.snapshot(), completedTasks.snapshot());
+                recordNanos += System.nanoTime() - start;
+            }
+            long perVersion = (history.storedBytes() - firstBytes) / versionCount;
+            System.out.printf("%d versions of one change each: %,d bytes per version (%.3f%% of a full copy), recorded in %d ms each%n",
+                    versionCount, perVersion, perVersion * 100.0 / copyBytes, recordNanos / versionCount / 1_000_000);
+
+            for (int round = 0; round < 3; round++) {
+                start = System.nanoTime();
+                List<TaskHistory.Change> changes = history.diff(first, last, false);
+                long diffNanos = System.nanoTime() - start;
+                start = System.nanoTime();
+                int lines = history.lines(last, false).size();
+                long readNanos = System.nanoTime() - start;
+                System.out.printf("first to last: %d changes found in %.1f ms   last version's %,d lines read in %d ms%n",
+                        changes.size(), diffNanos / 1e6, lines, readNanos / 1_000_000);
+            }
+            history.close();
+        } finally {
+            try (Stream<Path> files = Files.walk(directory)) {
+                files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+            }
+        }
+    }
+}
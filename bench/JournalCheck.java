@@ -0,0 +1,131 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+// Checks that replaying a damaged journal either recovers everything that was written or stops
+// with an error, never silently dropping records. A journal of 50 adds is written, then
+// replayed as written and after each kind of damage: a torn last record, a tail of zeros, a
+// flipped byte or length in a middle record, a middle record cut out, and the journal split
+// into .journal.old and .journal with and without a gap. A replay that fails must leave the
+// files as they were. Exits with status 1 on the first unexpected result.
+//
+//   java -cp out JournalCheck
+class JournalCheck {
+    private static final int TASKS = 50;
+
+    public static void main(String[] args) throws IOException {
+        Path directory = Files.createTempDirectory("todo-journal-check");
+        try {
+            Path tasksFile = directory.resolve("tasks.txt");
+            TaskJournal journal = new TaskJournal(tasksFile.toString(), TaskJournal.FsyncPolicy.ALWAYS, 200, Integer.MAX_VALUE);
+            journal.replay(new TaskStore(), new TaskStore());
+            for (int i = 1; i <= TASKS; i++) {
+                journal.logAdd(new ToDoListApp.Task(i, "Task " + i));
+            }
+            journal.close();
+            byte[] snapshot = Files.readAllBytes(Path.of(tasksFile + ".snapshot"));
+            byte[] written = Files.readAllBytes(Path.of(tasksFile + ".journal"));
+            int[] starts = recordStarts(written);
+            int middle = starts[TASKS / 2];
+            int last = starts[TASKS - 1];
+
+            check(directory, "as written", snapshot, null, written, TASKS);
+            check(directory, "torn last record", snapshot, null, Arrays.copyOf(written, written.length - 3), TASKS - 1);
+            check(directory, "tail of zeros", snapshot, null, Arrays.copyOf(written, written.length + 100), TASKS);
+            check(directory, "last record failing its checksum", snapshot, null, flip(written, written.length - 1), TASKS - 1);
+            check(directory, "flipped byte in a middle record", snapshot, null, flip(written, middle + 20), -1);
+            check(directory, "flipped length of a middle record", snapshot, null, flip(written, middle + 1), -1);
+            check(directory, "zeroed length of a middle record", snapshot, null, zero(written, middle, 8), -1);
+            check(directory, "middle record cut out", snapshot, null, cut(written, middle, starts[TASKS / 2 + 1]), -1);
+            check(directory, "split into two segments", snapshot,
+                    Arrays.copyOfRange(written, 0, middle), Arrays.copyOfRange(written, middle, written.length), TASKS);
+            check(directory, "old segment missing its last record", snapshot,
+                    Arrays.copyOfRange(written, 0, starts[TASKS / 2 - 1]), Arrays.copyOfRange(written, middle, written.length), -1);
+            check(directory, "old segment torn", snapshot,
+                    Arrays.copyOfRange(written, 0, middle - 3), Arrays.copyOfRange(written, middle, written.length), -1);
+            check(directory, "gap before the last record", snapshot, null, cut(written, starts[TASKS - 2], last), -1);
+        } finally {
+            try (Stream<Path> files = Files.walk(directory)) {
+                files.sorted(Comparator.reverseOrder()).forEach(file -> file.toFile().delete());
+            }
+        }
+        System.out.println("Every damaged journal was recovered or refused");
+    }
+
+    // Replay the given files, expecting that many tasks, or an error for -1
+    private static void check(Path directory, String damage, byte[] snapshot, byte[] oldJournal, byte[] journal, int expected)
+            throws IOException {
+        Path caseDirectory = Files.createTempDirectory(directory, "case");
+        String tasksFile = caseDirectory.resolve("tasks.txt").toString();
+        Files.write(Path.of(tasksFile + ".snapshot"), snapshot);
+        if (oldJournal != null) {
+            Files.write(Path.of(tasksFile + ".journal.old"), oldJournal);
+        }
+        Files.write(Path.of(tasksFile + ".journal"), journal);
+
+        TaskJournal replayed = new TaskJournal(tasksFile, TaskJournal.FsyncPolicy.NEVER, 200, Integer.MAX_VALUE);
+        TaskStore tasks = new TaskStore();
+        try {
+            replayed.replay(tasks, new TaskStore());
+            if (expected < 0) {
+                fail(damage + ": replayed " + tasks.size() + " tasks without an error");
+            }
+            if (tasks.size() != expected) {
+                fail(damage + ": replayed " + tasks.size() + " tasks, expected " + expected);
+            }
+        } catch (IOException e) {
+            if (expected >= 0) {
+                fail(damage + ": " + e.getMessage());
+            }
+            if (!Arrays.equals(Files.readAllBytes(Path.of(tasksFile + ".journal")), journal)
+                    || oldJournal != null && !Arrays.equals(Files.readAllBytes(Path.of(tasksFile + ".journal.old")), oldJournal)
+                    || !Arrays.equals(Files.readAllBytes(Path.of(tasksFile + ".snapshot")), snapshot)) {
+                fail(damage + ": the failed replay changed the files");
+            }
+        } finally {
+            replayed.close();
+        }
+    }
+
+    // Each record is its payload length, a checksum and the payload
+    private static int[] recordStarts(byte[] journal) {
+        int[] starts = new int[TASKS];
+        int position = 0;
+        for (int i = 0; i < TASKS; i++) {
+            starts[i] = position;
+            position += 8 + ByteBuffer.wrap(journal, position, 4).getInt();
+        }
+        if (position != journal.length) {
+            fail("Expected " + TASKS + " records in the journal");
+        }
+        return starts;
+    }
+
+    private static byte[] flip(byte[] bytes, int at) {
+        byte[] copy = bytes.clone();
+        copy[at] ^= 0x40;
+        return copy;
+    }
+
+    private static byte[] zero(byte[] bytes, int from, int length) {
+        byte[] copy = bytes.clone();
+        Arrays.fill(copy, from, from + length, (byte) 0);
+        return copy;
+    }
+
+    private static byte[] cut(byte[] bytes, int from, int to) {
+        byte[] copy = new byte[bytes.length - (to - from)];
+        System.arraycopy(bytes, 0, copy, 0, from);
+        System.arraycopy(bytes, to, copy, from, bytes.length - to);
+        return copy;
+    }
+
+    private static void fail(String message) {
+        System.out.println(message);
+        System.exit(1);
+    }
+}
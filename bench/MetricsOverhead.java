@@ -0,0 +1,81 @@
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.stream.Stream;
+
+// Measures what the latency instrumentation costs: an empty timed section with Metrics off and
+// on, then editTask on a headless list with Metrics off and on. With Metrics off a section is a
+// single volatile read, so the two editTask rates should match within noise.
+//
+//   java -cp out MetricsOverhead [tasks] [operations]      (default 100000 200000)
+class MetricsOverhead {
+    private static long sink;
+
+    public static void main(String[] args) throws Exception {
+        int taskCount = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+        int operations = args.length > 1 ? Integer.parseInt(args[1]) : 200_000;
+
+        System.out.printf("empty section, off   %8.2f ns%n", emptySections(50_000_000));
+        Metrics.enable();
+        System.out.printf("empty section, on    %8.2f ns%n", emptySections(50_000_000));
+        Metrics.disable();
+
+        Path directory = Files.createTempDirectory("todo-metrics");
+        try {
+            Path tasksFile = directory.resolve("tasks.txt");
+            Path completedTasksFile = directory.resolve("completed_tasks.txt");
+            StringBuilder text = new StringBuilder();
+            for (int i = 0; i < taskCount; i++) {
+                text.append("Task ").append(i).append('\n');
+            }
+            Files.writeString(tasksFile, text);
+            Files.writeString(completedTasksFile, "");
+            TaskJournal journal = new TaskJournal(tasksFile.toString(), TaskJournal.FsyncPolicy.NEVER, 200, Integer.MAX_VALUE);
+            ToDoListApp app = ToDoListApp.headless(tasksFile.toString(), completedTasksFile.toString(), journal, null);
+            app.loadNow();
+
+            for (int round = 0; round < 3; round++) {
+                double off = edits(app, operations);
+                Metrics.enable();
+                double on = edits(app, operations);
+                Metrics.disable();
+                System.out.printf("editTask, off        %8.3f us    on %8.3f us%n", off, on);
+            }
+            Metrics.enable();
+            edits(app, operations);
+            LatencyHistogram edits = Metrics.histogram(Metrics.Op.EDIT);
+            System.out.printf("recorded edits: %d, p50 %.3f us, p99 %.3f us, max %.3f us%n", edits.count(),
+                    edits.percentileNanos(0.5) / 1e3, edits.percentileNanos(0.99) / 1e3, edits.maxNanos() / 1e3);
+            app.close();
+        } finally {
+            try (Stream<Path> files = Files.walk(directory)) {
+                files.sorted(Comparator.reverseOrder()).forEach(file -> file.toFile().delete());
+            }
+        }
+    }
+
+    // Nanoseconds per section that times nothing
+    private static double emptySections(int count) {
+        long start = System.nanoTime();
+        for (int i = 0; i < count; i++) {
+            long sectionStart = Metrics.start();
+            sink += i;
+            Metrics.record(Metrics.Op.REFRESH, sectionStart);
+        }
+        return (System.nanoTime() - start) / (double) count;
+    }
+
+    // Microseconds per edit, the queued journal writes included
+    private static double edits(ToDoListApp app, int operations) {
+        Random random = new Random(7);
+        TaskStore tasks = app.getTasks();
+        long start = System.nanoTime();
+        for (int i = 0; i < operations; i++) {
+            ToDoListApp.Task task = tasks.get(random.nextInt(tasks.size()));
+            app.editTask(task, "Edited " + i, task.getPriority(), task.getDueDate(), task.getRecurrence(), ToDoListApp.TaskType.INCOMPLETE);
+        }
+        app.flush();
+        return (System.nanoTime() - start) / 1e3 / operations;
+    }
+}
@@ -0,0 +1,221 @@
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+// Stress check for the concurrent model. Writer threads add, remove, move, complete, uncomplete
+// and edit random tasks of one headless ToDoListApp, sometimes several in a batch, while reader
+// threads keep checking that every published snapshot holds each task at most once and still
+// holds every loaded task. Each writer only removes tasks it added itself, so at the end the
+// lists must hold exactly the loaded tasks plus the added ones still kept, the stores' ID index
+// must agree with their order, and replaying the journal must reproduce the final lists. Any
+// failed check exits with status 1.
+//
+//   java -cp out ModelStress [tasks] [writers] [operations per writer]      (default 10000 8 20000)
+class ModelStress {
+    public static void main(String[] args) throws Exception {
+        int taskCount = args.length > 0 ? Integer.parseInt(args[0]) : 10_000;
+        int writers = args.length > 1 ? Integer.parseInt(args[1]) : 8;
+        int operations = args.length > 2 ? Integer.parseInt(args[2]) : 20_000;
+
+        Path directory = Files.createTempDirectory("todo-stress");
+        try {
+            Path tasksFile = directory.resolve("tasks.txt");
+            Path completedTasksFile = directory.resolve("completed_tasks.txt");
+            StringBuilder text = new StringBuilder();
+            for (int i = 0; i < taskCount; i++) {
+                text.append("Task ").append(i).append('\n');
+            }
+            Files.writeString(tasksFile, text);
+            Files.writeString(completedTasksFile, "");
+
+            TaskJournal journal = new TaskJournal(tasksFile.toString(), TaskJournal.FsyncPolicy.NEVER, 200, 50_000);
+            ToDoListApp app = ToDoListApp.headless(tasksFile.toString(), completedTasksFile.toString(), journal, null);
+            app.loadNow();
+            HashSet<Long> loaded = new HashSet<>();
+            for (ToDoListApp.Task task : app.snapshot().tasks) {
+                loaded.add(task.getId());
+            }
+            if (loaded.size() != taskCount) {
+                throw new IllegalStateException("Loaded " + loaded.size() + " tasks, expected " + taskCount);
+            }
+
+            AtomicBoolean running = new AtomicBoolean(true);
+            AtomicLong snapshotsChecked = new AtomicLong();
+            List<Throwable> failures = java.util.Collections.synchronizedList(new ArrayList<>());
+            List<Long> kept = java.util.Collections.synchronizedList(new ArrayList<>());
+            ArrayList<Thread> threads = new ArrayList<>();
+            for (int w = 0; w < writers; w++) {
+                int writer = w;
+                threads.add(new Thread(() -> {
+                    try {
+                        kept.addAll(write(app, new Random(writer), writer, operations));
+                    } catch (Throwable e) {
+                        failures.add(e);
+                    }
+                }));
+            }
+            ArrayList<Thread> readers = new ArrayList<>();
+            for (int r = 0; r < 2; r++) {
+                readers.add(new Thread(() -> {
+                    try {
+                        while (running.get()) {
+                            check(app.snapshot(), loaded);
+                            snapshotsChecked.incrementAndGet();
+                        }
+                    } catch (Throwable e) {
+                        failures.add(e);
+                    }
+                }));
+            }
+
+            long start = System.nanoTime();
+            readers.forEach(Thread::start);
+            threads.forEach(Thread::start);
+            for (Thread thread : threads) {
+                thread.join();
+            }
+            running.set(false);
+            for (Thread thread : readers) {
+                thread.join();
+            }
+            double seconds = (System.nanoTime() - start) / 1e9;
+
+            ToDoListApp.ListsSnapshot last = app.snapshot();
+            try {
+                checkFinal(last, loaded, kept);
+                checkIndex(app.getTasks());
+                checkIndex(app.getCompletedTasks());
+            } catch (IllegalStateException e) {
+                failures.add(e);
+            }
+            app.flush();
+            app.close();
+
+            TaskJournal replayJournal = new TaskJournal(tasksFile.toString(), TaskJournal.FsyncPolicy.NEVER, 200, 50_000);
+            ToDoListApp replayed = ToDoListApp.headless(tasksFile.toString(), completedTasksFile.toString(), replayJournal, null);
+            replayed.loadNow();
+            ToDoListApp.ListsSnapshot reloaded = replayed.snapshot();
+            if (!describe(reloaded.tasks).equals(describe(last.tasks)) || !describe(reloaded.completedTasks).equals(describe(last.completedTasks))) {
+                failures.add(new IllegalStateException("Journal replay does not match the final lists"));
+            }
+            replayed.close();
+
+            System.out.printf("%d writers x %d operations in %.2f s, %d snapshots checked%n",
+                    writers, operations, seconds, snapshotsChecked.get());
+            if (!failures.isEmpty()) {
+                failures.forEach(Throwable::printStackTrace);
+                System.exit(1);
+            }
+            System.out.println("Model stayed consistent");
+        } finally {
+            try (Stream<Path> files = Files.walk(directory)) {
+                files.sorted(Comparator.reverseOrder()).forEach(file -> file.toFile().delete());
+            }
+        }
+    }
+
+    // Returns the IDs of the tasks this writer added and did not remove again
+    private static List<Long> write(ToDoListApp app, Random random, int writer, int operations) {
+        ArrayList<ToDoListApp.Task> added = new ArrayList<>();
+        for (int i = 0; i < operations; i++) {
+            ToDoListApp.ListsSnapshot lists = app.snapshot();
+            boolean completed = lists.completedTasks.size() > 0 && random.nextInt(4) == 0;
+            TaskStore.Snapshot list = completed ? lists.completedTasks : lists.tasks;
+            ToDoListApp.Task task = list.get(random.nextInt(list.size()));
+            ToDoListApp.TaskType view = completed ? ToDoListApp.TaskType.COMPLETED : ToDoListApp.TaskType.INCOMPLETE;
+            // The task may have been moved to the other list since the snapshot; the model
+            // then leaves it alone
+            switch (random.nextInt(8)) {
+                case 0 -> app.moveTask(task, view, random.nextBoolean() ? -1 : 1, false);
+                case 1 -> app.moveTask(task, view, random.nextBoolean() ? -1 : 1, true);
+                case 2 -> app.completeTask(task, ToDoListApp.TaskType.INCOMPLETE);
+                case 3 -> app.unCompleteTask(task, ToDoListApp.TaskType.COMPLETED);
+                case 4 -> app.editTask(task, "Edited by " + writer + " at " + i, task.getPriority(), task.getDueDate(),
+                        task.getRecurrence(), ToDoListApp.TaskType.INCOMPLETE);
+                case 5 -> added.add(app.addTask("Added by " + writer + " at " + i, ToDoListApp.Task.NO_PRIORITY,
+                        ToDoListApp.Task.NO_DUE_DATE, ToDoListApp.Task.NO_RECURRENCE, ToDoListApp.TaskType.INCOMPLETE));
+                case 6 -> {
+                    // Other writers may have completed it, so it is removed from whichever list holds it
+                    if (!added.isEmpty()) {
+                        app.removeTask(added.remove(random.nextInt(added.size())), ToDoListApp.TaskType.ALL);
+                    }
+                }
+                default -> app.batch(() -> {
+                    for (int k = 0; k < 5; k++) {
+                        ToDoListApp.Task next = app.getTasks().get(random.nextInt(app.getTasks().size()));
+                        app.completeTask(next, ToDoListApp.TaskType.INCOMPLETE);
+                        app.unCompleteTask(next, ToDoListApp.TaskType.COMPLETED);
+                    }
+                });
+            }
+        }
+        ArrayList<Long> ids = new ArrayList<>(added.size());
+        for (ToDoListApp.Task task : added) {
+            ids.add(task.getId());
+        }
+        return ids;
+    }
+
+    // Loaded tasks are never removed, so every snapshot holds them all
+    private static HashSet<Long> check(ToDoListApp.ListsSnapshot lists, Set<Long> loaded) {
+        HashSet<Long> ids = new HashSet<>();
+        for (ToDoListApp.Task task : lists.tasks) {
+            if (!ids.add(task.getId())) {
+                throw new IllegalStateException("Task " + task.getId() + " listed twice");
+            }
+        }
+        for (ToDoListApp.Task task : lists.completedTasks) {
+            if (!ids.add(task.getId())) {
+                throw new IllegalStateException("Task " + task.getId() + " is in both lists");
+            }
+        }
+        for (long id : loaded) {
+            if (!ids.contains(id)) {
+                throw new IllegalStateException("Loaded task " + id + " is missing");
+            }
+        }
+        return ids;
+    }
+
+    private static void checkFinal(ToDoListApp.ListsSnapshot lists, Set<Long> loaded, List<Long> kept) {
+        HashSet<Long> ids = check(lists, loaded);
+        HashSet<Long> expected = new HashSet<>(kept);
+        if (expected.size() != kept.size()) {
+            throw new IllegalStateException("Two added tasks were given the same ID");
+        }
+        for (long id : loaded) {
+            if (!expected.add(id)) {
+                throw new IllegalStateException("Added task reuses loaded ID " + id);
+            }
+        }
+        if (!ids.equals(expected)) {
+            throw new IllegalStateException("Lists hold " + ids.size() + " tasks, expected " + expected.size());
+        }
+    }
+
+    private static void checkIndex(TaskStore store) {
+        int index = 0;
+        for (ToDoListApp.Task task : store) {
+            if (store.indexOf(task.getId()) != index || store.getById(task.getId()) != task) {
+                throw new IllegalStateException("ID index disagrees with the order at " + index);
+            }
+            index++;
+        }
+    }
+
+    private static List<String> describe(TaskStore.Snapshot snapshot) {
+        ArrayList<String> descriptions = new ArrayList<>(snapshot.size());
+        for (ToDoListApp.Task task : snapshot) {
+            descriptions.add(task.getId() + ":" + task.getDescription());
+        }
+        return descriptions;
+    }
+}
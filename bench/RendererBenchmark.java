@@ -0,0 +1,139 @@
+import javax.swing.AbstractListModel;
+import javax.swing.DefaultListCellRenderer;
+import javax.swing.JList;
+import javax.swing.ListCellRenderer;
+import javax.swing.RepaintManager;
+import javax.swing.SwingUtilities;
+import java.awt.Color;
+import java.awt.Component;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.lang.management.ManagementFactory;
+import java.time.LocalDate;
+
+// Scrolls a list of a million tasks, a few rows per frame, painting each frame into an image on
+// the Event Dispatch Thread, and reports the time per frame and the bytes the thread allocated
+// per frame. Compares a plain DefaultListCellRenderer over toString(), as the list used to be
+// shown, with TaskCellRenderer. The descriptions are pooled, as loaded lists have them, so
+// the plain renderer decodes one for every row of every frame. Runs without a display.
+//
+// Then checks that TaskCellRenderer allocates nothing when it paints rows it has already seen,
+// painting a screenful of rows straight through the renderer many times over, and exits with
+// status 1 if the thread allocated anything. The frames above count more than that, since the
+// list's CellRendererPane creates a Graphics for every cell it paints.
+//
+//   java -cp out RendererBenchmark [tasks] [frames]      (default 1000000 3000)
+class RendererBenchmark {
+    private static final int WIDTH = 800;
+    private static final int HEIGHT = 600;
+    private static final int ROWS_PER_FRAME = 3;
+
+    public static void main(String[] args) throws Exception {
+        int taskCount = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        int frames = args.length > 1 ? Integer.parseInt(args[1]) : 3_000;
+
+        DescriptionPool pool = new DescriptionPool();
+        long today = LocalDate.now().toEpochDay();
+        ToDoListApp.Task[] tasks = new ToDoListApp.Task[taskCount];
+        for (int i = 0; i < taskCount; i++) {
+            int description = pool.intern("Task number " + i + (i % 3 == 0 ? " with a rather longer description to show" : ""));
+            tasks[i] = new ToDoListApp.Task(i + 1, pool, description, 0, i % 4,
+                    i % 2 == 0 ? today - 50 + i % 100 : ToDoListApp.Task.NO_DUE_DATE,
+                    i % 6 == 0 ? Recurrence.of(1 + i % 3, i % 4) : ToDoListApp.Task.NO_RECURRENCE);
+        }
+        System.out.printf("%,d tasks, %d x %d, %d rows scrolled per frame%n", taskCount, WIDTH, HEIGHT, ROWS_PER_FRAME);
+        SwingUtilities.invokeAndWait(() -> {
+            for (int round = 0; round < 2; round++) {
+                scroll("DefaultListCellRenderer", new DefaultListCellRenderer(), tasks, frames);
+                scroll("TaskCellRenderer", new TaskCellRenderer(task -> task.getId() % 5 == 0), tasks, frames);
+            }
+        });
+        long[] allocated = new long[1];
+        SwingUtilities.invokeAndWait(() -> allocated[0] = repaintSeenRows(tasks, frames));
+        System.out.printf("TaskCellRenderer repainting seen rows: %,d bytes allocated in %d frames%n", allocated[0], frames);
+        if (allocated[0] != 0) {
+            System.out.println("Error: painting rows already seen allocated memory");
+            System.exit(1);
+        }
+    }
+
+    // Bytes allocated painting the first screenful of rows frames times, after warming up
+    private static long repaintSeenRows(ToDoListApp.Task[] tasks, int frames) {
+        JList<ToDoListApp.Task> list = new JList<>();
+        list.setBackground(Color.decode("#c24902"));
+        list.setForeground(Color.WHITE);
+        TaskCellRenderer renderer = new TaskCellRenderer(task -> task.getId() % 5 == 0);
+        int rowHeight = list.getFontMetrics(list.getFont()).getHeight() + 4;
+        int rows = Math.min(tasks.length, HEIGHT / rowHeight);
+
+        BufferedImage image = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = image.createGraphics();
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long thread = Thread.currentThread().getId();
+        long allocated = 0;
+        for (int pass = 0; pass < 2; pass++) {
+            allocated = threads.getThreadAllocatedBytes(thread);
+            for (int frame = 0; frame < frames; frame++) {
+                for (int row = 0; row < rows; row++) {
+                    Component cell = renderer.getListCellRendererComponent(list, tasks[row], row, row == 10, row == 10);
+                    cell.setBounds(0, 0, WIDTH, rowHeight);
+                    g.translate(0, row * rowHeight);
+                    cell.paint(g);
+                    g.translate(0, -row * rowHeight);
+                }
+            }
+            allocated = threads.getThreadAllocatedBytes(thread) - allocated;
+        }
+        g.dispose();
+        return allocated;
+    }
+
+    private static void scroll(String name, ListCellRenderer<? super ToDoListApp.Task> renderer, ToDoListApp.Task[] tasks, int frames) {
+        JList<ToDoListApp.Task> list = new JList<>(new AbstractListModel<ToDoListApp.Task>() {
+            @Override
+            public int getSize() {
+                return tasks.length;
+            }
+
+            @Override
+            public ToDoListApp.Task getElementAt(int index) {
+                return tasks[index];
+            }
+        });
+        list.setBackground(Color.decode("#c24902"));
+        list.setForeground(Color.WHITE);
+        list.setCellRenderer(renderer);
+        int rowHeight = list.getFontMetrics(list.getFont()).getHeight() + 4;
+        list.setFixedCellHeight(rowHeight);
+        list.setFixedCellWidth(WIDTH);
+        list.setSize(WIDTH, rowHeight * tasks.length);
+        list.setSelectionInterval(10, 12);
+        // Painted straight into the image, as the screen's back buffer would be
+        RepaintManager.currentManager(list).setDoubleBufferingEnabled(false);
+
+        BufferedImage image = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = image.createGraphics();
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long thread = Thread.currentThread().getId();
+        // The first pass warms up the JIT; the second is measured
+        long[] frameNanos = new long[frames];
+        long allocated = 0;
+        for (int pass = 0; pass < 2; pass++) {
+            allocated = threads.getThreadAllocatedBytes(thread);
+            for (int frame = 0; frame < frames; frame++) {
+                int y = (pass * frames + frame) * ROWS_PER_FRAME * rowHeight;
+                long start = System.nanoTime();
+                g.translate(0, -y);
+                g.setClip(0, y, WIDTH, HEIGHT);
+                list.paint(g);
+                g.translate(0, y);
+                frameNanos[frame] = System.nanoTime() - start;
+            }
+            allocated = threads.getThreadAllocatedBytes(thread) - allocated;
+        }
+        g.dispose();
+        java.util.Arrays.sort(frameNanos);
+        System.out.printf("%-24s median %6.3f ms  99th %6.3f ms per frame (%5.0f fps)   %,8d bytes allocated per frame%n", name,
+                frameNanos[frames / 2] / 1e6, frameNanos[frames * 99 / 100] / 1e6, 1e9 / frameNanos[frames / 2], allocated / frames);
+    }
+}
@@ -0,0 +1,159 @@
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+// Measures the scheduler behind recurring tasks. Times scheduling and cancelling many timeouts
+// on a TimingWheel, next to a java.util.Timer, checks how late short timeouts fire, and loads a
+// headless list of recurring tasks to time setting their timers and handing out the
+// occurrences of the ones already due.
+//
+//   java -cp out SchedulerBenchmark [timeouts] [recurring tasks]      (default 1000000 100000)
+class SchedulerBenchmark {
+    public static void main(String[] args) throws Exception {
+        int timeoutCount = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        int taskCount = args.length > 1 ? Integer.parseInt(args[1]) : 100_000;
+
+        insertAndCancel(timeoutCount);
+        lateness(2_000);
+        recurringTasks(taskCount);
+    }
+
+    private static void insertAndCancel(int count) throws InterruptedException {
+        Random random = new Random(1);
+        long[] delays = new long[count];
+        for (int i = 0; i < count; i++) {
+            // Up to a month off, as the next occurrences of recurring tasks are
+            delays[i] = TimeUnit.HOURS.toMillis(1) + (long) (random.nextDouble() * TimeUnit.DAYS.toMillis(30));
+        }
+        for (int round = 0; round < 2; round++) {
+            TimingWheel wheel = new TimingWheel(1, TimeUnit.SECONDS, 4096, "Benchmark wheel");
+            TimingWheel.Timeout[] timeouts = new TimingWheel.Timeout[count];
+            long start = System.nanoTime();
+            for (int i = 0; i < count; i++) {
+                timeouts[i] = wheel.schedule(() -> { }, delays[i], TimeUnit.MILLISECONDS);
+            }
+            long scheduled = System.nanoTime();
+            // Let the wheel thread move them into the buckets, so cancelling has to unlink them
+            awaitTransferred(wheel);
+            long cancelStart = System.nanoTime();
+            for (int i = 0; i < count; i++) {
+                timeouts[i].cancel();
+            }
+            long cancelled = System.nanoTime();
+            while (wheel.pending() > 0) {
+                Thread.sleep(10);
+            }
+            wheel.stop();
+
+            Timer timer = new Timer("Benchmark timer", true);
+            TimerTask[] tasks = new TimerTask[count];
+            long timerStart = System.nanoTime();
+            for (int i = 0; i < count; i++) {
+                tasks[i] = new TimerTask() {
+                    @Override
+                    public void run() {
+                    }
+                };
+                timer.schedule(tasks[i], delays[i]);
+            }
+            long timerScheduled = System.nanoTime();
+            for (int i = 0; i < count; i++) {
+                tasks[i].cancel();
+            }
+            // A cancelled TimerTask stays in the queue until purged
+            timer.purge();
+            long timerCancelled = System.nanoTime();
+            timer.cancel();
+
+            System.out.printf("%,d timeouts   wheel: schedule %4.0f ns  cancel %4.0f ns   java.util.Timer: schedule %4.0f ns  cancel+purge %4.0f ns%n",
+                    count, (double) (scheduled - start) / count, (double) (cancelled - cancelStart) / count,
+                    (double) (timerScheduled - timerStart) / count, (double) (timerCancelled - timerScheduled) / count);
+        }
+    }
+
+    // Wait until the wheel has taken every timeout scheduled so far into its buckets, which it
+    // does 100,000 a tick: a timeout due at once, scheduled after them, fires only then
+    private static void awaitTransferred(TimingWheel wheel) throws InterruptedException {
+        AtomicInteger fired = new AtomicInteger();
+        wheel.schedule(fired::incrementAndGet, 0, TimeUnit.MILLISECONDS);
+        while (fired.get() == 0) {
+            Thread.sleep(50);
+        }
+    }
+
+    // How late timeouts fire with the 10 ms ticks of a fine wheel; the app's wheel ticks once a
+    // second, so its timers fire up to a second after midnight
+    private static void lateness(int count) throws InterruptedException {
+        TimingWheel wheel = new TimingWheel(10, TimeUnit.MILLISECONDS, 512, "Benchmark wheel");
+        long[] late = new long[count];
+        AtomicInteger fired = new AtomicInteger();
+        Random random = new Random(2);
+        for (int i = 0; i < count; i++) {
+            int index = i;
+            long delay = random.nextInt(3_000);
+            long due = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(delay);
+            wheel.schedule(() -> {
+                late[index] = System.nanoTime() - due;
+                fired.incrementAndGet();
+            }, delay, TimeUnit.MILLISECONDS);
+        }
+        while (fired.get() < count) {
+            Thread.sleep(50);
+        }
+        wheel.stop();
+        Arrays.sort(late);
+        System.out.printf("%,d timeouts on 10 ms ticks   late: min %.1f ms  median %.1f ms  max %.1f ms%n", count,
+                late[0] / 1e6, late[count / 2] / 1e6, late[count - 1] / 1e6);
+    }
+
+    private static void recurringTasks(int count) throws IOException, InterruptedException {
+        Path directory = Files.createTempDirectory("todo-scheduler");
+        try {
+            Path tasksFile = directory.resolve("tasks.txt");
+            LocalDate today = LocalDate.now();
+            String[] rules = { "1d", "1w", "2w", "1m", "1y" };
+            int due = 0;
+            try (BufferedWriter out = Files.newBufferedWriter(tasksFile)) {
+                for (int i = 0; i < count; i++) {
+                    // One in ten already due, the rest spread over the next year
+                    LocalDate date = i % 10 == 0 ? today.minusDays(i % 7) : today.plusDays(1 + i % 365);
+                    due += i % 10 == 0 ? 1 : 0;
+                    out.write("Chore number " + i + " due:" + date + " rec:" + rules[i % rules.length]);
+                    out.newLine();
+                }
+            }
+            Files.createFile(directory.resolve("completed_tasks.txt"));
+
+            int threadsBefore = Thread.activeCount();
+            long start = System.nanoTime();
+            ToDoListApp app = ToDoListApp.headless(tasksFile.toString(), directory.resolve("completed_tasks.txt").toString(), null, null);
+            app.loadListsNow();
+            long loaded = System.nanoTime();
+            System.out.printf("%,d recurring tasks   loaded and scheduled in %d ms, %,d timers, %d new threads%n",
+                    count, (loaded - start) / 1_000_000, app.scheduledCount(), Thread.activeCount() - threadsBefore);
+
+            // The timers of the due ones fire on the next tick
+            while (app.getTasks().size() < count + due) {
+                Thread.sleep(10);
+            }
+            System.out.printf("%,d occurrences of due tasks handed out %d ms after loading%n", due,
+                    (System.nanoTime() - loaded) / 1_000_000);
+            app.flush();
+            app.close();
+        } finally {
+            try (Stream<Path> files = Files.walk(directory)) {
+                files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+            }
+        }
+    }
+}
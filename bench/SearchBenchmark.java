@@ -0,0 +1,59 @@
+import java.util.Random;
+
+// Times the search box's queries against the index of a million tasks: words of one, two and
+// more characters, several words, and a word nothing matches. Every description holds its own
+// task number, so there are about as many distinct terms as tasks and a one-digit word is in
+// half of them. Prints the time per query and the tasks it matched; the GUI runs these on a
+// worker thread, holding the app's writer lock.
+//
+//   java -Xmx3g -cp out SearchBenchmark [tasks]      (default 1000000)
+class SearchBenchmark {
+    private static final int WARMUP_ITERATIONS = 5;
+    private static final int MEASURED_ITERATIONS = 20;
+    private static final String[] QUERIES = { "e", "7", "ca", "42", "call", "invoice", "call bank", "12345", "task 9 pay", "q0x" };
+
+    public static void main(String[] args) {
+        int taskCount = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        Random random = new Random(42);
+        String[] vocabulary = new String[5_000];
+        for (int i = 0; i < vocabulary.length; i++) {
+            StringBuilder word = new StringBuilder();
+            for (int length = 3 + random.nextInt(6); word.length() < length; ) {
+                word.append((char) ('a' + random.nextInt(26)));
+            }
+            vocabulary[i] = word.toString();
+        }
+        vocabulary[0] = "call";
+        vocabulary[1] = "bank";
+        vocabulary[2] = "invoice";
+        vocabulary[3] = "pay";
+
+        long start = System.nanoTime();
+        SearchIndex index = new SearchIndex();
+        for (int i = 1; i <= taskCount; i++) {
+            String description = "Task " + i + " " + vocabulary[random.nextInt(vocabulary.length)] + " "
+                    + vocabulary[random.nextInt(vocabulary.length)] + " " + vocabulary[random.nextInt(vocabulary.length)];
+            index.add(new ToDoListApp.Task(i, description));
+        }
+        System.out.printf("Indexed %d tasks in %d ms%n", taskCount, (System.nanoTime() - start) / 1_000_000);
+
+        System.out.printf("%-14s %10s %10s %10s%n", "Query", "Matches", "ms/query", "max ms");
+        for (String query : QUERIES) {
+            int matches = 0;
+            for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+                matches = index.search(query).size();
+            }
+            long total = 0;
+            long max = 0;
+            for (int i = 0; i < MEASURED_ITERATIONS; i++) {
+                long queryStart = System.nanoTime();
+                matches = index.search(query).size();
+                long elapsed = System.nanoTime() - queryStart;
+                total += elapsed;
+                max = Math.max(max, elapsed);
+            }
+            System.out.printf("%-14s %10d %10.2f %10.2f%n", "\"" + query + "\"", matches,
+                    total / 1e6 / MEASURED_ITERATIONS, max / 1e6);
+        }
+    }
+}
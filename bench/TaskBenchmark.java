@@ -0,0 +1,261 @@
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.function.IntConsumer;
+import java.util.stream.Stream;
+
+// Headless benchmarks of the ToDoListApp operations and of loading and saving, run against the
+// model without a window.
+//
+// Build and run from the project root:
+//   javac -d out src/*.java bench/*.java
+//   java -Xmx3g -cp out TaskBenchmark [task counts...]      (default 1000 100000 1000000)
+//
+// Each benchmark is warmed up, then timed over several iterations. Like JMH's gc profiler it
+// also reports what was allocated per operation (by every thread, so the persistence thread's
+// writes are included) and how many collections ran while it was measured. Mutations are
+// journaled with fsync off so the numbers measure the code rather than the disk.
+class TaskBenchmark {
+    private static final int WARMUP_ITERATIONS = 3;
+    private static final int MEASURED_ITERATIONS = 5;
+
+    private static final com.sun.management.ThreadMXBean threads =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    private final Path directory;
+    private final Random random = new Random(42);
+
+    private TaskBenchmark(Path directory) {
+        this.directory = directory;
+    }
+
+    public static void main(String[] args) throws IOException {
+        int[] sizes = { 1_000, 100_000, 1_000_000 };
+        if (args.length > 0) {
+            sizes = Stream.of(args).mapToInt(Integer::parseInt).toArray();
+        }
+
+        Path directory = Files.createTempDirectory("todo-benchmark");
+        try {
+            System.out.printf("%-22s %9s %14s %12s %12s %9s %8s%n",
+                    "Benchmark", "Tasks", "us/op", "B/op", "alloc MB/s", "gc count", "gc ms");
+            TaskBenchmark benchmark = new TaskBenchmark(directory);
+            for (int size : sizes) {
+                benchmark.run(size);
+            }
+        } finally {
+            try (Stream<Path> files = Files.walk(directory)) {
+                files.sorted(Comparator.reverseOrder()).forEach(file -> file.toFile().delete());
+            }
+        }
+    }
+
+    private void run(int size) throws IOException {
+        Path tasksFile = directory.resolve("tasks-" + size + ".txt");
+        Path completedTasksFile = directory.resolve("completed-" + size + ".txt");
+        writeTextFile(tasksFile, size);
+        writeTextFile(completedTasksFile, 0);
+        int operations = Math.max(1, Math.min(10_000, size / 10));
+
+        benchmarkMutations(size, tasksFile, completedTasksFile, operations);
+        benchmarkStore(size, operations);
+        benchmarkPersistence(size, tasksFile, completedTasksFile);
+    }
+
+    // Inserts that all land between the same two tasks use up the labels between them within a
+    // few dozen inserts, so this measures the relabelling that makes room
+    private void benchmarkStore(int size, int operations) {
+        TaskStore store = new TaskStore();
+        ArrayList<ToDoListApp.Task> tasks = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            tasks.add(new ToDoListApp.Task(i + 1, "Task " + i));
+        }
+        store.addAll(tasks);
+        long[] nextId = { size + 1 };
+
+        measure("insertSamePosition", null, size, operations,
+                () -> { },
+                i -> store.add(size / 2, new ToDoListApp.Task(nextId[0]++, "Inserted task " + i)),
+                () -> {
+                    while (store.size() > size) {
+                        store.remove(store.get(size / 2).getId());
+                    }
+                });
+    }
+
+    private void benchmarkMutations(int size, Path tasksFile, Path completedTasksFile, int operations) throws IOException {
+        // Work on copies, so the journal's first start imports them and the originals stay put
+        Path journaledTasks = directory.resolve("journaled-" + size + ".txt");
+        Path journaledCompleted = directory.resolve("journaled-completed-" + size + ".txt");
+        Files.copy(tasksFile, journaledTasks);
+        Files.copy(completedTasksFile, journaledCompleted);
+        TaskJournal journal = new TaskJournal(journaledTasks.toString(), TaskJournal.FsyncPolicy.NEVER, 200, Integer.MAX_VALUE);
+        ToDoListApp app = ToDoListApp.headless(journaledTasks.toString(), journaledCompleted.toString(), journal, null);
+        app.loadNow();
+        TaskStore tasks = app.getTasks();
+        TaskStore completedTasks = app.getCompletedTasks();
+
+        measure("addTask", app, size, operations,
+                () -> app.taskType = ToDoListApp.TaskType.ALL,
+                i -> app.addTask("Benchmark task " + i),
+                () -> {
+                    app.taskType = ToDoListApp.TaskType.INCOMPLETE;
+                    while (tasks.size() > size) {
+                        app.removeTask(tasks.get(tasks.size() - 1));
+                    }
+                });
+
+        measure("editTask", app, size, operations,
+                () -> app.taskType = ToDoListApp.TaskType.ALL,
+                i -> app.editTask(randomTask(tasks), "Edited task " + i),
+                () -> { });
+
+        measure("removeTask", app, size, operations,
+                () -> app.taskType = ToDoListApp.TaskType.INCOMPLETE,
+                i -> app.removeTask(randomTask(tasks)),
+                () -> {
+                    app.taskType = ToDoListApp.TaskType.ALL;
+                    while (tasks.size() < size) {
+                        app.addTask("Replacement task");
+                    }
+                });
+
+        measure("completeTask", app, size, operations,
+                () -> app.taskType = ToDoListApp.TaskType.INCOMPLETE,
+                i -> app.completeTask(randomTask(tasks)),
+                () -> {
+                    app.taskType = ToDoListApp.TaskType.COMPLETED;
+                    while (!completedTasks.isEmpty()) {
+                        app.unCompleteTask(completedTasks.get(completedTasks.size() - 1));
+                    }
+                });
+
+        measure("moveTaskUp", app, size, operations,
+                () -> app.taskType = ToDoListApp.TaskType.INCOMPLETE,
+                i -> app.moveTaskUp(randomTask(tasks)),
+                () -> { });
+
+        measure("moveTaskToTop", app, size, operations,
+                () -> app.taskType = ToDoListApp.TaskType.INCOMPLETE,
+                i -> app.moveTaskToTop(randomTask(tasks)),
+                () -> { });
+
+        app.close();
+    }
+
+    private void benchmarkPersistence(int size, Path tasksFile, Path completedTasksFile) throws IOException {
+        ToDoListApp textApp = ToDoListApp.headless(tasksFile.toString(), completedTasksFile.toString(), null, null);
+        textApp.loadNow();
+        measure("saveTasks", textApp, size, 1, () -> { }, i -> textApp.saveTasks(), () -> { });
+        textApp.close();
+
+        Path binaryFile = directory.resolve("tasks-" + size + ".tdb");
+        ToDoListApp binaryApp = ToDoListApp.headless(tasksFile.toString(), completedTasksFile.toString(), null, binaryFile.toString());
+        binaryApp.loadNow();
+        measure("saveBinaryFile", binaryApp, size, 1, () -> { }, i -> binaryApp.saveBinaryFile(), () -> { });
+        binaryApp.close();
+
+        measure("loadTasks", null, size, 1, () -> { },
+                i -> load(ToDoListApp.headless(tasksFile.toString(), completedTasksFile.toString(), null, null)),
+                () -> { });
+        measure("loadBinaryFile", null, size, 1, () -> { },
+                i -> load(ToDoListApp.headless(tasksFile.toString(), completedTasksFile.toString(), null, binaryFile.toString())),
+                () -> { });
+    }
+
+    private static void load(ToDoListApp app) {
+        try {
+            app.loadNow();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        app.close();
+    }
+
+    private ToDoListApp.Task randomTask(TaskStore store) {
+        return store.get(random.nextInt(store.size()));
+    }
+
+    // Time the operation over the measured iterations. Setup and teardown run outside the timed
+    // region; queued saves are flushed inside it, so their cost is counted.
+    private static void measure(String name, ToDoListApp app, int size, int operations,
+            Runnable setup, IntConsumer operation, Runnable teardown) {
+        long totalNanos = 0;
+        long totalBytes = 0;
+        long gcCount = 0;
+        long gcMillis = 0;
+        for (int iteration = 0; iteration < WARMUP_ITERATIONS + MEASURED_ITERATIONS; iteration++) {
+            setup.run();
+            long gcCountBefore = gcCount();
+            long gcMillisBefore = gcMillis();
+            long bytesBefore = allocatedBytes();
+            long start = System.nanoTime();
+            for (int i = 0; i < operations; i++) {
+                operation.accept(i);
+            }
+            if (app != null) {
+                app.flush();
+            }
+            long elapsed = System.nanoTime() - start;
+            long bytes = allocatedBytes() - bytesBefore;
+            if (iteration >= WARMUP_ITERATIONS) {
+                totalNanos += elapsed;
+                totalBytes += bytes;
+                gcCount += gcCount() - gcCountBefore;
+                gcMillis += gcMillis() - gcMillisBefore;
+            }
+            teardown.run();
+            if (app != null) {
+                app.flush();
+            }
+        }
+
+        long measuredOperations = (long) operations * MEASURED_ITERATIONS;
+        System.out.printf("%-22s %9d %14.3f %12d %12.1f %9d %8d%n", name, size,
+                totalNanos / 1000.0 / measuredOperations, totalBytes / measuredOperations,
+                totalBytes / (1024.0 * 1024.0) / (totalNanos / 1e9), gcCount, gcMillis);
+    }
+
+    private static long allocatedBytes() {
+        long total = 0;
+        for (long bytes : threads.getThreadAllocatedBytes(threads.getAllThreadIds())) {
+            if (bytes > 0) {
+                total += bytes;
+            }
+        }
+        return total;
+    }
+
+    private static long gcCount() {
+        long count = 0;
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            count += Math.max(0, collector.getCollectionCount());
+        }
+        return count;
+    }
+
+    private static long gcMillis() {
+        long millis = 0;
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            millis += Math.max(0, collector.getCollectionTime());
+        }
+        return millis;
+    }
+
+    private static void writeTextFile(Path file, int taskCount) throws IOException {
+        Random random = new Random(taskCount);
+        try (BufferedWriter writer = Files.newBufferedWriter(file, Charset.defaultCharset())) {
+            for (int i = 0; i < taskCount; i++) {
+                writer.write("Task " + i + " due in " + random.nextInt(365) + " days");
+                writer.newLine();
+            }
+        }
+    }
+}
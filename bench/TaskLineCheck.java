@@ -0,0 +1,103 @@
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+// Checks that the text format round-trips: every task, whatever its description, is read back
+// from its toLine() with the same description, priority, due date and recurrence, both by
+// Task.fromLine and from a mapped file. The descriptions are the ones that look like markup or
+// hold line breaks, which must not split a task over two lines.
+// Exits with status 1 on the first mismatch.
+//
+//   java -cp out TaskLineCheck
+class TaskLineCheck {
+    private static final String[] DESCRIPTIONS = {
+        "call bank",
+        "(B) call bank",
+        "(A) ",
+        "(A)",
+        "(C)x",
+        "meeting due:2026-01-01",
+        "meeting due:2026-02-30",
+        " due:2026-01-01",
+        "(A) meeting due:2026-01-01",
+        "meeting rec:1w",
+        "meeting rec:0w",
+        "meeting due:2026-01-01 rec:12m",
+        "rec:1d\\",
+        "\\",
+        "\\\\",
+        "ends with \\",
+        "\\starts with",
+        "\\(B) both",
+        "due:2026-01-01\\",
+        "",
+        "(",
+        "\u00e9 (B) unicode due:2026-01-01",
+        "two\nlines",
+        "windows\r\nline break",
+        "old mac\rline break",
+        "\n starts and ends with a line break\n",
+        "C:\\new\\report",
+        "\\n",
+        "\\\n",
+        "\\\\r\\",
+        "ends with a backslash and a line break \\\n",
+        "\n(A) after a line break due:2026-01-01",
+    };
+
+    public static void main(String[] args) throws IOException {
+        long due = java.time.LocalDate.parse("2026-03-04").toEpochDay();
+        List<ToDoListApp.Task> tasks = new ArrayList<>();
+        for (String description : DESCRIPTIONS) {
+            if (!Charset.defaultCharset().newEncoder().canEncode(description)) {
+                // Not in the files' charset, as non-ASCII text is not in ASCII
+                continue;
+            }
+            for (int priority = ToDoListApp.Task.NO_PRIORITY; priority <= ToDoListApp.Task.HIGH; priority += 2) {
+                for (long dueDate : new long[] { ToDoListApp.Task.NO_DUE_DATE, due }) {
+                    for (int recurrence : new int[] { ToDoListApp.Task.NO_RECURRENCE, Recurrence.of(1, Recurrence.WEEKS) }) {
+                        tasks.add(new ToDoListApp.Task(tasks.size() + 1, description, 0, priority, dueDate, recurrence));
+                    }
+                }
+            }
+        }
+
+        for (ToDoListApp.Task task : tasks) {
+            if (task.toLine().indexOf('\n') >= 0 || task.toLine().indexOf('\r') >= 0) {
+                System.out.println("Line break written into \"" + task.toLine() + "\"");
+                System.exit(1);
+            }
+            check(task, ToDoListApp.Task.fromLine(task.getId(), task.toLine()), "fromLine");
+        }
+
+        Path file = Files.createTempFile("todo-lines", ".txt");
+        try {
+            List<String> lines = new ArrayList<>();
+            for (ToDoListApp.Task task : tasks) {
+                lines.add(task.toLine());
+            }
+            Files.write(file, lines, Charset.defaultCharset());
+            MappedTaskFile mapped = new MappedTaskFile(file);
+            for (int i = 0; i < tasks.size(); i++) {
+                check(tasks.get(i), new ToDoListApp.Task(i + 1, mapped, i, 0, mapped.priority(i), mapped.dueDate(i), mapped.recurrence(i)),
+                        "mapped file");
+            }
+        } finally {
+            Files.delete(file);
+        }
+        System.out.println(tasks.size() + " tasks read back as written");
+    }
+
+    private static void check(ToDoListApp.Task written, ToDoListApp.Task read, String how) {
+        if (!written.getDescription().equals(read.getDescription()) || written.getPriority() != read.getPriority()
+                || written.getDueDate() != read.getDueDate() || written.getRecurrence() != read.getRecurrence()) {
+            System.out.println("Read back differently from " + how + ": \"" + written.toLine() + "\" gave description \""
+                    + read.getDescription() + "\", priority " + read.getPriority() + ", due " + read.getDueDate()
+                    + ", recurrence " + read.getRecurrence());
+            System.exit(1);
+        }
+    }
+}
@@ -0,0 +1,184 @@
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+// Load generator for TaskServer. Starts a server on journaled files in a temporary directory,
+// fires a mix of list, add, edit, complete, move and delete requests at it from many client
+// threads at once, and reports throughput and latency. Afterwards it reads both lists back
+// page by page and checks that every add and delete is accounted for and no task appears
+// twice.
+//
+//   java -cp out TaskServerLoad [clients] [requests per client]      (default 256 200)
+class TaskServerLoad {
+    private static final Pattern ID = Pattern.compile("\"id\":(\\d+)");
+    private static final Pattern TOTAL = Pattern.compile("\"total\":(\\d+)");
+
+    public static void main(String[] args) throws Exception {
+        int clients = args.length > 0 ? Integer.parseInt(args[0]) : 256;
+        int requestsPerClient = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+
+        Path directory = Files.createTempDirectory("todo-server-load");
+        try {
+            Path tasksFile = directory.resolve("tasks.txt");
+            Path completedTasksFile = directory.resolve("completed_tasks.txt");
+            Files.writeString(tasksFile, "");
+            Files.writeString(completedTasksFile, "");
+            TaskJournal journal = new TaskJournal(tasksFile.toString(), TaskJournal.FsyncPolicy.INTERVAL, 200, 10_000);
+            ToDoListApp app = ToDoListApp.headless(tasksFile.toString(), completedTasksFile.toString(), journal, null);
+            app.loadNow();
+            TaskServer server = new TaskServer(app, new InetSocketAddress("127.0.0.1", 0));
+            server.start();
+            try {
+                run(server.getPort(), clients, requestsPerClient);
+            } finally {
+                server.stop();
+            }
+        } finally {
+            try (Stream<Path> files = Files.walk(directory)) {
+                files.sorted(Comparator.reverseOrder()).forEach(file -> file.toFile().delete());
+            }
+        }
+    }
+
+    private static void run(int port, int clients, int requestsPerClient) throws Exception {
+        String base = "http://127.0.0.1:" + port + "/tasks";
+        HttpClient http = HttpClient.newHttpClient();
+        CopyOnWriteArrayList<Long> ids = new CopyOnWriteArrayList<>();
+        AtomicInteger added = new AtomicInteger();
+        AtomicInteger deleted = new AtomicInteger();
+        AtomicInteger failed = new AtomicInteger();
+        AtomicLong unexpected = new AtomicLong();
+        long[][] latencies = new long[clients][requestsPerClient];
+
+        CountDownLatch start = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(clients);
+        for (int c = 0; c < clients; c++) {
+            int client = c;
+            Thread thread = new Thread(() -> {
+                Random random = new Random(client);
+                try {
+                    start.await();
+                    for (int i = 0; i < requestsPerClient; i++) {
+                        long begin = System.nanoTime();
+                        HttpResponse<String> response = http.send(request(base, random, ids, client, i),
+                                HttpResponse.BodyHandlers.ofString());
+                        latencies[client][i] = System.nanoTime() - begin;
+
+                        int status = response.statusCode();
+                        String method = response.request().method();
+                        if (status == 201) {
+                            added.incrementAndGet();
+                            ids.add(firstLong(ID, response.body()));
+                        } else if (status == 200 && method.equals("DELETE")) {
+                            deleted.incrementAndGet();
+                        } else if (status == 404 || status == 409) {
+                            // Another client deleted or completed the task first
+                            failed.incrementAndGet();
+                        } else if (status != 200) {
+                            unexpected.incrementAndGet();
+                            System.out.println("Unexpected " + status + ": " + response.body());
+                        }
+                    }
+                } catch (IOException | InterruptedException e) {
+                    unexpected.incrementAndGet();
+                    System.out.println("Request failed: " + e);
+                } finally {
+                    done.countDown();
+                }
+            });
+            thread.start();
+        }
+
+        long begin = System.nanoTime();
+        start.countDown();
+        done.await();
+        double seconds = (System.nanoTime() - begin) / 1e9;
+
+        long[] all = Arrays.stream(latencies).flatMapToLong(Arrays::stream).sorted().toArray();
+        System.out.printf("%d requests from %d clients in %.2f s: %.0f requests/s%n",
+                all.length, clients, seconds, all.length / seconds);
+        System.out.printf("latency ms  p50 %.2f  p90 %.2f  p99 %.2f  max %.2f%n",
+                all[all.length / 2] / 1e6, all[all.length * 9 / 10] / 1e6, all[all.length * 99 / 100] / 1e6,
+                all[all.length - 1] / 1e6);
+        System.out.printf("added %d, deleted %d, lost races %d, unexpected %d%n",
+                added.get(), deleted.get(), failed.get(), unexpected.get());
+
+        int remaining = verify(http, base, "incomplete") + verify(http, base, "completed");
+        boolean consistent = remaining == added.get() - deleted.get() && unexpected.get() == 0;
+        System.out.println(consistent ? "Lists are consistent" : "INCONSISTENT: " + remaining + " tasks remain");
+        if (!consistent) {
+            System.exit(1);
+        }
+    }
+
+    private static HttpRequest request(String base, Random random, CopyOnWriteArrayList<Long> ids, int client, int i) {
+        int roll = random.nextInt(100);
+        long id = ids.isEmpty() ? 0 : ids.get(random.nextInt(ids.size()));
+        if (roll < 40 || ids.isEmpty()) {
+            return post(base, "{\"description\":\"Task " + client + "-" + i + "\"}");
+        } else if (roll < 60) {
+            String list = random.nextBoolean() ? "incomplete" : "completed";
+            return HttpRequest.newBuilder(URI.create(base + "?list=" + list + "&offset=" + random.nextInt(100) + "&limit=20")).GET().build();
+        } else if (roll < 72) {
+            return post(base + "/" + id + "/complete", "");
+        } else if (roll < 77) {
+            return post(base + "/" + id + "/uncomplete", "");
+        } else if (roll < 87) {
+            return HttpRequest.newBuilder(URI.create(base + "/" + id))
+                    .PUT(HttpRequest.BodyPublishers.ofString("{\"description\":\"Edited " + client + "-" + i + "\"}")).build();
+        } else if (roll < 95) {
+            String[] directions = { "up", "down", "top", "bottom" };
+            return post(base + "/" + id + "/move", "{\"to\":\"" + directions[random.nextInt(4)] + "\"}");
+        }
+        return HttpRequest.newBuilder(URI.create(base + "/" + id)).DELETE().build();
+    }
+
+    private static HttpRequest post(String uri, String body) {
+        return HttpRequest.newBuilder(URI.create(uri)).POST(HttpRequest.BodyPublishers.ofString(body)).build();
+    }
+
+    // Page through a list, failing on a task listed twice; returns the number of tasks
+    private static int verify(HttpClient http, String base, String list) throws IOException, InterruptedException {
+        HashSet<Long> seen = new HashSet<>();
+        int total = Integer.MAX_VALUE;
+        for (int offset = 0; offset < total; offset += 1000) {
+            HttpRequest request = HttpRequest.newBuilder(URI.create(base + "?list=" + list + "&offset=" + offset + "&limit=1000")).GET().build();
+            String body = http.send(request, HttpResponse.BodyHandlers.ofString()).body();
+            total = (int) firstLong(TOTAL, body);
+            Matcher matcher = ID.matcher(body);
+            while (matcher.find()) {
+                if (!seen.add(Long.parseLong(matcher.group(1)))) {
+                    throw new IllegalStateException("Task " + matcher.group(1) + " listed twice in " + list);
+                }
+            }
+        }
+        if (seen.size() != total) {
+            throw new IllegalStateException(list + " has " + total + " tasks but " + seen.size() + " were listed");
+        }
+        return total;
+    }
+
+    private static long firstLong(Pattern pattern, String text) {
+        Matcher matcher = pattern.matcher(text);
+        if (!matcher.find()) {
+            throw new IllegalStateException("No match for " + pattern + " in " + text);
+        }
+        return Long.parseLong(matcher.group(1));
+    }
+}
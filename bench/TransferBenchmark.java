@@ -0,0 +1,84 @@
+import java.io.BufferedWriter;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+
+// Streams a large CSV and JSON dump through TaskTransfer.importFile into a sink that only counts
+// the tasks, to show import speed and that the heap stays bounded whatever the file size. Run it
+// with a small heap:
+//
+//   java -Xmx32m -cp out TransferBenchmark [tasks]      (default 5000000)
+class TransferBenchmark {
+    public static void main(String[] args) throws Exception {
+        long taskCount = args.length > 0 ? Long.parseLong(args[0]) : 5_000_000;
+        Path directory = Files.createTempDirectory("todo-transfer");
+        try {
+            for (String extension : new String[] { "csv", "json" }) {
+                Path file = directory.resolve("tasks." + extension);
+                writeDump(file, taskCount);
+                long bytes = Files.size(file);
+                for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+                    pool.resetPeakUsage();
+                }
+                long[] received = new long[1];
+                long start = System.nanoTime();
+                long imported = TaskTransfer.importFile(file, (tasks, completedTasks) -> {
+                    received[0] += tasks.size() + completedTasks.size();
+                }, new TaskTransfer.Progress() {
+                    @Override
+                    public void progress(long done, long total) {
+                    }
+
+                    @Override
+                    public boolean isCancelled() {
+                        return false;
+                    }
+                });
+                double seconds = (System.nanoTime() - start) / 1e9;
+                System.out.printf("%-4s %,d tasks (%,d received), %,d MB in %.1f s: %,.0f tasks/s, %.0f MB/s, peak heap %,d MB of %,d MB%n",
+                        extension, imported, received[0], bytes >> 20, seconds, imported / seconds, bytes / 1e6 / seconds,
+                        peakHeap() >> 20, Runtime.getRuntime().maxMemory() >> 20);
+                Files.delete(file);
+            }
+        } finally {
+            Files.deleteIfExists(directory);
+        }
+    }
+
+    // Write the dump straight to disk, as an export would
+    private static void writeDump(Path file, long taskCount) throws Exception {
+        boolean json = TaskTransfer.isJson(file);
+        try (BufferedWriter out = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            out.write(json ? "[" : "description,priority,due,createdAt,completed");
+            for (long i = 0; i < taskCount; i++) {
+                String description = "Task " + i + (i % 7 == 0 ? ", with a comma and \"quotes\"" : "");
+                boolean completed = i % 5 == 0;
+                if (json) {
+                    out.write(i == 0 ? "\n" : ",\n");
+                    out.write(TaskTransfer.taskJson(new ToDoListApp.Task(i + 1, description, 1_700_000_000_000L + i,
+                            (int) (i % 4), i % 3 == 0 ? 20_000 + i % 365 : ToDoListApp.Task.NO_DUE_DATE), completed));
+                } else {
+                    out.newLine();
+                    out.write(i % 7 == 0 ? "\"" + description.replace("\"", "\"\"") + "\"" : description);
+                    out.write("," + i % 4 + "," + (i % 3 == 0 ? LocalDate.ofEpochDay(20_000 + i % 365).toString() : "")
+                            + "," + (1_700_000_000_000L + i) + "," + completed);
+                }
+            }
+            out.write(json ? "\n]\n" : "\n");
+        }
+    }
+
+    private static long peakHeap() {
+        long peak = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                peak += pool.getPeakUsage().getUsed();
+            }
+        }
+        return peak;
+    }
+}
@@ -0,0 +1,345 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.zip.CRC32C;
+
+// Binary task file holding both lists, with IDs and creation times.
+//
+// Layout (big-endian):
+//   header  magic "TDLB", int version, long sequence, long nextTaskId, int taskCount,
+//           int completedTaskCount, int CRC32C of the preceding header bytes
+//   blocks  int recordCount, int payloadLength, int CRC32C of the payload, payload
+//   record  long id, long createdAt, byte flags, byte priority, long dueDate, int recurrence,
+//           int length, length bytes of UTF-8
+//
+// Version 1 files, whose records have no priority or due date, and version 2 files, whose
+// records have no recurrence, are still read.
+// Uncompleted tasks come first, then completed ones (flag COMPLETED). Descriptions may contain
+// any characters, newlines included. Reading maps the file where that is safe and leaves the
+// descriptions in the mapping, decoding one only when it is asked for.
+class BinaryTaskFile {
+    static final int MAGIC = 0x54444c42; // "TDLB"
+    static final int VERSION = 3;
+
+    private static final int HEADER_SIZE = 36;
+    private static final int BLOCK_HEADER_SIZE = 12;
+    private static final int RECORD_HEADER_SIZE = 34;
+    private static final int VERSION_2_RECORD_HEADER_SIZE = 30;
+    private static final int VERSION_1_RECORD_HEADER_SIZE = 21;
+    private static final int BLOCK_SIZE = 64 * 1024;
+    private static final int MAX_REGION_SIZE = 1 << 30;
+    private static final byte COMPLETED = 1;
+
+    // Header fields that are not tasks
+    static final class Header {
+        final long sequence;
+        final long nextTaskId;
+
+        Header(long sequence, long nextTaskId) {
+            this.sequence = sequence;
+            this.nextTaskId = nextTaskId;
+        }
+    }
+
+    public static boolean isBinaryFile(Path file) throws IOException {
+        if (!Files.isRegularFile(file) || Files.size(file) < 4) {
+            return false;
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer magic = ByteBuffer.allocate(4);
+            channel.read(magic, 0);
+            return magic.getInt(0) == MAGIC;
+        }
+    }
+
+    // Write both lists to a temporary file and rename it over the target. The next task ID in the
+    // header is one past the highest ID written.
+    public static void write(Path file, long sequence, TaskStore.Snapshot tasks, TaskStore.Snapshot completedTasks) throws IOException {
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            BlockWriter writer = new BlockWriter(channel);
+            for (ToDoListApp.Task task : tasks) {
+                writer.write(task, (byte) 0);
+            }
+            for (ToDoListApp.Task task : completedTasks) {
+                writer.write(task, COMPLETED);
+            }
+            writer.finishBlock();
+
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            header.putInt(MAGIC);
+            header.putInt(VERSION);
+            header.putLong(sequence);
+            header.putLong(writer.maxId + 1);
+            header.putInt(tasks.size());
+            header.putInt(completedTasks.size());
+            CRC32C crc = new CRC32C();
+            crc.update(header.array(), 0, HEADER_SIZE - 4);
+            header.putInt((int) crc.getValue());
+            header.flip();
+            channel.write(header, 0);
+            channel.force(true);
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static final class BlockWriter {
+        private final FileChannel channel;
+        private final CRC32C crc = new CRC32C();
+        private ByteBuffer block = ByteBuffer.allocateDirect(BLOCK_HEADER_SIZE + BLOCK_SIZE * 2);
+        private long position = HEADER_SIZE;
+        private int recordCount;
+        private long maxId;
+
+        BlockWriter(FileChannel channel) {
+            this.channel = channel;
+            block.position(BLOCK_HEADER_SIZE);
+        }
+
+        void write(ToDoListApp.Task task, byte flags) throws IOException {
+            byte[] description = task.getDescription().getBytes(StandardCharsets.UTF_8);
+            int recordSize = RECORD_HEADER_SIZE + description.length;
+            if (block.position() > BLOCK_HEADER_SIZE && block.position() + recordSize > BLOCK_HEADER_SIZE + BLOCK_SIZE) {
+                finishBlock();
+            }
+            if (block.remaining() < recordSize) {
+                ByteBuffer larger = ByteBuffer.allocateDirect(BLOCK_HEADER_SIZE + recordSize);
+                block.flip();
+                larger.put(block);
+                block = larger;
+            }
+            block.putLong(task.getId());
+            block.putLong(task.getCreatedAt());
+            block.put(flags);
+            block.put((byte) task.getPriority());
+            block.putLong(task.getDueDate());
+            block.putInt(task.getRecurrence());
+            block.putInt(description.length);
+            block.put(description);
+            recordCount++;
+            maxId = Math.max(maxId, task.getId());
+        }
+
+        void finishBlock() throws IOException {
+            if (recordCount == 0) {
+                return;
+            }
+            int payloadLength = block.position() - BLOCK_HEADER_SIZE;
+            crc.reset();
+            crc.update(block.slice(BLOCK_HEADER_SIZE, payloadLength));
+            block.putInt(0, recordCount);
+            block.putInt(4, payloadLength);
+            block.putInt(8, (int) crc.getValue());
+            block.flip();
+            while (block.hasRemaining()) {
+                position += channel.write(block, position);
+            }
+            block.clear();
+            block.position(BLOCK_HEADER_SIZE);
+            recordCount = 0;
+        }
+    }
+
+    // The sequence number in a file's header, without reading its tasks
+    public static long readSequence(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return readHeader(channel, file).getLong(8);
+        }
+    }
+
+    private static ByteBuffer readHeader(FileChannel channel, Path file) throws IOException {
+        if (channel.size() < HEADER_SIZE) {
+            throw new IOException("Truncated task file: " + file);
+        }
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        readFully(channel, header, 0);
+        if (header.getInt(0) != MAGIC) {
+            throw new IOException("Not a binary task file: " + file);
+        }
+        int version = header.getInt(4);
+        if (version < 1 || version > VERSION) {
+            throw new IOException("Unsupported task file version " + version);
+        }
+        CRC32C crc = new CRC32C();
+        crc.update(header.array(), 0, HEADER_SIZE - 4);
+        if ((int) crc.getValue() != header.getInt(HEADER_SIZE - 4)) {
+            throw new IOException("Corrupt task file header: " + file);
+        }
+        return header;
+    }
+
+    // Read a binary task file into two empty stores. Every block is checked against its checksum
+    // before any of its tasks are used; a mismatch fails the whole read.
+    public static Header read(Path file, TaskStore tasks, TaskStore completedTasks) throws IOException {
+        return read(file, tasks, completedTasks, 0, null);
+    }
+
+    // As above, also handing firstPage a copy of the first firstPageSize uncompleted tasks as
+    // soon as they are read, so they can be shown while the rest loads. Lists no longer than
+    // that are not reported.
+    public static Header read(Path file, TaskStore tasks, TaskStore completedTasks, int firstPageSize,
+            Consumer<List<ToDoListApp.Task>> firstPage) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            ByteBuffer header = readHeader(channel, file);
+            int version = header.getInt(4);
+            int recordHeaderSize = version == 1 ? VERSION_1_RECORD_HEADER_SIZE
+                    : version == 2 ? VERSION_2_RECORD_HEADER_SIZE : RECORD_HEADER_SIZE;
+            CRC32C crc = new CRC32C();
+            long sequence = header.getLong(8);
+            long nextTaskId = header.getLong(16);
+            int taskCount = header.getInt(24);
+            int completedTaskCount = header.getInt(28);
+
+            Descriptions descriptions = new Descriptions();
+            ArrayList<ToDoListApp.Task> loadedTasks = new ArrayList<>(taskCount);
+            ArrayList<ToDoListApp.Task> loadedCompletedTasks = new ArrayList<>(completedTaskCount);
+
+            ByteBuffer region = null;
+            long regionStart = 0;
+            long position = HEADER_SIZE;
+            while (position < size) {
+                if (region == null || position + BLOCK_HEADER_SIZE > regionStart + region.limit()) {
+                    regionStart = position;
+                    region = descriptions.load(channel, position, Math.min(size - position, MAX_REGION_SIZE));
+                }
+                int offset = (int) (position - regionStart);
+                int recordCount = region.getInt(offset);
+                int payloadLength = region.getInt(offset + 4);
+                int checksum = region.getInt(offset + 8);
+                if (recordCount < 0 || payloadLength < 0 || position + BLOCK_HEADER_SIZE + payloadLength > size) {
+                    throw new IOException("Corrupt block at offset " + position + " in " + file);
+                }
+                if (offset + BLOCK_HEADER_SIZE + payloadLength > region.limit()) {
+                    // Block straddles the end of this region; start the next region at the block
+                    regionStart = position;
+                    region = descriptions.load(channel, position, Math.min(size - position, Math.max(MAX_REGION_SIZE, BLOCK_HEADER_SIZE + payloadLength)));
+                    offset = 0;
+                }
+
+                crc.reset();
+                crc.update(region.slice(offset + BLOCK_HEADER_SIZE, payloadLength));
+                if ((int) crc.getValue() != checksum) {
+                    throw new IOException("Checksum mismatch in block at offset " + position + " in " + file);
+                }
+
+                int record = offset + BLOCK_HEADER_SIZE;
+                int blockEnd = record + payloadLength;
+                for (int i = 0; i < recordCount; i++) {
+                    if (record + recordHeaderSize > blockEnd) {
+                        throw new IOException("Corrupt record in block at offset " + position + " in " + file);
+                    }
+                    long id = region.getLong(record);
+                    long createdAt = region.getLong(record + 8);
+                    byte flags = region.get(record + 16);
+                    int priority = ToDoListApp.Task.NO_PRIORITY;
+                    long dueDate = ToDoListApp.Task.NO_DUE_DATE;
+                    int recurrence = ToDoListApp.Task.NO_RECURRENCE;
+                    if (version > 1) {
+                        priority = region.get(record + 17);
+                        dueDate = region.getLong(record + 18);
+                    }
+                    if (version > 2) {
+                        recurrence = region.getInt(record + 26);
+                    }
+                    int length = region.getInt(record + recordHeaderSize - 4);
+                    if (length < 0 || record + recordHeaderSize + length > blockEnd) {
+                        throw new IOException("Corrupt record in block at offset " + position + " in " + file);
+                    }
+                    int index = descriptions.add(record + recordHeaderSize);
+                    ToDoListApp.Task task = new ToDoListApp.Task(id, descriptions, index, createdAt, priority, dueDate, recurrence);
+                    if ((flags & COMPLETED) != 0) {
+                        loadedCompletedTasks.add(task);
+                    } else {
+                        loadedTasks.add(task);
+                        if (firstPage != null && loadedTasks.size() == firstPageSize && taskCount > firstPageSize) {
+                            firstPage.accept(new ArrayList<>(loadedTasks));
+                        }
+                    }
+                    record += recordHeaderSize + length;
+                }
+                position += BLOCK_HEADER_SIZE + payloadLength;
+            }
+
+            if (loadedTasks.size() != taskCount || loadedCompletedTasks.size() != completedTaskCount) {
+                throw new IOException("Task file " + file + " is missing records");
+            }
+            tasks.addAll(loadedTasks);
+            completedTasks.addAll(loadedCompletedTasks);
+            return new Header(sequence, nextTaskId);
+        }
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of task file");
+            }
+        }
+        buffer.flip();
+    }
+
+    // The descriptions of a file that has been read, left encoded in the file's buffers. Where a
+    // mapped file may be renamed over (see MappedTaskFile.isSupported) the buffers are mappings
+    // of the file itself; elsewhere they are read into the heap, which still keeps each
+    // description as compact UTF-8 until it is displayed.
+    private static final class Descriptions implements ToDoListApp.DescriptionSource {
+        private final boolean mapped = MappedTaskFile.isSupported();
+        private final ArrayList<ByteBuffer> regions = new ArrayList<>();
+        private int[] regionFirstRecord = new int[4];
+        private int[] offsets = new int[1024];
+        private int count;
+
+        ByteBuffer load(FileChannel channel, long position, long length) throws IOException {
+            ByteBuffer region;
+            if (mapped) {
+                region = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+            } else {
+                region = ByteBuffer.allocate((int) length);
+                readFully(channel, region, position);
+            }
+            // A region no record was read from is replaced rather than kept
+            if (!regions.isEmpty() && regionFirstRecord[regions.size() - 1] == count) {
+                regions.set(regions.size() - 1, region);
+                return region;
+            }
+            if (regions.size() == regionFirstRecord.length) {
+                regionFirstRecord = Arrays.copyOf(regionFirstRecord, regions.size() * 2);
+            }
+            regionFirstRecord[regions.size()] = count;
+            regions.add(region);
+            return region;
+        }
+
+        int add(int offset) {
+            if (count == offsets.length) {
+                offsets = Arrays.copyOf(offsets, count + (count >> 1));
+            }
+            offsets[count] = offset;
+            return count++;
+        }
+
+        @Override
+        public String description(int index) {
+            int region = Arrays.binarySearch(regionFirstRecord, 0, regions.size(), index);
+            if (region < 0) {
+                region = -region - 2;
+            }
+            ByteBuffer buffer = regions.get(region);
+            int offset = offsets[index];
+            byte[] bytes = new byte[buffer.getInt(offset - 4)];
+            buffer.get(offset, bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+    }
+}
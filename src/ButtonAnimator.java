@@ -0,0 +1,94 @@
+import javax.swing.JComponent;
+import javax.swing.Timer;
+import java.awt.Color;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+// Background colour transitions for the buttons, all driven by one shared Swing timer. The
+// timer only runs while some transition is in flight. A button that is asked to animate again
+// mid-transition, such as when the mouse leaves before the hover fade has finished, turns
+// around from the colour it has reached instead of starting a second transition.
+//
+// The colours between each pair of end colours are computed once and reused, so a frame only
+// picks a Color from the ramp and sets it.
+class ButtonAnimator {
+    private final int steps;
+    private final Timer timer;
+    private final HashMap<Long, Color[]> ramps = new HashMap<>();
+    private final HashMap<JComponent, Transition> transitions = new HashMap<>();
+
+    private static final class Transition {
+        final Color[] ramp;
+        int step;
+        int target;
+
+        Transition(Color[] ramp, int step, int target) {
+            this.ramp = ramp;
+            this.step = step;
+            this.target = target;
+        }
+    }
+
+    public ButtonAnimator(int durationMillis, int steps) {
+        this.steps = steps;
+        timer = new Timer(durationMillis / steps, e -> tick());
+    }
+
+    // Fade the component's background from one colour to the other. Must be called on the
+    // Event Dispatch Thread.
+    public void animate(JComponent component, Color from, Color to) {
+        // A ramp runs from the lower RGB value to the higher, so both directions share it
+        boolean forward = from.getRGB() < to.getRGB();
+        Color[] ramp = ramp(forward ? from : to, forward ? to : from);
+        int target = forward ? steps : 0;
+
+        Transition transition = transitions.get(component);
+        if (transition != null && transition.ramp == ramp) {
+            transition.target = target;
+        } else {
+            transitions.put(component, new Transition(ramp, steps - target, target));
+        }
+        if (!timer.isRunning()) {
+            timer.start();
+        }
+    }
+
+    private void tick() {
+        Iterator<Map.Entry<JComponent, Transition>> iterator = transitions.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<JComponent, Transition> entry = iterator.next();
+            Transition transition = entry.getValue();
+            if (transition.step != transition.target) {
+                transition.step += transition.step < transition.target ? 1 : -1;
+                entry.getKey().setBackground(transition.ramp[transition.step]);
+            }
+            if (transition.step == transition.target) {
+                iterator.remove();
+            }
+        }
+        if (transitions.isEmpty()) {
+            timer.stop();
+        }
+    }
+
+    private Color[] ramp(Color low, Color high) {
+        long key = ((long) low.getRGB() << 32) | (high.getRGB() & 0xffffffffL);
+        Color[] ramp = ramps.get(key);
+        if (ramp == null) {
+            ramp = new Color[steps + 1];
+            for (int i = 0; i <= steps; i++) {
+                ramp[i] = interpolateColors(low, high, (float) i / steps);
+            }
+            ramps.put(key, ramp);
+        }
+        return ramp;
+    }
+
+    private static Color interpolateColors(Color color1, Color color2, float progress) {
+        int r = (int) (color1.getRed() * (1 - progress) + color2.getRed() * progress);
+        int g = (int) (color1.getGreen() * (1 - progress) + color2.getGreen() * progress);
+        int b = (int) (color1.getBlue() * (1 - progress) + color2.getBlue() * progress);
+        return new Color(r, g, b);
+    }
+}
@@ -0,0 +1,78 @@
+import javax.swing.AbstractListModel;
+
+// List model showing two stores one after the other, as the All view shows the uncompleted
+// tasks followed by the completed ones. Rows are found by index arithmetic on the stores' sizes,
+// so nothing is copied, and each store's change ranges are forwarded as list events, shifted
+// past the first store for the second. A refresh therefore costs nothing however long the
+// lists are.
+class CompositeTaskListModel extends AbstractListModel<ToDoListApp.Task> {
+    private static final long serialVersionUID = 1L;
+
+    private final TaskStore first;
+    private final TaskStore second;
+    private final TaskStore.Listener firstListener;
+    private final TaskStore.Listener secondListener;
+
+    public CompositeTaskListModel(TaskStore first, TaskStore second) {
+        this.first = first;
+        this.second = second;
+        firstListener = new Forwarder(false);
+        secondListener = new Forwarder(true);
+        first.addListener(firstListener);
+        second.addListener(secondListener);
+    }
+
+    // Stop following the stores, for a model that is no longer shown
+    public void dispose() {
+        first.removeListener(firstListener);
+        second.removeListener(secondListener);
+    }
+
+    // Whether a row shows a task of the second store
+    public boolean isInSecond(int index) {
+        return index >= first.size();
+    }
+
+    @Override
+    public int getSize() {
+        return first.size() + second.size();
+    }
+
+    @Override
+    public ToDoListApp.Task getElementAt(int index) {
+        int firstSize = first.size();
+        return index < firstSize ? first.get(index) : second.get(index - firstSize);
+    }
+
+    // Forwards one store's changes. Stores report a change after applying it, so the first
+    // store's size is already the one the shifted rows are counted from.
+    private final class Forwarder implements TaskStore.Listener {
+        private final boolean shifted;
+
+        Forwarder(boolean shifted) {
+            this.shifted = shifted;
+        }
+
+        private int offset() {
+            return shifted ? first.size() : 0;
+        }
+
+        @Override
+        public void tasksInserted(int fromIndex, int toIndex) {
+            int offset = offset();
+            fireIntervalAdded(CompositeTaskListModel.this, offset + fromIndex, offset + toIndex);
+        }
+
+        @Override
+        public void tasksRemoved(int fromIndex, int toIndex) {
+            int offset = offset();
+            fireIntervalRemoved(CompositeTaskListModel.this, offset + fromIndex, offset + toIndex);
+        }
+
+        @Override
+        public void tasksChanged(int fromIndex, int toIndex) {
+            int offset = offset();
+            fireContentsChanged(CompositeTaskListModel.this, offset + fromIndex, offset + toIndex);
+        }
+    }
+}
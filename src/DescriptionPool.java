@@ -0,0 +1,169 @@
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+// Task descriptions kept once each, as UTF-8 in large shared byte pages, for lists where the
+// same description comes back again and again (recurring chores, imported dumps). A task
+// refers to its description by entry number and decodes it only when it is displayed, saved
+// or searched, so a list holds no String per task: a repeated description costs nothing beyond
+// the task itself, and a distinct one costs its bytes plus about 20 bytes of bookkeeping,
+// against about 40 for a String of its own.
+//
+// Each entry is a varint length followed by the bytes, never split across pages. Entries are
+// only added, so tasks can share one pool with the snapshots of their lists; descriptions no
+// task uses any more are dropped by moving the live ones to a new pool (see
+// ToDoListApp.compactDescriptions).
+//
+// intern() is synchronized. description() takes no lock: the entry a task refers to was written
+// before the task was published through its TaskStore, and the arrays are reached through
+// volatile fields, so a reader sees every byte it needs even while another thread adds.
+class DescriptionPool implements ToDoListApp.DescriptionSource {
+    private static final int PAGE_SIZE = 1 << 20;
+
+    private volatile byte[][] pages = new byte[4][];
+    private int pageCount;
+    private int pagePosition = PAGE_SIZE;
+    // Page number in the high half, offset in the low half
+    private volatile long[] locations = new long[1024];
+    private int[] hashes = new int[1024];
+    private int count;
+    // Open addressing: entry number + 1 per slot, 0 for empty, at most half full
+    private int[] slots = new int[2048];
+
+    // The entry holding the description, added if it is new
+    public synchronized int intern(String description) {
+        byte[] bytes = description.getBytes(StandardCharsets.UTF_8);
+        int hash = Arrays.hashCode(bytes);
+        int mask = slots.length - 1;
+        int slot = mix(hash) & mask;
+        while (slots[slot] != 0) {
+            int entry = slots[slot] - 1;
+            if (hashes[entry] == hash && bytesEqual(entry, bytes)) {
+                return entry;
+            }
+            slot = (slot + 1) & mask;
+        }
+        int entry = append(bytes, hash);
+        slots[slot] = entry + 1;
+        if (count * 2 > slots.length) {
+            rehash();
+        }
+        return entry;
+    }
+
+    // Distinct descriptions held
+    public synchronized int size() {
+        return count;
+    }
+
+    // Bytes taken by the pages, used or not
+    public synchronized long pageBytes() {
+        long bytes = 0;
+        for (int i = 0; i < pageCount; i++) {
+            bytes += pages[i].length;
+        }
+        return bytes;
+    }
+
+    @Override
+    public String description(int entry) {
+        long location = locations[entry];
+        byte[] page = pages[(int) (location >>> 32)];
+        int position = (int) location;
+        int length = 0;
+        for (int shift = 0;; shift += 7) {
+            byte b = page[position++];
+            length |= (b & 0x7f) << shift;
+            if (b >= 0) {
+                break;
+            }
+        }
+        return new String(page, position, length, StandardCharsets.UTF_8);
+    }
+
+    private int append(byte[] bytes, int hash) {
+        int needed = varintSize(bytes.length) + bytes.length;
+        if (PAGE_SIZE - pagePosition < needed) {
+            // A description longer than a page gets a page of its own size
+            addPage(new byte[Math.max(PAGE_SIZE, needed)]);
+        }
+        byte[][] pages = this.pages;
+        int pageIndex = pageCount - 1;
+        byte[] page = pages[pageIndex];
+        int start = pagePosition;
+        int position = start;
+        int length = bytes.length;
+        while (length >= 0x80) {
+            page[position++] = (byte) (length | 0x80);
+            length >>>= 7;
+        }
+        page[position++] = (byte) length;
+        System.arraycopy(bytes, 0, page, position, bytes.length);
+        pagePosition = position + bytes.length;
+        if (page.length > PAGE_SIZE) {
+            // Nothing else fits in an oversized page
+            pagePosition = PAGE_SIZE;
+        }
+
+        if (count == hashes.length) {
+            hashes = Arrays.copyOf(hashes, count * 2);
+            locations = Arrays.copyOf(locations, count * 2);
+        }
+        long[] locations = this.locations;
+        locations[count] = (long) pageIndex << 32 | start;
+        hashes[count] = hash;
+        return count++;
+    }
+
+    private void addPage(byte[] page) {
+        byte[][] pages = this.pages;
+        if (pageCount == pages.length) {
+            pages = Arrays.copyOf(pages, pageCount * 2);
+        }
+        pages[pageCount++] = page;
+        this.pages = pages;
+        pagePosition = 0;
+    }
+
+    private boolean bytesEqual(int entry, byte[] bytes) {
+        long location = locations[entry];
+        byte[] page = pages[(int) (location >>> 32)];
+        int position = (int) location;
+        int length = 0;
+        for (int shift = 0;; shift += 7) {
+            byte b = page[position++];
+            length |= (b & 0x7f) << shift;
+            if (b >= 0) {
+                break;
+            }
+        }
+        return length == bytes.length && Arrays.equals(page, position, position + length, bytes, 0, length);
+    }
+
+    private void rehash() {
+        int[] resized = new int[slots.length * 2];
+        int mask = resized.length - 1;
+        for (int entry = 0; entry < count; entry++) {
+            int slot = mix(hashes[entry]) & mask;
+            while (resized[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            resized[slot] = entry + 1;
+        }
+        slots = resized;
+    }
+
+    // Spread Arrays.hashCode, whose low bits are poor for short similar strings
+    private static int mix(int hash) {
+        hash *= 0x9e3779b9;
+        return hash ^ (hash >>> 16);
+    }
+
+    private static int varintSize(int value) {
+        int size = 1;
+        while (value >= 0x80) {
+            value >>>= 7;
+            size++;
+        }
+        return size;
+    }
+}
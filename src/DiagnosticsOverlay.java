@@ -0,0 +1,59 @@
+import javax.swing.JComponent;
+import javax.swing.Timer;
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.FontMetrics;
+import java.awt.Graphics;
+
+// The window's diagnostics overlay: a translucent table of the Metrics latency histograms drawn
+// over the top right corner of the window, refreshed twice a second while it is shown. It is
+// the frame's glass pane, and has no mouse listeners, so clicks pass through it to the window.
+class DiagnosticsOverlay extends JComponent {
+    private static final long serialVersionUID = 1L;
+    private static final Color BACKGROUND = new Color(0, 0, 0, 190);
+    private static final String HEADER = String.format("%-16s %8s %9s %9s %9s", "operation", "count", "p50 ms", "p99 ms", "max ms");
+
+    private final Timer timer = new Timer(500, e -> repaint());
+    private final Font font = new Font(Font.MONOSPACED, Font.PLAIN, 12);
+
+    public DiagnosticsOverlay() {
+        setOpaque(false);
+    }
+
+    // Show or hide the overlay. Showing it also turns the instrumentation on.
+    public void toggle() {
+        if (isVisible()) {
+            timer.stop();
+            setVisible(false);
+        } else {
+            Metrics.enable();
+            setVisible(true);
+            timer.start();
+        }
+    }
+
+    @Override
+    protected void paintComponent(Graphics g) {
+        g.setFont(font);
+        FontMetrics metrics = g.getFontMetrics();
+        Metrics.Op[] ops = Metrics.Op.values();
+        int lineHeight = metrics.getHeight();
+        int width = metrics.stringWidth(HEADER) + 16;
+        int height = lineHeight * (ops.length + 1) + 12;
+        int x = getWidth() - width - 8;
+        int y = 8;
+
+        g.setColor(BACKGROUND);
+        g.fillRect(x, y, width, height);
+        g.setColor(Color.WHITE);
+        int baseline = y + 6 + metrics.getAscent();
+        g.drawString(HEADER, x + 8, baseline);
+        for (Metrics.Op op : ops) {
+            baseline += lineHeight;
+            LatencyHistogram histogram = Metrics.histogram(op);
+            g.drawString(String.format("%-16s %8d %9.3f %9.3f %9.3f", op.name().toLowerCase(), histogram.count(),
+                    histogram.percentileNanos(0.5) / 1e6, histogram.percentileNanos(0.99) / 1e6,
+                    histogram.maxNanos() / 1e6), x + 8, baseline);
+        }
+    }
+}
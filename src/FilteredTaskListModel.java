@@ -0,0 +1,172 @@
+import javax.swing.AbstractListModel;
+import javax.swing.Timer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+
+// List model showing the tasks of one view that match a search. Matching rows are streamed in
+// over several Event Dispatch Thread ticks, each a few milliseconds long, so the first rows show
+// up at once and typing stays responsive on huge lists.
+//
+// Few matches are looked up directly and sorted by list position. Many matches are found by
+// walking snapshots of the view's stores in order, which stay valid even if a store changes
+// while the walk is still going.
+class FilteredTaskListModel extends AbstractListModel<ToDoListApp.Task> {
+    private static final long serialVersionUID = 1L;
+    private static final long TICK_NANOS = 8_000_000;
+
+    private final ArrayList<ToDoListApp.Task> rows = new ArrayList<>();
+    private final Timer streamer;
+    private Iterator<ToDoListApp.Task> pending;
+    private SearchIndex.Result result;
+
+    public FilteredTaskListModel() {
+        streamer = new Timer(0, e -> streamRows());
+        streamer.setRepeats(true);
+    }
+
+    // Replace the rows with the tasks from the given stores, in order, that are in the result
+    public void show(TaskStore[] stores, SearchIndex.Result result) {
+        streamer.stop();
+        int oldSize = rows.size();
+        rows.clear();
+        if (oldSize > 0) {
+            fireIntervalRemoved(this, 0, oldSize - 1);
+        }
+
+        this.result = result;
+        int total = 0;
+        for (TaskStore store : stores) {
+            total += store.size();
+        }
+        if (result.size() * 16L < total) {
+            pending = sortedMatches(stores, result).iterator();
+        } else {
+            ArrayList<Iterator<ToDoListApp.Task>> walks = new ArrayList<>();
+            for (TaskStore store : stores) {
+                walks.add(store.snapshot().iterator());
+            }
+            pending = new MatchingIterator(walks.iterator(), result);
+        }
+        streamRows();
+    }
+
+    public void stop() {
+        streamer.stop();
+        pending = null;
+    }
+
+    public boolean isStreaming() {
+        return pending != null;
+    }
+
+    private static ArrayList<ToDoListApp.Task> sortedMatches(TaskStore[] stores, SearchIndex.Result result) {
+        long[] positions = new long[result.size()];
+        int count = 0;
+        for (long id : result.taskIds()) {
+            int offset = 0;
+            for (TaskStore store : stores) {
+                int index = store.indexOf(id);
+                if (index >= 0) {
+                    positions[count++] = offset + index;
+                    break;
+                }
+                offset += store.size();
+            }
+        }
+        Arrays.sort(positions, 0, count);
+
+        ArrayList<ToDoListApp.Task> matches = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            matches.add(taskAt(stores, (int) positions[i]));
+        }
+        return matches;
+    }
+
+    private static ToDoListApp.Task taskAt(TaskStore[] stores, int position) {
+        for (TaskStore store : stores) {
+            if (position < store.size()) {
+                return store.get(position);
+            }
+            position -= store.size();
+        }
+        throw new IndexOutOfBoundsException("Position: " + position);
+    }
+
+    // Add matching rows until this tick's time is used up, then continue on the next tick
+    private void streamRows() {
+        if (pending == null) {
+            return;
+        }
+        long deadline = System.nanoTime() + TICK_NANOS;
+        int first = rows.size();
+        int checked = 0;
+        while (pending.hasNext()) {
+            rows.add(pending.next());
+            if ((++checked & 1023) == 0 && System.nanoTime() > deadline) {
+                break;
+            }
+        }
+        if (rows.size() > first) {
+            fireIntervalAdded(this, first, rows.size() - 1);
+        }
+        if (pending.hasNext()) {
+            streamer.start();
+        } else {
+            stop();
+        }
+    }
+
+    @Override
+    public int getSize() {
+        return rows.size();
+    }
+
+    @Override
+    public ToDoListApp.Task getElementAt(int index) {
+        return rows.get(index);
+    }
+
+    // Walks several task iterators in turn, yielding only the tasks in the result
+    private static final class MatchingIterator implements Iterator<ToDoListApp.Task> {
+        private final Iterator<Iterator<ToDoListApp.Task>> walks;
+        private final SearchIndex.Result result;
+        private Iterator<ToDoListApp.Task> walk;
+        private ToDoListApp.Task next;
+
+        MatchingIterator(Iterator<Iterator<ToDoListApp.Task>> walks, SearchIndex.Result result) {
+            this.walks = walks;
+            this.result = result;
+            advance();
+        }
+
+        private void advance() {
+            next = null;
+            while (true) {
+                while (walk == null || !walk.hasNext()) {
+                    if (!walks.hasNext()) {
+                        return;
+                    }
+                    walk = walks.next();
+                }
+                ToDoListApp.Task task = walk.next();
+                if (result.matches(task.getId())) {
+                    next = task;
+                    return;
+                }
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        @Override
+        public ToDoListApp.Task next() {
+            ToDoListApp.Task task = next;
+            advance();
+            return task;
+        }
+    }
+}
@@ -0,0 +1,433 @@
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+
+// Keeps the lists in a database through JDBC, one row per task, so each mutation updates one
+// row instead of rewriting a file. It is meant for an embedded database such as SQLite
+// (jdbc:sqlite:tasks.db) or H2 (jdbc:h2:./tasks), whose driver must be on the class path; the
+// SQL is plain enough for either.
+//
+// Tables, shared by every list in the database:
+//   task_lists (list_name)    the lists imported so far
+//   tasks (list_name, id, completed, sort_key, description, created_at, priority, due_date,
+//          recurrence)
+//
+// A list's order is kept in sort_key, indexed together with the list, so loading is one
+// indexed range scan. New and completed tasks go SORT_GAP past the last key of their list, and
+// a moved task takes a key halfway between its new neighbours. When two neighbours' keys have
+// no room left between them, the keys around them are spread out again, over a range widened
+// until it has room to spare, so repeated moves into one spot rewrite a few rows rather than
+// the whole list. To find neighbours the repository mirrors both lists' order in memory.
+//
+// All statements are prepared once. Inside a batch, consecutive rows for the same statement go
+// to the database together with executeBatch(), and the batch is one transaction.
+class JdbcTaskRepository implements TaskRepository {
+    private static final long SORT_GAP = 1L << 20;
+    // The least spacing that spreading keys out must leave between neighbours
+    private static final long MIN_SPREAD_GAP = SORT_GAP >> 6;
+    private static final int IMPORT_BATCH_SIZE = 1000;
+
+    private final String url;
+    private final String listName;
+    private Connection connection;
+    private PreparedStatement insert;
+    private PreparedStatement update;
+    private PreparedStatement delete;
+    private PreparedStatement place;
+    // The statement whose rows of the open batch are not yet sent
+    private PreparedStatement pending;
+    private boolean inBatch;
+
+    // Both lists in the order stored, and each task's sort key
+    private final TaskStore[] mirror = { new TaskStore(), new TaskStore() };
+    private LongLongMap sortKeys = new LongLongMap();
+
+    public JdbcTaskRepository(String url, String listName) {
+        this.url = url;
+        this.listName = listName;
+    }
+
+    private Connection connection() throws SQLException {
+        if (connection == null) {
+            connection = DriverManager.getConnection(url);
+            try (Statement statement = connection.createStatement()) {
+                statement.executeUpdate("CREATE TABLE IF NOT EXISTS task_lists (list_name VARCHAR(255) NOT NULL PRIMARY KEY)");
+                statement.executeUpdate("CREATE TABLE IF NOT EXISTS tasks (list_name VARCHAR(255) NOT NULL, id BIGINT NOT NULL,"
+                        + " completed INTEGER NOT NULL, sort_key BIGINT NOT NULL, description VARCHAR NOT NULL,"
+                        + " created_at BIGINT NOT NULL, priority INTEGER NOT NULL, due_date BIGINT NOT NULL,"
+                        + " recurrence INTEGER DEFAULT 0 NOT NULL, PRIMARY KEY (list_name, id))");
+                statement.executeUpdate("CREATE INDEX IF NOT EXISTS tasks_order ON tasks (list_name, completed, sort_key)");
+                addRecurrenceColumn(statement);
+            }
+            insert = connection.prepareStatement("INSERT INTO tasks (list_name, id, completed, sort_key, description,"
+                    + " created_at, priority, due_date, recurrence) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)");
+            update = connection.prepareStatement("UPDATE tasks SET description = ?, priority = ?, due_date = ?, recurrence = ?"
+                    + " WHERE list_name = ? AND id = ?");
+            delete = connection.prepareStatement("DELETE FROM tasks WHERE list_name = ? AND id = ?");
+            place = connection.prepareStatement("UPDATE tasks SET completed = ?, sort_key = ? WHERE list_name = ? AND id = ?");
+        }
+        return connection;
+    }
+
+    // Tables made before recurring tasks lack the column
+    private static void addRecurrenceColumn(Statement statement) throws SQLException {
+        try {
+            statement.executeQuery("SELECT recurrence FROM tasks WHERE 1 = 0").close();
+        } catch (SQLException e) {
+            statement.executeUpdate("ALTER TABLE tasks ADD COLUMN recurrence INTEGER DEFAULT 0 NOT NULL");
+        }
+    }
+
+    @Override
+    public synchronized boolean exists() throws IOException {
+        try (PreparedStatement query = connection().prepareStatement("SELECT 1 FROM task_lists WHERE list_name = ?")) {
+            query.setString(1, listName);
+            try (ResultSet result = query.executeQuery()) {
+                return result.next();
+            }
+        } catch (SQLException e) {
+            throw databaseError(e);
+        }
+    }
+
+    // Read both lists, or on the first start store the imported ones the stores already hold
+    @Override
+    public synchronized void load(TaskStore tasks, TaskStore completedTasks) throws IOException {
+        try {
+            if (exists()) {
+                read(tasks, completedTasks);
+            } else {
+                importLists(tasks, completedTasks);
+            }
+        } catch (SQLException e) {
+            throw databaseError(e);
+        }
+    }
+
+    private void read(TaskStore tasks, TaskStore completedTasks) throws SQLException {
+        ArrayList<ArrayList<ToDoListApp.Task>> lists = new ArrayList<>();
+        lists.add(new ArrayList<>());
+        lists.add(new ArrayList<>());
+        LongLongMap keys = new LongLongMap();
+        try (PreparedStatement query = connection().prepareStatement("SELECT id, completed, sort_key, description, created_at,"
+                + " priority, due_date, recurrence FROM tasks WHERE list_name = ? ORDER BY list_name, completed, sort_key")) {
+            query.setString(1, listName);
+            try (ResultSet result = query.executeQuery()) {
+                while (result.next()) {
+                    long id = result.getLong(1);
+                    keys.put(id, result.getLong(3));
+                    lists.get(result.getInt(2) != 0 ? COMPLETED : TASKS).add(new ToDoListApp.Task(id, result.getString(4),
+                            result.getLong(5), result.getInt(6), result.getLong(7), result.getInt(8)));
+                }
+            }
+        }
+        tasks.addAll(lists.get(TASKS));
+        completedTasks.addAll(lists.get(COMPLETED));
+        mirror[TASKS].clear();
+        mirror[COMPLETED].clear();
+        mirror[TASKS].addAll(lists.get(TASKS));
+        mirror[COMPLETED].addAll(lists.get(COMPLETED));
+        sortKeys = keys;
+    }
+
+    // Insert every task of both stores, and mark the list imported, in one transaction
+    private void importLists(TaskStore tasks, TaskStore completedTasks) throws SQLException {
+        Connection connection = connection();
+        connection.setAutoCommit(false);
+        try {
+            TaskStore[] stores = { tasks, completedTasks };
+            for (int list = TASKS; list <= COMPLETED; list++) {
+                ArrayList<ToDoListApp.Task> copied = new ArrayList<>(stores[list].size());
+                int rows = 0;
+                for (ToDoListApp.Task task : stores[list]) {
+                    long key = (copied.size() + 1) * SORT_GAP;
+                    bindInsert(task, list, key);
+                    insert.addBatch();
+                    if (++rows % IMPORT_BATCH_SIZE == 0) {
+                        insert.executeBatch();
+                    }
+                    sortKeys.put(task.getId(), key);
+                    copied.add(task);
+                }
+                insert.executeBatch();
+                mirror[list].addAll(copied);
+            }
+            try (PreparedStatement imported = connection.prepareStatement("INSERT INTO task_lists (list_name) VALUES (?)")) {
+                imported.setString(1, listName);
+                imported.executeUpdate();
+            }
+            connection.commit();
+        } catch (SQLException e) {
+            connection.rollback();
+            throw e;
+        } finally {
+            connection.setAutoCommit(true);
+        }
+    }
+
+    @Override
+    public synchronized void logAdd(ToDoListApp.Task task) throws IOException {
+        try {
+            connection();
+            long key = endKey(TASKS);
+            bindInsert(task, TASKS, key);
+            sortKeys.put(task.getId(), key);
+            mirror[TASKS].add(task);
+            execute(insert);
+        } catch (SQLException e) {
+            throw databaseError(e);
+        }
+    }
+
+    @Override
+    public synchronized void logEdit(int list, ToDoListApp.Task editedTask) throws IOException {
+        try {
+            connection();
+            mirror[list].replace(editedTask);
+            update.setString(1, editedTask.getDescription());
+            update.setInt(2, editedTask.getPriority());
+            update.setLong(3, editedTask.getDueDate());
+            update.setInt(4, editedTask.getRecurrence());
+            update.setString(5, listName);
+            update.setLong(6, editedTask.getId());
+            execute(update);
+        } catch (SQLException e) {
+            throw databaseError(e);
+        }
+    }
+
+    @Override
+    public synchronized void logRemove(int list, long id) throws IOException {
+        try {
+            connection();
+            mirror[list].remove(id);
+            sortKeys.remove(id);
+            delete.setString(1, listName);
+            delete.setLong(2, id);
+            execute(delete);
+        } catch (SQLException e) {
+            throw databaseError(e);
+        }
+    }
+
+    @Override
+    public synchronized void logComplete(long id) throws IOException {
+        moveToList(id, TASKS, COMPLETED);
+    }
+
+    @Override
+    public synchronized void logUnComplete(long id) throws IOException {
+        moveToList(id, COMPLETED, TASKS);
+    }
+
+    // Put a task at the end of the other list
+    private void moveToList(long id, int from, int to) throws IOException {
+        try {
+            connection();
+            long key = endKey(to);
+            mirror[to].add(mirror[from].remove(id));
+            placeTask(id, to, key);
+        } catch (SQLException e) {
+            throw databaseError(e);
+        }
+    }
+
+    @Override
+    public synchronized void logMove(int list, long id, int newIndex) throws IOException {
+        try {
+            connection();
+            TaskStore order = mirror[list];
+            order.move(id, newIndex);
+            long before = newIndex > 0 ? sortKeys.get(order.get(newIndex - 1).getId()) : LongLongMap.MISSING;
+            long after = newIndex < order.size() - 1 ? sortKeys.get(order.get(newIndex + 1).getId()) : LongLongMap.MISSING;
+            if (before == LongLongMap.MISSING) {
+                placeTask(id, list, after == LongLongMap.MISSING ? SORT_GAP : after - SORT_GAP);
+            } else if (after == LongLongMap.MISSING) {
+                placeTask(id, list, before + SORT_GAP);
+            } else if (after - before > 1) {
+                placeTask(id, list, before + (after - before) / 2);
+            } else {
+                spread(list, newIndex);
+            }
+        } catch (SQLException e) {
+            throw databaseError(e);
+        }
+    }
+
+    // Give the tasks around a position evenly spaced keys, in one transaction unless a batch is
+    // already open. The range doubles until the keys just outside it leave at least
+    // MIN_SPREAD_GAP per task; a range reaching an end of the list is bounded by SORT_GAP spacing
+    // there instead.
+    private void spread(int list, int index) throws SQLException {
+        TaskStore order = mirror[list];
+        int size = order.size();
+        int from;
+        int to;
+        long low;
+        long step;
+        int width = 2;
+        while (true) {
+            from = Math.max(0, index - width / 2);
+            to = Math.min(size - 1, from + width - 1);
+            from = Math.max(0, to - width + 1);
+            int count = to - from + 1;
+            long before = from > 0 ? sortKeys.get(order.get(from - 1).getId()) : LongLongMap.MISSING;
+            long after = to < size - 1 ? sortKeys.get(order.get(to + 1).getId()) : LongLongMap.MISSING;
+            if (before == LongLongMap.MISSING && after == LongLongMap.MISSING) {
+                low = 0;
+                step = SORT_GAP;
+                break;
+            } else if (before == LongLongMap.MISSING) {
+                low = after - (count + 1) * SORT_GAP;
+                step = SORT_GAP;
+                break;
+            } else if (after == LongLongMap.MISSING) {
+                low = before;
+                step = SORT_GAP;
+                break;
+            } else if ((after - before) / (count + 1) >= MIN_SPREAD_GAP) {
+                low = before;
+                step = (after - before) / (count + 1);
+                break;
+            }
+            width *= 2;
+        }
+
+        boolean ownTransaction = !inBatch;
+        if (ownTransaction) {
+            beginBatch();
+        }
+        for (int i = from; i <= to; i++) {
+            placeTask(order.get(i).getId(), list, low + (i - from + 1) * step);
+        }
+        if (ownTransaction) {
+            commit();
+        }
+    }
+
+    private void placeTask(long id, int list, long key) throws SQLException {
+        sortKeys.put(id, key);
+        place.setInt(1, list == COMPLETED ? 1 : 0);
+        place.setLong(2, key);
+        place.setString(3, listName);
+        place.setLong(4, id);
+        execute(place);
+    }
+
+    private void bindInsert(ToDoListApp.Task task, int list, long key) throws SQLException {
+        insert.setString(1, listName);
+        insert.setLong(2, task.getId());
+        insert.setInt(3, list == COMPLETED ? 1 : 0);
+        insert.setLong(4, key);
+        insert.setString(5, task.getDescription());
+        insert.setLong(6, task.getCreatedAt());
+        insert.setInt(7, task.getPriority());
+        insert.setLong(8, task.getDueDate());
+        insert.setInt(9, task.getRecurrence());
+    }
+
+    // The key after the last task of a list
+    private long endKey(int list) {
+        TaskStore order = mirror[list];
+        return order.isEmpty() ? SORT_GAP : sortKeys.get(order.get(order.size() - 1).getId()) + SORT_GAP;
+    }
+
+    // Run a bound statement now, or add it to the open batch
+    private void execute(PreparedStatement statement) throws SQLException {
+        if (!inBatch) {
+            statement.executeUpdate();
+            return;
+        }
+        if (pending != statement) {
+            sendPending();
+            connection.setAutoCommit(false);
+            pending = statement;
+        }
+        statement.addBatch();
+    }
+
+    private void sendPending() throws SQLException {
+        if (pending != null) {
+            pending.executeBatch();
+            pending = null;
+        }
+    }
+
+    @Override
+    public synchronized void beginBatch() {
+        inBatch = true;
+    }
+
+    @Override
+    public synchronized void commitBatch() throws IOException {
+        try {
+            commit();
+        } catch (SQLException e) {
+            throw databaseError(e);
+        }
+    }
+
+    private void commit() throws SQLException {
+        if (!inBatch) {
+            return;
+        }
+        try {
+            sendPending();
+            if (!connection.getAutoCommit()) {
+                connection.commit();
+            }
+        } finally {
+            inBatch = false;
+            connection.setAutoCommit(true);
+        }
+    }
+
+    // Roll the open batch back and reread the stored order, which the mirror ran ahead of
+    @Override
+    public synchronized void abortBatch() {
+        inBatch = false;
+        if (connection == null) {
+            return;
+        }
+        try {
+            if (pending != null) {
+                pending.clearBatch();
+                pending = null;
+            }
+            if (!connection.getAutoCommit()) {
+                connection.rollback();
+                connection.setAutoCommit(true);
+            }
+            read(new TaskStore(), new TaskStore());
+        } catch (SQLException e) {
+            System.out.println("Error rolling back task database: " + e.getMessage());
+        }
+    }
+
+    // Every row is already up to date
+    @Override
+    public void saved(TaskStore.Snapshot tasks, TaskStore.Snapshot completedTasks) {
+    }
+
+    @Override
+    public synchronized void close() {
+        if (connection == null) {
+            return;
+        }
+        try {
+            connection.close();
+        } catch (SQLException e) {
+            System.out.println("Error closing task database: " + e.getMessage());
+        }
+        connection = null;
+    }
+
+    private static IOException databaseError(SQLException e) {
+        return new IOException("Task database error: " + e.getMessage(), e);
+    }
+}
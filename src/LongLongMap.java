@@ -0,0 +1,116 @@
+import java.util.Arrays;
+
+// Map from long to long on primitive arrays (open addressing, linear probing), for per-task
+// indexes keyed by task ID. A boxed HashMap costs several objects per entry, which dominates
+// the heap for large lists. Long.MIN_VALUE cannot be used as a key or a value.
+class LongLongMap {
+    static final long MISSING = Long.MIN_VALUE;
+    private static final long EMPTY = Long.MIN_VALUE;
+
+    private long[] keys;
+    private long[] values;
+    private int size;
+
+    LongLongMap() {
+        this(8);
+    }
+
+    // Sized so that the expected number of entries fits without rehashing
+    LongLongMap(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(expectedSize, 8) * 2 - 1) * 2;
+        keys = newKeys(capacity);
+        values = new long[capacity];
+    }
+
+    private static long[] newKeys(int capacity) {
+        long[] keys = new long[capacity];
+        Arrays.fill(keys, EMPTY);
+        return keys;
+    }
+
+    private int slot(long key) {
+        long hash = key * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32)) & (keys.length - 1);
+    }
+
+    long get(long key) {
+        for (int i = slot(key); keys[i] != EMPTY; i = (i + 1) & (keys.length - 1)) {
+            if (keys[i] == key) {
+                return values[i];
+            }
+        }
+        return MISSING;
+    }
+
+    boolean containsKey(long key) {
+        return get(key) != MISSING;
+    }
+
+    // Add a key that must not be present yet; returns false, changing nothing, if it is
+    boolean putIfAbsent(long key, long value) {
+        if (containsKey(key)) {
+            return false;
+        }
+        put(key, value);
+        return true;
+    }
+
+    void put(long key, long value) {
+        int i = slot(key);
+        for (; keys[i] != EMPTY; i = (i + 1) & (keys.length - 1)) {
+            if (keys[i] == key) {
+                values[i] = value;
+                return;
+            }
+        }
+        keys[i] = key;
+        values[i] = value;
+        if (++size > keys.length / 2) {
+            resize(keys.length * 2);
+        }
+    }
+
+    long remove(long key) {
+        int mask = keys.length - 1;
+        int i = slot(key);
+        for (; keys[i] != key; i = (i + 1) & mask) {
+            if (keys[i] == EMPTY) {
+                return MISSING;
+            }
+        }
+        long value = values[i];
+        size--;
+
+        // Shift later entries of the probe run back so lookups never stop at the hole
+        int hole = i;
+        for (int j = (i + 1) & mask; keys[j] != EMPTY; j = (j + 1) & mask) {
+            int home = slot(keys[j]);
+            if (((j - home) & mask) >= ((j - hole) & mask)) {
+                keys[hole] = keys[j];
+                values[hole] = values[j];
+                hole = j;
+            }
+        }
+        keys[hole] = EMPTY;
+        return value;
+    }
+
+    void clear() {
+        keys = newKeys(16);
+        values = new long[16];
+        size = 0;
+    }
+
+    private void resize(int capacity) {
+        long[] oldKeys = keys;
+        long[] oldValues = values;
+        keys = newKeys(capacity);
+        values = new long[capacity];
+        size = 0;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != EMPTY) {
+                put(oldKeys[i], oldValues[i]);
+            }
+        }
+    }
+}
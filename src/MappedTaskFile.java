@@ -0,0 +1,188 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+// A task text file mapped into memory with an index of where each line starts. Nothing is
+// decoded up front: a description is read from the mapping when a row is displayed or saved,
+// so a huge file costs one int per line on the heap instead of one String per line.
+//
+// Lines are split the way BufferedReader.readLine splits them (\n, \r or \r\n) and decoded
+// with the platform charset, like FileReader.
+class MappedTaskFile implements ToDoListApp.DescriptionSource {
+    private static final int MAX_REGION_SIZE = 1 << 30;
+
+    private final Charset charset = Charset.defaultCharset();
+    private final ArrayList<MappedByteBuffer> regions = new ArrayList<>();
+    private int[] regionFirstLine = new int[4];
+    private int[] lineStarts = new int[1024];
+    private int lineCount;
+
+    // Mapping is only used where the file can still be replaced while it is mapped (Windows
+    // refuses to rename over a mapped file) and where line breaks are single bytes
+    public static boolean isSupported() {
+        return File.separatorChar == '/' && Arrays.equals("\r\n".getBytes(Charset.defaultCharset()), new byte[] { '\r', '\n' });
+    }
+
+    public MappedTaskFile(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            long position = 0;
+            while (position < size) {
+                long length = Math.min(size - position, MAX_REGION_SIZE);
+                MappedByteBuffer region = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+                int indexed = indexRegion(region, (int) length, position + length == size);
+                if (indexed == 0) {
+                    throw new IOException("Line longer than " + MAX_REGION_SIZE + " bytes in " + file);
+                }
+                position += indexed;
+            }
+        }
+    }
+
+    // Record the line starts in one region and return how many bytes it covers. Regions other
+    // than the last end after their last line break, so no line straddles two regions.
+    private int indexRegion(MappedByteBuffer region, int length, boolean last) {
+        int end = length;
+        if (!last) {
+            while (end > 0 && region.get(end - 1) != '\n' && region.get(end - 1) != '\r') {
+                end--;
+            }
+            // Keep \r\n together in the next region if the break falls between them
+            if (end > 0 && end < length && region.get(end - 1) == '\r' && region.get(end) == '\n') {
+                end--;
+            }
+            if (end == 0) {
+                return 0;
+            }
+        }
+
+        int regionIndex = regions.size();
+        regions.add(region);
+        if (regionIndex == regionFirstLine.length) {
+            regionFirstLine = Arrays.copyOf(regionFirstLine, regionIndex * 2);
+        }
+        regionFirstLine[regionIndex] = lineCount;
+
+        int lineStart = 0;
+        for (int i = 0; i < end; i++) {
+            byte b = region.get(i);
+            if (b == '\n' || b == '\r') {
+                addLine(lineStart);
+                if (b == '\r' && i + 1 < end && region.get(i + 1) == '\n') {
+                    i++;
+                }
+                lineStart = i + 1;
+            }
+        }
+        if (lineStart < end) {
+            addLine(lineStart);
+        }
+        return end;
+    }
+
+    private void addLine(int start) {
+        if (lineCount == lineStarts.length) {
+            lineStarts = Arrays.copyOf(lineStarts, lineCount + (lineCount >> 1));
+        }
+        lineStarts[lineCount++] = start;
+    }
+
+    public int lineCount() {
+        return lineCount;
+    }
+
+    // The description without the priority, due date and recurrence markup of Task.toLine
+    @Override
+    public String description(int line) {
+        MappedByteBuffer buffer = buffer(line);
+        int start = lineStarts[line];
+        try {
+            ToDoListApp.Task.LineParts parts = parts(buffer, start);
+            byte[] bytes = new byte[parts.descriptionEnd - parts.descriptionStart];
+            buffer.get(start + parts.descriptionStart, bytes);
+            return ToDoListApp.Task.unescapeLineBreaks(new String(bytes, charset));
+        } catch (InternalError e) {
+            // The file was truncated underneath the mapping by another program
+            System.out.println("Error reading mapped task file: " + e.getMessage());
+            return "";
+        }
+    }
+
+    public int priority(int line) {
+        return parts(buffer(line), lineStarts[line]).priority;
+    }
+
+    public long dueDate(int line) {
+        return parts(buffer(line), lineStarts[line]).dueDate;
+    }
+
+    public int recurrence(int line) {
+        return parts(buffer(line), lineStarts[line]).recurrence;
+    }
+
+    // The markup is ASCII, and the charsets mapping is used with (see isSupported) write ASCII
+    // as single bytes, so the line is parsed without decoding it
+    private static ToDoListApp.Task.LineParts parts(MappedByteBuffer buffer, int start) {
+        return ToDoListApp.Task.parse(new Latin1Line(buffer, start, lineEnd(buffer, start)));
+    }
+
+    // Bytes of the mapping read as ISO-8859-1 characters, one per byte. Bytes of non-ASCII
+    // characters never match the markup.
+    private static final class Latin1Line implements CharSequence {
+        private final MappedByteBuffer buffer;
+        private final int start;
+        private final int end;
+
+        Latin1Line(MappedByteBuffer buffer, int start, int end) {
+            this.buffer = buffer;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        public int length() {
+            return end - start;
+        }
+
+        @Override
+        public char charAt(int index) {
+            return (char) (buffer.get(start + index) & 0xff);
+        }
+
+        @Override
+        public CharSequence subSequence(int from, int to) {
+            return new Latin1Line(buffer, start + from, start + to);
+        }
+
+        @Override
+        public String toString() {
+            byte[] bytes = new byte[end - start];
+            buffer.get(start, bytes);
+            return new String(bytes, StandardCharsets.ISO_8859_1);
+        }
+    }
+
+    private MappedByteBuffer buffer(int line) {
+        int region = Arrays.binarySearch(regionFirstLine, 0, regions.size(), line);
+        if (region < 0) {
+            region = -region - 2;
+        }
+        return regions.get(region);
+    }
+
+    private static int lineEnd(MappedByteBuffer buffer, int start) {
+        int end = start;
+        int limit = buffer.limit();
+        while (end < limit && buffer.get(end) != '\n' && buffer.get(end) != '\r') {
+            end++;
+        }
+        return end;
+    }
+}
@@ -0,0 +1,173 @@
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+
+// Latency instrumentation for the model's operations, loading and saving, and the Event Dispatch
+// Thread's list refreshes. Each operation has a LatencyHistogram, read over JMX (one MXBean per
+// operation under "ToDoList:type=Latency", and a switch at "ToDoList:type=Metrics") or in the
+// window's diagnostics overlay.
+//
+// Instrumentation is off until enable() is called, by --metrics or by opening the overlay. A
+// timed section is written as
+//
+//     long start = Metrics.start();
+//     ...
+//     Metrics.record(Metrics.Op.ADD, start);
+//
+// and while disabled start() is one volatile read returning 0, which record() ignores, so the
+// clock is never read.
+class Metrics {
+    enum Op {
+        ADD, EDIT, REMOVE, COMPLETE, UNCOMPLETE, MOVE,
+        LOAD, INDEX, SAVE_TEXT, SAVE_BINARY, REPOSITORY_WRITE,
+        REFRESH, SEARCH, HTTP_REQUEST
+    }
+
+    private static final LatencyHistogram[] histograms = new LatencyHistogram[Op.values().length];
+    private static volatile boolean enabled;
+    private static boolean registered;
+
+    static {
+        for (int i = 0; i < histograms.length; i++) {
+            histograms[i] = new LatencyHistogram();
+        }
+    }
+
+    private Metrics() {
+    }
+
+    public static long start() {
+        return enabled ? System.nanoTime() : 0;
+    }
+
+    public static void record(Op op, long start) {
+        if (start != 0) {
+            histograms[op.ordinal()].record(System.nanoTime() - start);
+        }
+    }
+
+    public static LatencyHistogram histogram(Op op) {
+        return histograms[op.ordinal()];
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    // Start recording, and publish the histograms over JMX the first time
+    public static synchronized void enable() {
+        enabled = true;
+        if (registered) {
+            return;
+        }
+        registered = true;
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            server.registerMBean(new Control(), new ObjectName("ToDoList:type=Metrics"));
+            for (Op op : Op.values()) {
+                server.registerMBean(new Latency(op), new ObjectName("ToDoList:type=Latency,name=" + op));
+            }
+        } catch (JMException e) {
+            System.out.println("Error registering metrics: " + e.getMessage());
+        }
+    }
+
+    public static void disable() {
+        enabled = false;
+    }
+
+    public static void reset() {
+        for (LatencyHistogram histogram : histograms) {
+            histogram.reset();
+        }
+    }
+
+    public interface MetricsMXBean {
+        boolean isEnabled();
+
+        void setEnabled(boolean enabled);
+
+        void reset();
+    }
+
+    public interface LatencyMXBean {
+        long getCount();
+
+        double getMeanMillis();
+
+        double getP50Millis();
+
+        double getP99Millis();
+
+        double getP999Millis();
+
+        double getMaxMillis();
+
+        void reset();
+    }
+
+    private static final class Control implements MetricsMXBean {
+        @Override
+        public boolean isEnabled() {
+            return Metrics.isEnabled();
+        }
+
+        @Override
+        public void setEnabled(boolean enabled) {
+            if (enabled) {
+                enable();
+            } else {
+                disable();
+            }
+        }
+
+        @Override
+        public void reset() {
+            Metrics.reset();
+        }
+    }
+
+    private static final class Latency implements LatencyMXBean {
+        private final LatencyHistogram histogram;
+
+        Latency(Op op) {
+            this.histogram = histogram(op);
+        }
+
+        @Override
+        public long getCount() {
+            return histogram.count();
+        }
+
+        @Override
+        public double getMeanMillis() {
+            return histogram.meanNanos() / 1e6;
+        }
+
+        @Override
+        public double getP50Millis() {
+            return histogram.percentileNanos(0.5) / 1e6;
+        }
+
+        @Override
+        public double getP99Millis() {
+            return histogram.percentileNanos(0.99) / 1e6;
+        }
+
+        @Override
+        public double getP999Millis() {
+            return histogram.percentileNanos(0.999) / 1e6;
+        }
+
+        @Override
+        public double getMaxMillis() {
+            return histogram.maxNanos() / 1e6;
+        }
+
+        @Override
+        public void reset() {
+            histogram.reset();
+        }
+    }
+}
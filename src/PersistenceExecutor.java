@@ -0,0 +1,122 @@
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+// Runs all file writes on one background thread so the Event Dispatch Thread never waits on the
+// disk. Writes run in the order they were submitted. A write submitted with a key replaces any
+// write with the same key that has not started yet, so a burst of saves of one file collapses
+// into a single write of its latest contents.
+class PersistenceExecutor {
+    interface Write {
+        void run() throws IOException;
+    }
+
+    // Called on the persistence thread after each write
+    interface Listener {
+        void writeCompleted(boolean idle);
+
+        void writeFailed(IOException e);
+    }
+
+    private final ExecutorService writer;
+    private final HashMap<Object, Write> latest = new HashMap<>();
+    private Listener listener;
+    private int queued;
+    private boolean closed;
+
+    public PersistenceExecutor() {
+        writer = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "task-persistence");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public void setListener(Listener listener) {
+        this.listener = listener;
+    }
+
+    public synchronized void submit(Write write) {
+        if (closed) {
+            throw new IllegalStateException("Persistence executor is closed");
+        }
+        queued++;
+        writer.execute(() -> run(write));
+    }
+
+    public synchronized void submitLatest(Object key, Write write) {
+        if (closed) {
+            throw new IllegalStateException("Persistence executor is closed");
+        }
+        if (latest.put(key, write) != null) {
+            return;
+        }
+        queued++;
+        writer.execute(() -> {
+            Write newest;
+            synchronized (this) {
+                newest = latest.remove(key);
+            }
+            run(newest);
+        });
+    }
+
+    private void run(Write write) {
+        IOException failure = null;
+        try {
+            write.run();
+        } catch (IOException e) {
+            failure = e;
+        } catch (RuntimeException e) {
+            failure = new IOException(e);
+        }
+
+        boolean idle;
+        synchronized (this) {
+            idle = --queued == 0;
+        }
+        Listener current = listener;
+        if (current == null) {
+            if (failure != null) {
+                System.out.println("Error saving tasks: " + failure.getMessage());
+            }
+        } else if (failure != null) {
+            current.writeFailed(failure);
+        } else {
+            current.writeCompleted(idle);
+        }
+    }
+
+    public synchronized boolean isIdle() {
+        return queued == 0;
+    }
+
+    // Block until every write submitted so far has finished
+    public void flush() {
+        try {
+            writer.submit(() -> { }).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            System.out.println("Error flushing task writes: " + e.getMessage());
+        }
+    }
+
+    // Finish every pending write, then stop the thread. Safe to call more than once.
+    public void close() {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+        }
+        writer.shutdown();
+        try {
+            writer.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
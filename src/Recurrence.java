@@ -0,0 +1,82 @@
+import java.time.LocalDate;
+
+// Recurrence rules of repeating tasks, packed into an int the way priorities and due dates are
+// plain numbers on a Task: the interval in the high bits and the unit in the low two, so 0
+// (Task.NO_RECURRENCE) is no rule. Written as todo.txt's rec: extension writes them: "1d",
+// "2w", "1m", "1y".
+final class Recurrence {
+    static final int DAYS = 0;
+    static final int WEEKS = 1;
+    static final int MONTHS = 2;
+    static final int YEARS = 3;
+    static final int MAX_INTERVAL = 999;
+
+    private static final String UNITS = "dwmy";
+
+    private Recurrence() {
+    }
+
+    // A rule repeating every interval units
+    static int of(int interval, int unit) {
+        if (interval < 1 || interval > MAX_INTERVAL || unit < DAYS || unit > YEARS) {
+            throw new IllegalArgumentException("Bad recurrence: every " + interval + " of unit " + unit);
+        }
+        return interval << 2 | unit;
+    }
+
+    static int interval(int rule) {
+        return rule >>> 2;
+    }
+
+    static int unit(int rule) {
+        return rule & 3;
+    }
+
+    // The occurrence after the one on the given day (days since 1970-01-01)
+    static long next(long epochDay, int rule) {
+        LocalDate day = LocalDate.ofEpochDay(epochDay);
+        int interval = interval(rule);
+        LocalDate next = switch (unit(rule)) {
+            case DAYS -> day.plusDays(interval);
+            case WEEKS -> day.plusWeeks(interval);
+            case MONTHS -> day.plusMonths(interval);
+            default -> day.plusYears(interval);
+        };
+        return next.toEpochDay();
+    }
+
+    static String format(int rule) {
+        return interval(rule) + String.valueOf(UNITS.charAt(unit(rule)));
+    }
+
+    // The rule for text such as "2w", or Task.NO_RECURRENCE if it is not one
+    static int parse(String text) {
+        int length = text.length();
+        if (length < 2 || length > 4) {
+            return ToDoListApp.Task.NO_RECURRENCE;
+        }
+        int unit = UNITS.indexOf(text.charAt(length - 1));
+        int interval = 0;
+        for (int i = 0; i < length - 1; i++) {
+            char c = text.charAt(i);
+            if (c < '0' || c > '9') {
+                return ToDoListApp.Task.NO_RECURRENCE;
+            }
+            interval = interval * 10 + c - '0';
+        }
+        if (unit < 0 || interval < 1) {
+            return ToDoListApp.Task.NO_RECURRENCE;
+        }
+        return of(interval, unit);
+    }
+
+    // "Daily", "Every 2 weeks" and so on, for the task dialog
+    static String describe(int rule) {
+        int interval = interval(rule);
+        String[] names = { "day", "week", "month", "year" };
+        if (interval == 1) {
+            return new String[] { "Daily", "Weekly", "Monthly", "Yearly" }[unit(rule)];
+        }
+        return "Every " + interval + " " + names[unit(rule)] + "s";
+    }
+}
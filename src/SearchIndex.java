@@ -0,0 +1,258 @@
+import java.util.*;
+
+// Inverted index over task descriptions for the search box.
+//
+// Descriptions are split into lower-case words. Each distinct word (term) keeps a sorted list
+// of the documents containing it, where a document is a small int standing for one task. To
+// answer substring queries without scanning every task, the terms themselves are indexed by
+// their substrings of up to three characters (grams): a query word of three or more characters
+// only checks the terms that contain all of its trigrams, and a shorter one looks up the terms
+// containing it directly. A task matches when every query word occurs inside one of its words,
+// so a query word also matches as a prefix.
+//
+// Updates are incremental: adding, editing or removing a task touches only that task's terms.
+// Not thread-safe; ToDoListApp changes and searches it under its writer lock.
+class SearchIndex {
+    private final LongLongMap docsByTaskId = new LongLongMap();
+    private long[] taskIdsByDoc = new long[1024];
+    private int docCount;
+    private int liveDocs;
+
+    private final HashMap<String, Term> terms = new HashMap<>();
+    private final ArrayList<Term> termList = new ArrayList<>();
+    private final HashMap<Long, IntList> termsByGram = new HashMap<>();
+
+    private static final class Term {
+        final String text;
+        final IntList docs = new IntList();
+
+        Term(String text) {
+            this.text = text;
+        }
+    }
+
+    // Matching documents of one query
+    static final class Result {
+        private final SearchIndex index;
+        private final BitSet docs;
+
+        private Result(SearchIndex index, BitSet docs) {
+            this.index = index;
+            this.docs = docs;
+        }
+
+        public int size() {
+            return docs.cardinality();
+        }
+
+        public boolean matches(long taskId) {
+            long doc = index.docsByTaskId.get(taskId);
+            return doc != LongLongMap.MISSING && docs.get((int) doc);
+        }
+
+        public long[] taskIds() {
+            long[] ids = new long[docs.cardinality()];
+            int i = 0;
+            for (int doc = docs.nextSetBit(0); doc >= 0; doc = docs.nextSetBit(doc + 1)) {
+                ids[i++] = index.taskIdsByDoc[doc];
+            }
+            return ids;
+        }
+    }
+
+    public int size() {
+        return liveDocs;
+    }
+
+    public void addAll(Iterable<ToDoListApp.Task> tasks) {
+        for (ToDoListApp.Task task : tasks) {
+            add(task);
+        }
+    }
+
+    public void add(ToDoListApp.Task task) {
+        if (docsByTaskId.containsKey(task.getId())) {
+            return;
+        }
+        // Documents are handed out in increasing order, so posting lists only ever append
+        int doc = docCount++;
+        if (doc == taskIdsByDoc.length) {
+            taskIdsByDoc = Arrays.copyOf(taskIdsByDoc, doc * 2);
+        }
+        taskIdsByDoc[doc] = task.getId();
+        docsByTaskId.put(task.getId(), doc);
+        liveDocs++;
+
+        for (String word : words(task.getDescription())) {
+            Term term = terms.get(word);
+            if (term == null) {
+                term = addTerm(word);
+            }
+            term.docs.add(doc);
+        }
+    }
+
+    public void remove(ToDoListApp.Task task) {
+        long doc = docsByTaskId.remove(task.getId());
+        if (doc == LongLongMap.MISSING) {
+            return;
+        }
+        liveDocs--;
+        for (String word : words(task.getDescription())) {
+            Term term = terms.get(word);
+            if (term != null) {
+                term.docs.remove((int) doc);
+            }
+        }
+    }
+
+    // Re-index an edited task under its new description
+    public void replace(ToDoListApp.Task oldTask, ToDoListApp.Task newTask) {
+        remove(oldTask);
+        add(newTask);
+    }
+
+    // Documents matching every word of the query, or null for a query without words
+    public Result search(String query) {
+        List<String> queryWords = words(query);
+        if (queryWords.isEmpty()) {
+            return null;
+        }
+
+        BitSet result = null;
+        for (String queryWord : queryWords) {
+            BitSet docs = new BitSet(docCount);
+            for (Term term : termsContaining(queryWord)) {
+                IntList postings = term.docs;
+                for (int i = 0; i < postings.size; i++) {
+                    docs.set(postings.values[i]);
+                }
+            }
+            if (result == null) {
+                result = docs;
+            } else {
+                result.and(docs);
+            }
+            if (result.isEmpty()) {
+                break;
+            }
+        }
+        return new Result(this, result);
+    }
+
+    private List<Term> termsContaining(String queryWord) {
+        ArrayList<Term> matches = new ArrayList<>();
+        if (queryWord.length() < 3) {
+            // Every term listed under a gram contains it
+            IntList list = termsByGram.get(gram(queryWord, 0, queryWord.length()));
+            for (int i = 0; list != null && i < list.size; i++) {
+                Term term = termList.get(list.values[i]);
+                if (term.docs.size > 0) {
+                    matches.add(term);
+                }
+            }
+            return matches;
+        }
+
+        // Intersect the term lists of the query word's trigrams, smallest first
+        ArrayList<IntList> lists = new ArrayList<>();
+        for (int i = 0; i + 3 <= queryWord.length(); i++) {
+            IntList list = termsByGram.get(gram(queryWord, i, 3));
+            if (list == null) {
+                return matches;
+            }
+            lists.add(list);
+        }
+        lists.sort(Comparator.comparingInt(list -> list.size));
+        IntList smallest = lists.get(0);
+        for (int i = 0; i < smallest.size; i++) {
+            int termNumber = smallest.values[i];
+            boolean inAll = true;
+            for (int j = 1; j < lists.size() && inAll; j++) {
+                inAll = lists.get(j).contains(termNumber);
+            }
+            Term term = termList.get(termNumber);
+            if (inAll && term.docs.size > 0 && term.text.contains(queryWord)) {
+                matches.add(term);
+            }
+        }
+        return matches;
+    }
+
+    private Term addTerm(String word) {
+        Term term = new Term(word);
+        int termNumber = termList.size();
+        terms.put(word, term);
+        termList.add(term);
+        for (int length = 1; length <= 3; length++) {
+            for (int i = 0; i + length <= word.length(); i++) {
+                IntList list = termsByGram.computeIfAbsent(gram(word, i, length), key -> new IntList());
+                if (list.size == 0 || list.values[list.size - 1] != termNumber) {
+                    list.add(termNumber);
+                }
+            }
+        }
+        return term;
+    }
+
+    // The characters of a gram of one to three characters, with its length on top so grams of
+    // different lengths never share a key
+    private static long gram(String word, int start, int length) {
+        long key = length;
+        for (int i = 0; i < length; i++) {
+            key = (key << 16) | word.charAt(start + i);
+        }
+        return key;
+    }
+
+    // Distinct lower-case words of a description, in order of first appearance
+    static List<String> words(String text) {
+        LinkedHashSet<String> words = new LinkedHashSet<>();
+        int length = text.length();
+        int start = -1;
+        for (int i = 0; i <= length; i++) {
+            boolean wordChar = i < length && Character.isLetterOrDigit(text.charAt(i));
+            if (wordChar && start < 0) {
+                start = i;
+            } else if (!wordChar && start >= 0) {
+                words.add(text.substring(start, i).toLowerCase(Locale.ROOT));
+                start = -1;
+            }
+        }
+        return new ArrayList<>(words);
+    }
+
+    // Sorted list of ints
+    private static final class IntList {
+        int[] values = new int[4];
+        int size;
+
+        void add(int value) {
+            int index = size == 0 || values[size - 1] < value ? size : Arrays.binarySearch(values, 0, size, value);
+            if (index >= 0 && index < size) {
+                return;
+            }
+            if (index < 0) {
+                index = -index - 1;
+            }
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            System.arraycopy(values, index, values, index + 1, size - index);
+            values[index] = value;
+            size++;
+        }
+
+        void remove(int value) {
+            int index = Arrays.binarySearch(values, 0, size, value);
+            if (index >= 0) {
+                System.arraycopy(values, index + 1, values, index, size - index - 1);
+                size--;
+            }
+        }
+
+        boolean contains(int value) {
+            return Arrays.binarySearch(values, 0, size, value) >= 0;
+        }
+    }
+}
@@ -0,0 +1,183 @@
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.SplittableRandom;
+
+// Tasks kept in comparator order in an indexable skip list. Each link also records how many
+// tasks it steps over, so finding the task at a position, or the position of a task, walks the
+// same O(log n) path as a lookup. Adding or removing one task costs O(log n) and returns the
+// position it was added at or removed from, which is all a list model needs to report the
+// change, so nothing is ever re-sorted as a whole.
+//
+// The comparator must tell apart any two tasks that can be in the index at once (for example
+// by ending on the ID). Not thread-safe.
+class SortedTaskIndex {
+    private static final int MAX_LEVEL = 32;
+
+    private static final class Node {
+        final ToDoListApp.Task task;
+        final Node[] next;
+        // Tasks stepped over by each link, the one it lands on included
+        final int[] width;
+
+        Node(ToDoListApp.Task task, int level) {
+            this.task = task;
+            this.next = new Node[level];
+            this.width = new int[level];
+        }
+    }
+
+    private final Comparator<ToDoListApp.Task> order;
+    private final SplittableRandom random = new SplittableRandom();
+    private Node head = new Node(null, MAX_LEVEL);
+    private int level = 1;
+    private int size;
+
+    public SortedTaskIndex(Comparator<ToDoListApp.Task> order) {
+        this.order = order;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    // Add a task and return its position
+    public int add(ToDoListApp.Task task) {
+        Node[] update = new Node[MAX_LEVEL];
+        int[] rank = new int[MAX_LEVEL];
+        Node node = head;
+        for (int i = level - 1; i >= 0; i--) {
+            rank[i] = i == level - 1 ? 0 : rank[i + 1];
+            while (node.next[i] != null && order.compare(node.next[i].task, task) < 0) {
+                rank[i] += node.width[i];
+                node = node.next[i];
+            }
+            update[i] = node;
+        }
+
+        int newLevel = randomLevel();
+        if (newLevel > level) {
+            for (int i = level; i < newLevel; i++) {
+                rank[i] = 0;
+                update[i] = head;
+                head.width[i] = size;
+            }
+            level = newLevel;
+        }
+        Node added = new Node(task, newLevel);
+        for (int i = 0; i < newLevel; i++) {
+            added.next[i] = update[i].next[i];
+            update[i].next[i] = added;
+            added.width[i] = update[i].width[i] - (rank[0] - rank[i]);
+            update[i].width[i] = rank[0] - rank[i] + 1;
+        }
+        for (int i = newLevel; i < level; i++) {
+            update[i].width[i]++;
+        }
+        size++;
+        return rank[0];
+    }
+
+    // Remove a task, found by the comparator, and return the position it had, or -1 if it is not
+    // in the index
+    public int remove(ToDoListApp.Task task) {
+        Node[] update = new Node[MAX_LEVEL];
+        int rank = 0;
+        Node node = head;
+        for (int i = level - 1; i >= 0; i--) {
+            while (node.next[i] != null && order.compare(node.next[i].task, task) < 0) {
+                rank += node.width[i];
+                node = node.next[i];
+            }
+            update[i] = node;
+        }
+        Node removed = node.next[0];
+        if (removed == null || order.compare(removed.task, task) != 0) {
+            return -1;
+        }
+        for (int i = 0; i < level; i++) {
+            if (update[i].next[i] == removed) {
+                update[i].width[i] += removed.width[i] - 1;
+                update[i].next[i] = removed.next[i];
+            } else {
+                update[i].width[i]--;
+            }
+        }
+        while (level > 1 && head.next[level - 1] == null) {
+            level--;
+        }
+        size--;
+        return rank;
+    }
+
+    public ToDoListApp.Task get(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for size " + size);
+        }
+        // Positions counted from 1 here, the head being 0
+        int traversed = 0;
+        Node node = head;
+        for (int i = level - 1; i >= 0; i--) {
+            while (node.next[i] != null && traversed + node.width[i] <= index + 1) {
+                traversed += node.width[i];
+                node = node.next[i];
+            }
+            if (traversed == index + 1) {
+                return node.task;
+            }
+        }
+        throw new IllegalStateException("Skip list widths are inconsistent");
+    }
+
+    // The position of a task, found by the comparator, or -1
+    public int indexOf(ToDoListApp.Task task) {
+        int rank = 0;
+        Node node = head;
+        for (int i = level - 1; i >= 0; i--) {
+            while (node.next[i] != null && order.compare(node.next[i].task, task) < 0) {
+                rank += node.width[i];
+                node = node.next[i];
+            }
+        }
+        Node found = node.next[0];
+        return found != null && order.compare(found.task, task) == 0 ? rank : -1;
+    }
+
+    // Replace the contents with the given tasks. Sorting once and linking the nodes in order
+    // is much faster than adding the tasks one by one.
+    public void reset(List<ToDoListApp.Task> tasks) {
+        ToDoListApp.Task[] sorted = tasks.toArray(new ToDoListApp.Task[0]);
+        Arrays.sort(sorted, order);
+        head = new Node(null, MAX_LEVEL);
+        level = 1;
+        size = sorted.length;
+        Node[] last = new Node[MAX_LEVEL];
+        int[] lastIndex = new int[MAX_LEVEL];
+        Arrays.fill(last, head);
+        Arrays.fill(lastIndex, -1);
+        for (int index = 0; index < sorted.length; index++) {
+            int nodeLevel = randomLevel();
+            level = Math.max(level, nodeLevel);
+            Node node = new Node(sorted[index], nodeLevel);
+            for (int i = 0; i < nodeLevel; i++) {
+                last[i].next[i] = node;
+                last[i].width[i] = index - lastIndex[i];
+                last[i] = node;
+                lastIndex[i] = index;
+            }
+        }
+        // Links off the end count the tasks still ahead, as add() expects
+        for (int i = 0; i < MAX_LEVEL; i++) {
+            last[i].width[i] = size - 1 - lastIndex[i];
+        }
+    }
+
+    // Level k with probability 1/4^(k-1), as in Redis' sorted sets
+    private int randomLevel() {
+        int newLevel = 1;
+        while (newLevel < MAX_LEVEL && (random.nextInt() & 3) == 0) {
+            newLevel++;
+        }
+        return newLevel;
+    }
+}
@@ -0,0 +1,114 @@
+import javax.swing.AbstractListModel;
+import java.util.ArrayList;
+import java.util.Comparator;
+
+// List model showing a store's tasks in comparator order. A SortedTaskIndex holds the order and
+// follows the store change by change: each added, removed or changed task moves in or out of
+// the index in O(log n) and is reported as a one-row list event, so the list is never re-sorted
+// or rebuilt after a mutation.
+//
+// Store events only carry positions, so the model keeps the snapshot from before each change to
+// find the tasks that were removed or replaced.
+class SortedTaskListModel extends AbstractListModel<ToDoListApp.Task> implements TaskStore.Listener {
+    private static final long serialVersionUID = 1L;
+
+    private final TaskStore store;
+    private final SortedTaskIndex index;
+    private TaskStore.Snapshot previous;
+
+    public SortedTaskListModel(TaskStore store, Comparator<ToDoListApp.Task> order) {
+        this.store = store;
+        this.index = new SortedTaskIndex(order);
+        synchronized (store) {
+            previous = store.snapshot();
+            ArrayList<ToDoListApp.Task> tasks = new ArrayList<>(previous.size());
+            for (ToDoListApp.Task task : previous) {
+                tasks.add(task);
+            }
+            index.reset(tasks);
+            store.addListener(this);
+        }
+    }
+
+    // Stop following the store, for a model that is no longer shown
+    public void dispose() {
+        store.removeListener(this);
+    }
+
+    // The row a task is shown in, or -1
+    public int indexOf(ToDoListApp.Task task) {
+        return index.indexOf(task);
+    }
+
+    @Override
+    public int getSize() {
+        return index.size();
+    }
+
+    @Override
+    public ToDoListApp.Task getElementAt(int row) {
+        return index.get(row);
+    }
+
+    @Override
+    public void tasksInserted(int fromIndex, int toIndex) {
+        TaskStore.Snapshot current = store.snapshot();
+        if (index.size() == 0 && toIndex > fromIndex) {
+            // A whole list arriving at once, as when a load is installed
+            ArrayList<ToDoListApp.Task> tasks = new ArrayList<>(toIndex - fromIndex + 1);
+            for (int i = fromIndex; i <= toIndex; i++) {
+                tasks.add(current.get(i));
+            }
+            index.reset(tasks);
+            previous = current;
+            fireIntervalAdded(this, 0, index.size() - 1);
+            return;
+        }
+        for (int i = fromIndex; i <= toIndex; i++) {
+            int row = index.add(current.get(i));
+            fireIntervalAdded(this, row, row);
+        }
+        previous = current;
+    }
+
+    @Override
+    public void tasksRemoved(int fromIndex, int toIndex) {
+        for (int i = fromIndex; i <= toIndex; i++) {
+            int row = index.remove(previous.get(i));
+            if (row >= 0) {
+                fireIntervalRemoved(this, row, row);
+            }
+        }
+        previous = store.snapshot();
+    }
+
+    @Override
+    public void tasksChanged(int fromIndex, int toIndex) {
+        TaskStore.Snapshot current = store.snapshot();
+        if (fromIndex == 0 && toIndex == current.size() - 1 && toIndex > 0) {
+            // The whole list swapped at once, as when descriptions move to a new pool
+            ArrayList<ToDoListApp.Task> tasks = new ArrayList<>(current.size());
+            for (ToDoListApp.Task task : current) {
+                tasks.add(task);
+            }
+            index.reset(tasks);
+            previous = current;
+            fireContentsChanged(this, 0, index.size() - 1);
+            return;
+        }
+        for (int i = fromIndex; i <= toIndex; i++) {
+            int oldRow = index.remove(previous.get(i));
+            int newRow = index.add(current.get(i));
+            if (oldRow == newRow) {
+                // Same place, as after an edit of the description alone
+                fireContentsChanged(this, newRow, newRow);
+                continue;
+            }
+            if (oldRow >= 0) {
+                fireIntervalRemoved(this, oldRow, oldRow);
+            }
+            fireIntervalAdded(this, newRow, newRow);
+        }
+        previous = current;
+    }
+}
@@ -0,0 +1,329 @@
+import javax.accessibility.AccessibleContext;
+import javax.accessibility.AccessibleRole;
+import javax.swing.JComponent;
+import javax.swing.JList;
+import javax.swing.ListCellRenderer;
+import javax.swing.UIManager;
+import javax.swing.border.Border;
+import javax.swing.border.LineBorder;
+import java.awt.Color;
+import java.awt.Component;
+import java.awt.Dimension;
+import java.awt.Font;
+import java.awt.FontMetrics;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.Toolkit;
+import java.awt.font.LineMetrics;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.Map;
+import java.util.function.Predicate;
+
+// Renders task rows: the priority letter, the description, and on the right how the task
+// repeats and when it is due, highlighted once overdue. Completed tasks are struck through and
+// dimmed so they stand out when both lists are shown together.
+//
+// Scrolling paints every row that comes into view, so painting a row allocates nothing once the
+// row has been seen. One component paints every row itself instead of laying out a JLabel
+// around the task's toString(). What a row shows is worked out once per version of its task
+// (tasks are immutable, so an edit is a new Task) and kept in a small cache indexed by task ID,
+// far larger than a screenful: the description decoded from the pool and cut to fit the width,
+// the right-hand label and its measured width. A row painted again with the same task,
+// completion, font, day and width is drawn straight from its entry.
+//
+// Everything is drawn in the list's own font, which the cell's Graphics already has, since each
+// change of font costs the Graphics new font data, and completed rows are struck through with a
+// line rather than a strike-through font, which Java2D would lay out through a TextLayout for
+// every row painted.
+class TaskCellRenderer extends JComponent implements ListCellRenderer<ToDoListApp.Task> {
+    private static final long serialVersionUID = 1L;
+    private static final Color COMPLETED_FOREGROUND = Color.decode("#f2c9a8");
+    private static final Color OVERDUE_FOREGROUND = Color.decode("#ffe066");
+    // By priority, none to high
+    private static final Color[] PRIORITY_FOREGROUNDS = { null, Color.decode("#ffd9b3"), Color.decode("#ffe9a8"), Color.decode("#fff3b0") };
+    private static final String[] PRIORITY_LETTERS = {
+        null,
+        String.valueOf(ToDoListApp.Task.priorityLetter(ToDoListApp.Task.LOW)),
+        String.valueOf(ToDoListApp.Task.priorityLetter(ToDoListApp.Task.MEDIUM)),
+        String.valueOf(ToDoListApp.Task.priorityLetter(ToDoListApp.Task.HIGH)),
+    };
+    private static final String ELLIPSIS = "...";
+    private static final int PADDING = 4;
+    private static final int GAP = 8;
+    // A power of two
+    private static final int CACHE_SIZE = 1024;
+
+    // What one row shows, for one version of one task
+    private static final class Row {
+        ToDoListApp.Task task;
+        boolean completed;
+        long today;
+        String description;
+        // How it repeats and when it is due, or null for neither
+        String label;
+        int labelWidth;
+        boolean overdue;
+        // The description cut to fit a cell of the given width
+        int width = -1;
+        String text;
+        int textWidth;
+    }
+
+    private final Predicate<ToDoListApp.Task> completed;
+    private final Row[] rows = new Row[CACHE_SIZE];
+    private Font font;
+    private FontMetrics metrics;
+    private int priorityWidth;
+    // Where the strike-through line goes, above the baseline, and how thick it is
+    private int strikeOffset;
+    private int strikeThickness;
+    private Border focusBorder;
+    // The focus border's outline when it is a plain line, drawn here with fillRect since
+    // LineBorder builds a new shape every time it paints
+    private Color focusColor;
+    private int focusThickness;
+    private Object textAntialiasing;
+    private long today;
+    private long nextDayStartsAt;
+
+    // The row being painted and how
+    private Row row;
+    private int priority;
+    private boolean selected;
+    private boolean focused;
+    private Color background;
+    private Color foreground;
+
+    public TaskCellRenderer(Predicate<ToDoListApp.Task> completed) {
+        this.completed = completed;
+        setOpaque(true);
+        for (int i = 0; i < CACHE_SIZE; i++) {
+            rows[i] = new Row();
+        }
+        updateUI();
+    }
+
+    @Override
+    public void updateUI() {
+        super.updateUI();
+        focusBorder = UIManager.getBorder("List.focusCellHighlightBorder");
+        if (focusBorder instanceof LineBorder && !((LineBorder) focusBorder).getRoundedCorners()) {
+            focusColor = ((LineBorder) focusBorder).getLineColor();
+            focusThickness = ((LineBorder) focusBorder).getThickness();
+        } else {
+            focusColor = null;
+        }
+        // Text anti-aliased as the desktop has it, as Swing's own labels draw it
+        Object hints = Toolkit.getDefaultToolkit().getDesktopProperty("awt.font.desktophints");
+        textAntialiasing = hints instanceof Map ? ((Map<?, ?>) hints).get(RenderingHints.KEY_TEXT_ANTIALIASING) : null;
+    }
+
+    @Override
+    public Component getListCellRendererComponent(JList<? extends ToDoListApp.Task> list, ToDoListApp.Task task, int index,
+            boolean isSelected, boolean cellHasFocus) {
+        useFont(list);
+        updateToday();
+        boolean isCompleted = completed.test(task);
+        Row row = rows[(int) (task.getId() ^ task.getId() >>> 32) & (CACHE_SIZE - 1)];
+        if (row.task != task || row.completed != isCompleted || row.today != today) {
+            describe(row, task, isCompleted);
+        }
+        this.row = row;
+        priority = task.getPriority();
+        selected = isSelected;
+        focused = cellHasFocus;
+        background = isSelected ? list.getSelectionBackground() : list.getBackground();
+        foreground = isSelected ? list.getSelectionForeground() : isCompleted ? COMPLETED_FOREGROUND : list.getForeground();
+        return this;
+    }
+
+    // Fonts and measurements follow the list's font; a new one empties the cache
+    private void useFont(JList<?> list) {
+        Font listFont = list.getFont();
+        if (listFont == font) {
+            return;
+        }
+        font = listFont;
+        metrics = list.getFontMetrics(listFont);
+        priorityWidth = 0;
+        for (int i = ToDoListApp.Task.LOW; i <= ToDoListApp.Task.HIGH; i++) {
+            priorityWidth = Math.max(priorityWidth, metrics.stringWidth(PRIORITY_LETTERS[i]));
+        }
+        LineMetrics lineMetrics = listFont.getLineMetrics(ELLIPSIS, metrics.getFontRenderContext());
+        strikeOffset = Math.round(-lineMetrics.getStrikethroughOffset());
+        strikeThickness = Math.max(1, Math.round(lineMetrics.getStrikethroughThickness()));
+        for (Row row : rows) {
+            row.task = null;
+        }
+    }
+
+    // Whether a due date has passed changes at midnight, so rows are described again then
+    private void updateToday() {
+        long now = System.currentTimeMillis();
+        if (now >= nextDayStartsAt) {
+            LocalDate date = LocalDate.now();
+            today = date.toEpochDay();
+            nextDayStartsAt = date.plusDays(1).atStartOfDay(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        }
+    }
+
+    private void describe(Row row, ToDoListApp.Task task, boolean isCompleted) {
+        row.task = task;
+        row.completed = isCompleted;
+        row.today = today;
+        row.description = task.getDescription();
+        long dueDate = task.getDueDate();
+        int recurrence = task.getRecurrence();
+        if (dueDate == ToDoListApp.Task.NO_DUE_DATE && recurrence == ToDoListApp.Task.NO_RECURRENCE) {
+            row.label = null;
+            row.labelWidth = 0;
+        } else {
+            StringBuilder label = new StringBuilder();
+            if (recurrence != ToDoListApp.Task.NO_RECURRENCE) {
+                label.append(Recurrence.describe(recurrence));
+            }
+            if (dueDate != ToDoListApp.Task.NO_DUE_DATE) {
+                label.append(label.length() > 0 ? ", due " : "Due ").append(LocalDate.ofEpochDay(dueDate));
+            }
+            row.label = label.toString();
+            row.labelWidth = metrics.stringWidth(row.label);
+        }
+        row.overdue = !isCompleted && dueDate < today;
+        row.width = -1;
+        row.text = null;
+    }
+
+    @Override
+    public void paint(Graphics g) {
+        Row row = this.row;
+        int width = getWidth();
+        int height = getHeight();
+        g.setColor(background);
+        g.fillRect(0, 0, width, height);
+        if (textAntialiasing != null) {
+            ((Graphics2D) g).setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, textAntialiasing);
+        }
+        int baseline = (height - metrics.getHeight()) / 2 + metrics.getAscent();
+
+        g.setFont(font);
+        int x = PADDING;
+        if (priority != ToDoListApp.Task.NO_PRIORITY) {
+            g.setColor(selected || row.completed ? foreground : PRIORITY_FOREGROUNDS[priority]);
+            g.drawString(PRIORITY_LETTERS[priority], x, baseline);
+        }
+        x += priorityWidth + GAP;
+
+        int textEnd = width - PADDING;
+        if (row.label != null) {
+            int labelX = width - PADDING - row.labelWidth;
+            g.setColor(row.overdue && !selected ? OVERDUE_FOREGROUND : foreground);
+            g.drawString(row.label, labelX, baseline);
+            textEnd = labelX - GAP;
+        }
+
+        if (row.width != width) {
+            row.text = fit(row.description, textEnd - x);
+            row.textWidth = metrics.stringWidth(row.text);
+            row.width = width;
+        }
+        g.setColor(foreground);
+        g.drawString(row.text, x, baseline);
+        if (row.completed) {
+            g.fillRect(x, baseline - strikeOffset, row.textWidth, strikeThickness);
+        }
+
+        if (focused && focusColor != null) {
+            g.setColor(focusColor);
+            g.fillRect(0, 0, width, focusThickness);
+            g.fillRect(0, height - focusThickness, width, focusThickness);
+            g.fillRect(0, focusThickness, focusThickness, height - 2 * focusThickness);
+            g.fillRect(width - focusThickness, focusThickness, focusThickness, height - 2 * focusThickness);
+        } else if (focused && focusBorder != null) {
+            focusBorder.paintBorder(this, g, 0, 0, width, height);
+        }
+    }
+
+    // The text, or as much of it as fits followed by an ellipsis
+    private String fit(String text, int available) {
+        if (metrics.stringWidth(text) <= available) {
+            return text;
+        }
+        available -= metrics.stringWidth(ELLIPSIS);
+        int low = 0;
+        int high = text.length();
+        while (low < high) {
+            int middle = (low + high + 1) >>> 1;
+            if (metrics.stringWidth(text.substring(0, middle)) <= available) {
+                low = middle;
+            } else {
+                high = middle - 1;
+            }
+        }
+        if (low > 0 && Character.isHighSurrogate(text.charAt(low - 1))) {
+            low--;
+        }
+        return text.substring(0, low) + ELLIPSIS;
+    }
+
+    @Override
+    public Dimension getPreferredSize() {
+        if (row == null || metrics == null) {
+            return super.getPreferredSize();
+        }
+        int width = PADDING + priorityWidth + GAP + metrics.stringWidth(row.description)
+                + (row.label != null ? GAP + row.labelWidth : 0) + PADDING;
+        return new Dimension(width, metrics.getHeight() + 4);
+    }
+
+    // Screen readers read a row as its line in the task file
+    @Override
+    public AccessibleContext getAccessibleContext() {
+        if (accessibleContext == null) {
+            accessibleContext = new AccessibleJComponent() {
+                @Override
+                public String getAccessibleName() {
+                    return row != null ? row.task.toLine() : null;
+                }
+
+                @Override
+                public AccessibleRole getAccessibleRole() {
+                    return AccessibleRole.LABEL;
+                }
+            };
+        }
+        return accessibleContext;
+    }
+
+    // As in DefaultListCellRenderer: the list lays out and repaints its rows itself, so these
+    // would only cost time for every row painted
+
+    @Override
+    public void validate() {
+    }
+
+    @Override
+    public void invalidate() {
+    }
+
+    @Override
+    public void revalidate() {
+    }
+
+    @Override
+    public void repaint() {
+    }
+
+    @Override
+    public void repaint(long tm, int x, int y, int width, int height) {
+    }
+
+    @Override
+    protected void firePropertyChange(String propertyName, Object oldValue, Object newValue) {
+    }
+
+    @Override
+    public void firePropertyChange(String propertyName, boolean oldValue, boolean newValue) {
+    }
+}
@@ -0,0 +1,401 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+// Watches the task text files for changes made by other programs and works out what changed.
+//
+// For each file the app remembers the list it last read from or wrote to it (the base) and the
+// file's fingerprint at that moment, so its own saves are recognised and skipped. When the
+// fingerprint changes, the new contents are compared with the base by streaming the file: the
+// unchanged prefix is matched line by line, the rest is reduced to one 64-bit hash per line,
+// the unchanged suffix is trimmed, and what is left in between goes through a Myers diff. Only
+// the lines of the changed regions are then read back as text. The resulting hunks name the
+// base tasks they replace, so the app can merge them with its own changes by task ID.
+//
+// Events are collected until the directory has been quiet for a moment, so a program that
+// writes a file in several steps causes one diff.
+class TaskFileWatcher {
+    private static final long QUIET_MILLIS = 200;
+    // Beyond this many inserted and deleted lines the changed region is treated as replaced
+    private static final int MAX_EDITS = 1000;
+
+    interface Listener {
+        // Called on the watcher thread
+        void fileChanged(WatchedFile file, Changes changes);
+    }
+
+    // A watched file and what the app last knew of it
+    static final class WatchedFile {
+        final Path path;
+        private TaskStore.Snapshot base;
+        private String fingerprint;
+
+        WatchedFile(Path path, TaskStore.Snapshot base, String fingerprint) {
+            this.path = path;
+            this.base = base;
+            this.fingerprint = fingerprint;
+        }
+
+        // Record that the file now holds the given list
+        public synchronized void synced(TaskStore.Snapshot base, String fingerprint) {
+            this.base = base;
+            this.fingerprint = fingerprint;
+        }
+
+        public synchronized TaskStore.Snapshot base() {
+            return base;
+        }
+
+        public synchronized String fingerprint() {
+            return fingerprint;
+        }
+
+        // Whether the file is still as the app last read or wrote it
+        public synchronized boolean isUnchanged() throws IOException {
+            return Objects.equals(fingerprint, TaskFileWatcher.fingerprint(path));
+        }
+
+        // Rename a freshly written file over this one and take its contents as the new base,
+        // unless another program has changed this one since the app last read or wrote it
+        public synchronized boolean replace(Path written, TaskStore.Snapshot contents) throws IOException {
+            if (!isUnchanged()) {
+                return false;
+            }
+            Files.move(written, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            synced(contents, TaskFileWatcher.fingerprint(path));
+            return true;
+        }
+    }
+
+    // Base rows from index baseIndex on that were replaced by the added lines. anchor is the
+    // base task just before them, or null at the top of the file.
+    static final class Hunk {
+        final int baseIndex;
+        final ToDoListApp.Task anchor;
+        final ToDoListApp.Task[] removed;
+        final String[] added;
+
+        Hunk(int baseIndex, ToDoListApp.Task anchor, ToDoListApp.Task[] removed, String[] added) {
+            this.baseIndex = baseIndex;
+            this.anchor = anchor;
+            this.removed = removed;
+            this.added = added;
+        }
+    }
+
+    // How a file differs from the base it was compared with
+    static final class Changes {
+        final TaskStore.Snapshot base;
+        final String fingerprint;
+        final List<Hunk> hunks;
+
+        Changes(TaskStore.Snapshot base, String fingerprint, List<Hunk> hunks) {
+            this.base = base;
+            this.fingerprint = fingerprint;
+            this.hunks = hunks;
+        }
+    }
+
+    private final WatchService watchService;
+    private final HashMap<Path, WatchedFile> filesByPath = new HashMap<>();
+    private final Listener listener;
+    private final Thread thread;
+    private final LinkedHashSet<WatchedFile> pending = new LinkedHashSet<>();
+
+    public TaskFileWatcher(List<WatchedFile> files, Listener listener) throws IOException {
+        this.listener = listener;
+        watchService = FileSystems.getDefault().newWatchService();
+        HashSet<Path> directories = new HashSet<>();
+        for (WatchedFile file : files) {
+            Path path = file.path.toAbsolutePath();
+            filesByPath.put(path, file);
+            if (directories.add(path.getParent())) {
+                path.getParent().register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                        StandardWatchEventKinds.ENTRY_MODIFY);
+            }
+        }
+        thread = new Thread(this::run, "task-file-watcher");
+        thread.setDaemon(true);
+    }
+
+    public void start() {
+        thread.start();
+    }
+
+    public void close() {
+        try {
+            watchService.close();
+        } catch (IOException e) {
+            System.out.println("Error closing file watcher: " + e.getMessage());
+        }
+    }
+
+    // Compare the file with its base again soon, whether or not an event arrived for it
+    public void reconcile(WatchedFile file) {
+        synchronized (pending) {
+            pending.add(file);
+        }
+    }
+
+    // Size, modification time and file key; a save replaces the file, so the key changes too
+    public static String fingerprint(Path path) throws IOException {
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+            return attributes.size() + ":" + attributes.lastModifiedTime().toMillis() + ":" + attributes.fileKey();
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+    }
+
+    private void run() {
+        try {
+            while (true) {
+                WatchKey key = watchService.poll(QUIET_MILLIS, TimeUnit.MILLISECONDS);
+                if (key != null) {
+                    Path directory = (Path) key.watchable();
+                    for (WatchEvent<?> event : key.pollEvents()) {
+                        if (event.context() instanceof Path) {
+                            WatchedFile file = filesByPath.get(directory.resolve((Path) event.context()));
+                            if (file != null) {
+                                reconcile(file);
+                            }
+                        }
+                    }
+                    key.reset();
+                    continue;
+                }
+
+                // Quiet for a while: diff whatever changed
+                ArrayList<WatchedFile> files;
+                synchronized (pending) {
+                    files = new ArrayList<>(pending);
+                    pending.clear();
+                }
+                for (WatchedFile file : files) {
+                    check(file);
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // Closed
+        }
+    }
+
+    private void check(WatchedFile file) {
+        try {
+            if (file.isUnchanged() || fingerprint(file.path) == null) {
+                // Nothing new, or deleted; a program that writes it back causes another event
+                return;
+            }
+            Changes changes = diff(file);
+            if (changes == null) {
+                // Changed again while being read; the event for that brings it back
+                reconcile(file);
+            } else {
+                listener.fileChanged(file, changes);
+            }
+        } catch (IOException e) {
+            System.out.println("Error reading changed task file: " + e.getMessage());
+        }
+    }
+
+    // Compare the file with its base. Returns null if the file changed while it was being read.
+    static Changes diff(WatchedFile file) throws IOException {
+        TaskStore.Snapshot base = file.base();
+        String fingerprint = fingerprint(file.path);
+        if (fingerprint == null) {
+            return null;
+        }
+        int baseSize = base.size();
+
+        // Pass 1: match the common prefix exactly, hash every line after it
+        int prefix = 0;
+        LongList rest = new LongList();
+        try (BufferedReader reader = open(file.path)) {
+            Iterator<ToDoListApp.Task> baseTasks = base.iterator();
+            boolean diverged = false;
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!diverged && prefix < baseSize && baseTasks.next().toLine().equals(line)) {
+                    prefix++;
+                } else {
+                    diverged = true;
+                    rest.add(hash(line));
+                }
+            }
+        }
+
+        // Trim the common suffix by hash
+        int suffix = 0;
+        while (suffix < rest.size && suffix < baseSize - prefix
+                && hash(base.get(baseSize - 1 - suffix).toLine()) == rest.values[rest.size - 1 - suffix]) {
+            suffix++;
+        }
+
+        int baseLength = baseSize - prefix - suffix;
+        int fileLength = rest.size - suffix;
+        long[] baseHashes = new long[baseLength];
+        for (int i = 0; i < baseLength; i++) {
+            baseHashes[i] = hash(base.get(prefix + i).toLine());
+        }
+        List<int[]> regions = diff(baseHashes, baseLength, rest.values, fileLength);
+
+        // Pass 2: read back the lines of the changed regions
+        ArrayList<Hunk> hunks = new ArrayList<>(regions.size());
+        try (BufferedReader reader = open(file.path)) {
+            int lineNumber = 0;
+            for (int[] region : regions) {
+                int baseStart = prefix + region[0];
+                ToDoListApp.Task[] removed = new ToDoListApp.Task[region[1] - region[0]];
+                for (int i = 0; i < removed.length; i++) {
+                    removed[i] = base.get(baseStart + i);
+                }
+                String[] added = new String[region[3] - region[2]];
+                int fileStart = prefix + region[2];
+                while (lineNumber < fileStart) {
+                    reader.readLine();
+                    lineNumber++;
+                }
+                for (int i = 0; i < added.length; i++) {
+                    added[i] = reader.readLine();
+                    lineNumber++;
+                    if (added[i] == null) {
+                        return null;
+                    }
+                }
+                hunks.add(new Hunk(baseStart, baseStart > 0 ? base.get(baseStart - 1) : null, removed, added));
+            }
+        }
+        if (!fingerprint.equals(fingerprint(file.path))) {
+            return null;
+        }
+        return new Changes(base, fingerprint, hunks);
+    }
+
+    // Myers' O((N+M)D) diff of two hash sequences, as regions {aStart, aEnd, bStart, bEnd} of a
+    // that were replaced by regions of b
+    static List<int[]> diff(long[] a, int n, long[] b, int m) {
+        ArrayList<int[]> regions = new ArrayList<>();
+        if (n == 0 && m == 0) {
+            return regions;
+        }
+        int limit = Math.min(n + m, MAX_EDITS);
+        int offset = limit + 1;
+        int[] v = new int[2 * limit + 3];
+        ArrayList<int[]> trace = new ArrayList<>();
+        int edits = -1;
+        search:
+        for (int d = 0; d <= limit; d++) {
+            trace.add(v.clone());
+            for (int k = -d; k <= d; k += 2) {
+                int x = k == -d || (k != d && v[offset + k - 1] < v[offset + k + 1]) ? v[offset + k + 1] : v[offset + k - 1] + 1;
+                int y = x - k;
+                while (x < n && y < m && a[x] == b[y]) {
+                    x++;
+                    y++;
+                }
+                v[offset + k] = x;
+                if (x >= n && y >= m) {
+                    edits = d;
+                    break search;
+                }
+            }
+        }
+        if (edits < 0) {
+            regions.add(new int[] { 0, n, 0, m });
+            return regions;
+        }
+
+        // Walk back through the trace marking deleted lines of a and inserted lines of b
+        boolean[] deleted = new boolean[n];
+        boolean[] inserted = new boolean[m];
+        int x = n;
+        int y = m;
+        for (int d = edits; d > 0; d--) {
+            int[] previous = trace.get(d);
+            int k = x - y;
+            int previousK = k == -d || (k != d && previous[offset + k - 1] < previous[offset + k + 1]) ? k + 1 : k - 1;
+            int previousX = previous[offset + previousK];
+            int previousY = previousX - previousK;
+            while (x > previousX && y > previousY) {
+                x--;
+                y--;
+            }
+            if (x == previousX) {
+                inserted[y - 1] = true;
+            } else {
+                deleted[x - 1] = true;
+            }
+            x = previousX;
+            y = previousY;
+        }
+
+        int i = 0;
+        int j = 0;
+        while (i < n || j < m) {
+            if (i < n && j < m && !deleted[i] && !inserted[j]) {
+                i++;
+                j++;
+                continue;
+            }
+            int aStart = i;
+            int bStart = j;
+            while ((i < n && deleted[i]) || (j < m && inserted[j])) {
+                if (i < n && deleted[i]) {
+                    i++;
+                } else {
+                    j++;
+                }
+            }
+            regions.add(new int[] { aStart, i, bStart, j });
+        }
+        return regions;
+    }
+
+    // Read the way the task files are written, with the platform charset
+    private static BufferedReader open(Path path) throws IOException {
+        return new BufferedReader(new InputStreamReader(Files.newInputStream(path), Charset.defaultCharset()));
+    }
+
+    // 64-bit FNV-1a
+    static long hash(String line) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < line.length(); i++) {
+            hash ^= line.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    private static final class LongList {
+        long[] values = new long[64];
+        int size;
+
+        void add(long value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+    }
+}
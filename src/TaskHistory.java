@@ -0,0 +1,520 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.zip.CRC32;
+
+// Past versions of a list's two task lists, stored so that versions share what they have in
+// common.
+//
+// Each list is cut into chunks of lines, each line a task as the text files hold it, and each
+// chunk is stored once under its SHA-256, however many versions contain it. Chunks end after a
+// line whose own hash has its low six bits clear (about 64 lines), so the boundaries depend on
+// the lines alone: an edit changes the one chunk holding it, and an insert or delete shifts no
+// boundary elsewhere. The hashes of the chunks, with their line counts, are cut the same way into
+// index chunks, and those again, up to a single root. A new version therefore stores the chunks
+// on the path from its changes to the root, a few kilobytes per change whatever the list's
+// size, and comparing two versions skips every subtree whose hash they share.
+//
+// Files, next to the tasks file:
+//   <tasks>.history         one fixed-size record per version: time, and per list the root's
+//                           hash, line count and level, with a CRC32
+//   <tasks>.history.chunks  chunk records, only ever appended: payload length, SHA-256, payload
+//                           (a level byte, then for level 0 each line's UTF-8 length and bytes,
+//                           or above it hash and line count entries)
+//
+// Chunks are written and forced before the version that uses them, so a crash leaves at worst
+// a torn record at the end of either file, which is dropped the next time it is opened.
+class TaskHistory {
+    private static final int HASH_SIZE = 32;
+    // Leaf chunks end after a line whose hash has these bits clear, or at the limit
+    private static final int LINE_BOUNDARY_MASK = 63;
+    private static final int MAX_CHUNK_LINES = 1024;
+    // Index chunks likewise, by the bits of the child's hash
+    private static final int ENTRY_BOUNDARY_MASK = 31;
+    private static final int MAX_CHUNK_ENTRIES = 256;
+    private static final int ENTRY_SIZE = HASH_SIZE + 4;
+    private static final int CHUNK_HEADER_SIZE = 4 + HASH_SIZE;
+    private static final int MAX_CHUNK_SIZE = 64 * 1024 * 1024;
+    private static final int VERSION_RECORD_SIZE = 8 + 2 * (HASH_SIZE + 8) + 4;
+
+    // One stored version of both lists. Numbered from 1 in the order they were recorded.
+    static final class Version {
+        final int number;
+        final long time;
+        final Node tasks;
+        final Node completedTasks;
+
+        Version(int number, long time, Node tasks, Node completedTasks) {
+            this.number = number;
+            this.time = time;
+            this.tasks = tasks;
+            this.completedTasks = completedTasks;
+        }
+
+        int taskCount() {
+            return tasks.lines;
+        }
+
+        int completedTaskCount() {
+            return completedTasks.lines;
+        }
+    }
+
+    // A chunk as its parent refers to it
+    static final class Node {
+        final byte[] hash;
+        final int lines;
+        final int level;
+
+        Node(byte[] hash, int lines, int level) {
+            this.hash = hash;
+            this.lines = lines;
+            this.level = level;
+        }
+    }
+
+    // Lines of one version replaced by lines of another, with where each run starts
+    static final class Change {
+        final int fromIndex;
+        final String[] removed;
+        final int toIndex;
+        final String[] added;
+
+        Change(int fromIndex, String[] removed, int toIndex, String[] added) {
+            this.fromIndex = fromIndex;
+            this.removed = removed;
+            this.toIndex = toIndex;
+            this.added = added;
+        }
+    }
+
+    private final Path versionsFile;
+    private final Path chunksFile;
+    private final FileChannel versionLog;
+    private final FileChannel chunks;
+    private final OutputStream chunksOut;
+    // Where each stored chunk's record starts
+    private final HashMap<ByteBuffer, Long> chunkOffsets = new HashMap<>();
+    private final ArrayList<Version> versions = new ArrayList<>();
+    private final MessageDigest sha256;
+    private final CRC32 crc = new CRC32();
+    private long chunksSize;
+
+    public TaskHistory(String tasksFileName) throws IOException {
+        versionsFile = Paths.get(tasksFileName + ".history");
+        chunksFile = Paths.get(tasksFileName + ".history.chunks");
+        try {
+            sha256 = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException("SHA-256 is not available", e);
+        }
+        chunks = FileChannel.open(chunksFile, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            readChunkOffsets();
+            versionLog = FileChannel.open(versionsFile, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        } catch (IOException e) {
+            chunks.close();
+            throw e;
+        }
+        try {
+            readVersions();
+        } catch (IOException e) {
+            versionLog.close();
+            chunks.close();
+            throw e;
+        }
+        chunksOut = new BufferedOutputStream(Channels.newOutputStream(chunks.position(chunksSize)), 64 * 1024);
+    }
+
+    // Index the chunk records, dropping a torn one at the end
+    private void readChunkOffsets() throws IOException {
+        long size = chunks.size();
+        long position = 0;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(chunksFile), 64 * 1024))) {
+            while (position + CHUNK_HEADER_SIZE <= size) {
+                int length = in.readInt();
+                byte[] hash = new byte[HASH_SIZE];
+                in.readFully(hash);
+                if (length < 1 || length > MAX_CHUNK_SIZE || position + CHUNK_HEADER_SIZE + length > size) {
+                    break;
+                }
+                in.skipNBytes(length);
+                chunkOffsets.put(ByteBuffer.wrap(hash), position);
+                position += CHUNK_HEADER_SIZE + length;
+            }
+        } catch (EOFException e) {
+            // Torn record; cut off below
+        }
+        if (position < size) {
+            chunks.truncate(position);
+        }
+        chunksSize = position;
+    }
+
+    // Read the version records up to the first torn or corrupt one, which is cut off with
+    // everything after it, as are versions whose roots were lost with a torn chunk
+    private void readVersions() throws IOException {
+        long size = versionLog.size();
+        ByteBuffer record = ByteBuffer.allocate(VERSION_RECORD_SIZE);
+        long position = 0;
+        while (position + VERSION_RECORD_SIZE <= size) {
+            record.clear();
+            while (record.hasRemaining() && versionLog.read(record, position + record.position()) > 0) {
+            }
+            record.flip();
+            crc.reset();
+            crc.update(record.array(), 0, VERSION_RECORD_SIZE - 4);
+            if (record.getInt(VERSION_RECORD_SIZE - 4) != (int) crc.getValue()) {
+                break;
+            }
+            long time = record.getLong();
+            Node tasks = readRoot(record);
+            Node completedTasks = readRoot(record);
+            if (!chunkOffsets.containsKey(ByteBuffer.wrap(tasks.hash)) || !chunkOffsets.containsKey(ByteBuffer.wrap(completedTasks.hash))) {
+                break;
+            }
+            versions.add(new Version(versions.size() + 1, time, tasks, completedTasks));
+            position += VERSION_RECORD_SIZE;
+        }
+        if (position < size) {
+            versionLog.truncate(position);
+        }
+    }
+
+    private static Node readRoot(ByteBuffer record) {
+        byte[] hash = new byte[HASH_SIZE];
+        record.get(hash);
+        int lines = record.getInt();
+        int level = record.getInt();
+        return new Node(hash, lines, level);
+    }
+
+    // Oldest first
+    public synchronized List<Version> versions() {
+        return new ArrayList<>(versions);
+    }
+
+    // Bytes taken by both files
+    public synchronized long storedBytes() {
+        return chunksSize + (long) versions.size() * VERSION_RECORD_SIZE;
+    }
+
+    // Store both lists as a new version. If they are what the latest version holds, nothing is
+    // stored and that version is returned.
+    public synchronized Version record(TaskStore.Snapshot tasks, TaskStore.Snapshot completedTasks) throws IOException {
+        long start = chunksSize;
+        Node tasksRoot = store(tasks);
+        Node completedRoot = store(completedTasks);
+        Version latest = versions.isEmpty() ? null : versions.get(versions.size() - 1);
+        if (latest != null && Arrays.equals(latest.tasks.hash, tasksRoot.hash) && Arrays.equals(latest.completedTasks.hash, completedRoot.hash)) {
+            return latest;
+        }
+        chunksOut.flush();
+        if (chunksSize > start) {
+            chunks.force(false);
+        }
+
+        Version version = new Version(versions.size() + 1, System.currentTimeMillis(), tasksRoot, completedRoot);
+        ByteBuffer record = ByteBuffer.allocate(VERSION_RECORD_SIZE);
+        record.putLong(version.time);
+        for (Node root : new Node[] { tasksRoot, completedRoot }) {
+            record.put(root.hash).putInt(root.lines).putInt(root.level);
+        }
+        crc.reset();
+        crc.update(record.array(), 0, VERSION_RECORD_SIZE - 4);
+        record.putInt((int) crc.getValue());
+        record.flip();
+        long position = (long) versions.size() * VERSION_RECORD_SIZE;
+        while (record.hasRemaining()) {
+            position += versionLog.write(record, position);
+        }
+        versionLog.force(false);
+        versions.add(version);
+        return version;
+    }
+
+    // Store a list as a tree of chunks and return its root
+    private Node store(TaskStore.Snapshot list) throws IOException {
+        ArrayList<Node> nodes = new ArrayList<>();
+        ChunkBuffer chunk = new ChunkBuffer(0);
+        int lines = 0;
+        for (ToDoListApp.Task task : list) {
+            String line = task.toLine();
+            byte[] bytes = line.getBytes(StandardCharsets.UTF_8);
+            chunk.appendInt(bytes.length);
+            chunk.append(bytes);
+            lines++;
+            if (((int) (TaskFileWatcher.hash(line) >>> 32) & LINE_BOUNDARY_MASK) == 0 || lines == MAX_CHUNK_LINES) {
+                nodes.add(put(chunk, lines));
+                chunk.reset(0);
+                lines = 0;
+            }
+        }
+        if (lines > 0 || nodes.isEmpty()) {
+            nodes.add(put(chunk, lines));
+        }
+
+        for (int level = 1; nodes.size() > 1; level++) {
+            ArrayList<Node> parents = new ArrayList<>();
+            chunk.reset(level);
+            int entries = 0;
+            lines = 0;
+            for (Node node : nodes) {
+                chunk.append(node.hash);
+                chunk.appendInt(node.lines);
+                entries++;
+                lines += node.lines;
+                // At least two entries per chunk, so every level is at most half the one below
+                boolean boundary = entries >= 2 && (node.hash[HASH_SIZE - 1] & ENTRY_BOUNDARY_MASK) == 0;
+                if (boundary || entries == MAX_CHUNK_ENTRIES) {
+                    parents.add(put(chunk, lines));
+                    chunk.reset(level);
+                    entries = 0;
+                    lines = 0;
+                }
+            }
+            if (entries > 0) {
+                parents.add(put(chunk, lines));
+            }
+            nodes = parents;
+        }
+        return nodes.get(0);
+    }
+
+    // Store a chunk unless one with its contents already is
+    private Node put(ChunkBuffer chunk, int lines) throws IOException {
+        sha256.update(chunk.bytes, 0, chunk.length);
+        byte[] hash = sha256.digest();
+        ByteBuffer key = ByteBuffer.wrap(hash);
+        if (!chunkOffsets.containsKey(key)) {
+            ByteBuffer header = ByteBuffer.allocate(CHUNK_HEADER_SIZE).putInt(chunk.length).put(hash);
+            chunksOut.write(header.array());
+            chunksOut.write(chunk.bytes, 0, chunk.length);
+            chunkOffsets.put(key, chunksSize);
+            chunksSize += CHUNK_HEADER_SIZE + chunk.length;
+        }
+        return new Node(hash, lines, chunk.bytes[0]);
+    }
+
+    // The lines of one list in a version
+    public synchronized List<String> lines(Version version, boolean completed) throws IOException {
+        ArrayList<String> lines = new ArrayList<>();
+        ArrayDeque<Node> nodes = new ArrayDeque<>();
+        nodes.add(completed ? version.completedTasks : version.tasks);
+        while (!nodes.isEmpty()) {
+            Node node = nodes.pollFirst();
+            if (node.level == 0) {
+                Collections.addAll(lines, leafLines(node));
+            } else {
+                nodes.addFirst(node);
+                expand(nodes);
+            }
+        }
+        return lines;
+    }
+
+    // What changed in one list from one version to another, in order. Subtrees the versions
+    // share are skipped by hash; the chunks around each difference are read and compared line
+    // by line, as TaskFileWatcher compares a changed file.
+    public synchronized List<Change> diff(Version from, Version to, boolean completed) throws IOException {
+        ArrayDeque<Node> a = new ArrayDeque<>();
+        ArrayDeque<Node> b = new ArrayDeque<>();
+        a.add(completed ? from.completedTasks : from.tasks);
+        b.add(completed ? to.completedTasks : to.tasks);
+        ArrayList<Change> changes = new ArrayList<>();
+        // Leaves taken from each side since they last agreed, and the lines before them
+        ArrayList<Node> pendingA = new ArrayList<>();
+        ArrayList<Node> pendingB = new ArrayList<>();
+        int pendingLinesA = 0;
+        int pendingLinesB = 0;
+        int lineA = 0;
+        int lineB = 0;
+        while (!a.isEmpty() || !b.isEmpty()) {
+            Node x = a.peekFirst();
+            Node y = b.peekFirst();
+            if (x != null && y != null && Arrays.equals(x.hash, y.hash)) {
+                compare(pendingA, lineA, pendingB, lineB, changes);
+                lineA += pendingLinesA + x.lines;
+                lineB += pendingLinesB + y.lines;
+                pendingA.clear();
+                pendingB.clear();
+                pendingLinesA = 0;
+                pendingLinesB = 0;
+                a.pollFirst();
+                b.pollFirst();
+                continue;
+            }
+            int levelA = x != null ? x.level : -1;
+            int levelB = y != null ? y.level : -1;
+            if (levelA > 0 || levelB > 0) {
+                // Open the higher subtree, or both at the same height, to find what they share
+                if (levelA >= levelB) {
+                    expand(a);
+                }
+                if (levelB >= levelA) {
+                    expand(b);
+                }
+            } else if (y == null || (x != null && pendingLinesA <= pendingLinesB)) {
+                // Take from the side that is behind, so the two catch up with each other where
+                // the boundaries line up again after the change
+                pendingA.add(a.pollFirst());
+                pendingLinesA += x.lines;
+            } else {
+                pendingB.add(b.pollFirst());
+                pendingLinesB += y.lines;
+            }
+        }
+        compare(pendingA, lineA, pendingB, lineB, changes);
+        return changes;
+    }
+
+    // Replace the first node with its children
+    private void expand(ArrayDeque<Node> nodes) throws IOException {
+        Node node = nodes.pollFirst();
+        byte[] chunk = readChunk(node.hash);
+        int count = (chunk.length - 1) / ENTRY_SIZE;
+        ByteBuffer entries = ByteBuffer.wrap(chunk, 1, chunk.length - 1);
+        Node[] children = new Node[count];
+        for (int i = 0; i < count; i++) {
+            byte[] hash = new byte[HASH_SIZE];
+            entries.get(hash);
+            children[i] = new Node(hash, entries.getInt(), node.level - 1);
+        }
+        for (int i = count - 1; i >= 0; i--) {
+            nodes.addFirst(children[i]);
+        }
+    }
+
+    private void compare(List<Node> pendingA, int lineA, List<Node> pendingB, int lineB, List<Change> changes) throws IOException {
+        if (pendingA.isEmpty() && pendingB.isEmpty()) {
+            return;
+        }
+        String[] linesA = leafLines(pendingA);
+        String[] linesB = leafLines(pendingB);
+        long[] hashesA = new long[linesA.length];
+        for (int i = 0; i < linesA.length; i++) {
+            hashesA[i] = TaskFileWatcher.hash(linesA[i]);
+        }
+        long[] hashesB = new long[linesB.length];
+        for (int i = 0; i < linesB.length; i++) {
+            hashesB[i] = TaskFileWatcher.hash(linesB[i]);
+        }
+        for (int[] region : TaskFileWatcher.diff(hashesA, linesA.length, hashesB, linesB.length)) {
+            changes.add(new Change(lineA + region[0], Arrays.copyOfRange(linesA, region[0], region[1]),
+                    lineB + region[2], Arrays.copyOfRange(linesB, region[2], region[3])));
+        }
+    }
+
+    private String[] leafLines(List<Node> leaves) throws IOException {
+        ArrayList<String> lines = new ArrayList<>();
+        for (Node leaf : leaves) {
+            Collections.addAll(lines, leafLines(leaf));
+        }
+        return lines.toArray(new String[0]);
+    }
+
+    private String[] leafLines(Node leaf) throws IOException {
+        ByteBuffer chunk = ByteBuffer.wrap(readChunk(leaf.hash));
+        chunk.position(1);
+        String[] lines = new String[leaf.lines];
+        for (int i = 0; i < lines.length; i++) {
+            int length = chunk.getInt();
+            lines[i] = new String(chunk.array(), chunk.position(), length, StandardCharsets.UTF_8);
+            chunk.position(chunk.position() + length);
+        }
+        return lines;
+    }
+
+    // A stored chunk's payload, checked against its hash
+    private byte[] readChunk(byte[] hash) throws IOException {
+        Long offset = chunkOffsets.get(ByteBuffer.wrap(hash));
+        if (offset == null) {
+            throw new IOException("History chunk missing from " + chunksFile);
+        }
+        chunksOut.flush();
+        ByteBuffer header = ByteBuffer.allocate(4);
+        readFully(header, offset);
+        ByteBuffer payload = ByteBuffer.allocate(header.getInt(0));
+        readFully(payload, offset + CHUNK_HEADER_SIZE);
+        if (!Arrays.equals(sha256.digest(payload.array()), hash)) {
+            throw new IOException("Corrupt history chunk in " + chunksFile);
+        }
+        return payload.array();
+    }
+
+    private void readFully(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (chunks.read(buffer, position + buffer.position()) < 0) {
+                throw new EOFException("History chunk cut short in " + chunksFile);
+            }
+        }
+    }
+
+    // Safe to call more than once
+    public synchronized void close() {
+        if (!chunks.isOpen()) {
+            return;
+        }
+        try {
+            chunksOut.flush();
+            chunks.close();
+            versionLog.close();
+        } catch (IOException e) {
+            System.out.println("Error closing history: " + e.getMessage());
+        }
+    }
+
+    // A chunk being built: the level byte, then its lines or entries
+    private static final class ChunkBuffer {
+        byte[] bytes = new byte[4096];
+        int length;
+
+        ChunkBuffer(int level) {
+            reset(level);
+        }
+
+        void reset(int level) {
+            bytes[0] = (byte) level;
+            length = 1;
+        }
+
+        void append(byte[] data) {
+            ensure(data.length);
+            System.arraycopy(data, 0, bytes, length, data.length);
+            length += data.length;
+        }
+
+        void appendInt(int value) {
+            ensure(4);
+            bytes[length++] = (byte) (value >>> 24);
+            bytes[length++] = (byte) (value >>> 16);
+            bytes[length++] = (byte) (value >>> 8);
+            bytes[length++] = (byte) value;
+        }
+
+        private void ensure(int extra) {
+            if (length + extra > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, length + extra));
+            }
+        }
+    }
+}
@@ -0,0 +1,515 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+// Append-only journal of task operations. Every mutation is written as one small record
+// instead of rewriting the whole task file, and the journal is periodically compacted into
+// a snapshot on a background thread.
+//
+// Files, next to the tasks file:
+//   <tasks>.snapshot     both lists as of a journal sequence number, as a BinaryTaskFile
+//   <tasks>.journal      records appended since the last rotation
+//   <tasks>.journal.old  the previous segment while a compaction is writing its snapshot
+class TaskJournal implements TaskRepository {
+    enum FsyncPolicy { ALWAYS, INTERVAL, NEVER }
+
+    private static final byte ADD = 1;
+    private static final byte EDIT = 2;
+    private static final byte REMOVE = 3;
+    private static final byte COMPLETE = 4;
+    private static final byte UNCOMPLETE = 5;
+    private static final byte MOVE = 6;
+    private static final byte BATCH = 7;
+
+    // Snapshots from before the binary task file format
+    private static final int LEGACY_SNAPSHOT_MAGIC = 0x54444c53; // "TDLS"
+
+    private static final int MAX_RECORD_SIZE = 16 * 1024 * 1024;
+
+    private final Path snapshotFile;
+    private final Path journalFile;
+    private final Path oldJournalFile;
+    private final FsyncPolicy fsyncPolicy;
+    private final int compactThreshold;
+
+    private FileOutputStream journalOut;
+    private DataOutputStream out;
+    private final ByteArrayOutputStream recordBuffer = new ByteArrayOutputStream();
+    private final ByteArrayOutputStream operationBuffer = new ByteArrayOutputStream();
+    private ByteArrayOutputStream batch;
+    private int batchCount;
+    private final CRC32 crc = new CRC32();
+    private long seq;
+    private int recordsSinceCompaction;
+    private boolean dirty;
+    private boolean compacting;
+
+    private final ScheduledExecutorService syncer;
+    private final ExecutorService compactor;
+
+    public TaskJournal(String tasksFileName, FsyncPolicy fsyncPolicy, int syncIntervalMillis, int compactThreshold) {
+        this.snapshotFile = Paths.get(tasksFileName + ".snapshot");
+        this.journalFile = Paths.get(tasksFileName + ".journal");
+        this.oldJournalFile = Paths.get(tasksFileName + ".journal.old");
+        this.fsyncPolicy = fsyncPolicy;
+        this.compactThreshold = compactThreshold;
+
+        compactor = Executors.newSingleThreadExecutor(r -> daemon(r, "journal-compactor"));
+        if (fsyncPolicy == FsyncPolicy.INTERVAL) {
+            syncer = Executors.newSingleThreadScheduledExecutor(r -> daemon(r, "journal-sync"));
+            syncer.scheduleWithFixedDelay(this::sync, syncIntervalMillis, syncIntervalMillis, TimeUnit.MILLISECONDS);
+        } else {
+            syncer = null;
+        }
+    }
+
+    private static Thread daemon(Runnable r, String name) {
+        Thread thread = new Thread(r, name);
+        thread.setDaemon(true);
+        return thread;
+    }
+
+    @Override
+    public boolean exists() {
+        return Files.exists(snapshotFile) || Files.exists(journalFile) || Files.exists(oldJournalFile);
+    }
+
+    // Rebuild both stores from the snapshot plus every journal record written after it.
+    // Records must follow one another without a gap, from the snapshot on. A torn record at the
+    // very end of a segment (crash mid-append) is dropped; anything else that does not read back
+    // as written stops the load with an IOException and leaves every file as it is.
+    @Override
+    public void load(TaskStore tasks, TaskStore completedTasks) throws IOException {
+        replay(tasks, completedTasks);
+    }
+
+    public synchronized void replay(TaskStore tasks, TaskStore completedTasks) throws IOException {
+        long snapshotSeq = 0;
+        if (Files.exists(snapshotFile)) {
+            snapshotSeq = readSnapshot(tasks, completedTasks);
+        }
+        seq = snapshotSeq;
+
+        // The sequence number of the last record read, applied or not
+        long[] lastRead = { -1 };
+        int replayed = 0;
+        if (Files.exists(oldJournalFile)) {
+            replayed += replaySegment(oldJournalFile, snapshotSeq, lastRead, tasks, completedTasks);
+        }
+        if (Files.exists(journalFile)) {
+            replayed += replaySegment(journalFile, snapshotSeq, lastRead, tasks, completedTasks);
+        }
+
+        // Fold whatever was replayed into a fresh snapshot so the next start is a plain read and
+        // new records never land behind a torn tail
+        if (replayed > 0 || Files.exists(oldJournalFile) || Files.exists(journalFile) || !Files.exists(snapshotFile)) {
+            writeSnapshot(seq, tasks.snapshot(), completedTasks.snapshot());
+            Files.deleteIfExists(oldJournalFile);
+            Files.deleteIfExists(journalFile);
+        }
+        openJournal();
+    }
+
+    private long readSnapshot(TaskStore tasks, TaskStore completedTasks) throws IOException {
+        if (BinaryTaskFile.isBinaryFile(snapshotFile)) {
+            return BinaryTaskFile.read(snapshotFile, tasks, completedTasks).sequence;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(snapshotFile)))) {
+            if (in.readInt() != LEGACY_SNAPSHOT_MAGIC) {
+                throw new IOException("Not a task snapshot: " + snapshotFile);
+            }
+            int version = in.readInt();
+            if (version != 1 && version != 2) {
+                throw new IOException("Unsupported snapshot version " + version);
+            }
+            long snapshotSeq = in.readLong();
+            long[] nextId = {1};
+            readTasks(in, version, tasks, nextId);
+            readTasks(in, version, completedTasks, nextId);
+            return snapshotSeq;
+        }
+    }
+
+    // Version 1 snapshots predate task IDs, so their tasks are numbered in file order
+    private static void readTasks(DataInputStream in, int version, TaskStore into, long[] nextId) throws IOException {
+        int count = in.readInt();
+        ArrayList<ToDoListApp.Task> loaded = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            long id = version == 1 ? nextId[0]++ : in.readLong();
+            loaded.add(new ToDoListApp.Task(id, readString(in)));
+        }
+        into.addAll(loaded);
+    }
+
+    private int replaySegment(Path segment, long snapshotSeq, long[] lastRead, TaskStore tasks, TaskStore completedTasks)
+            throws IOException {
+        int replayed = 0;
+        long size = Files.size(segment);
+        long position = 0;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(segment)))) {
+            byte[] payload;
+            while ((payload = readRecord(in, segment, position, size)) != null) {
+                DataInputStream record = new DataInputStream(new ByteArrayInputStream(payload));
+                long recordSeq = record.readLong();
+                // The first record may be one the snapshot already holds, but must not skip any after it
+                boolean follows = lastRead[0] >= 0 ? recordSeq == lastRead[0] + 1 : recordSeq <= snapshotSeq + 1;
+                if (!follows) {
+                    throw corrupt(segment, position, "record " + recordSeq + " does not follow "
+                            + (lastRead[0] >= 0 ? "record " + lastRead[0] : "the snapshot at record " + snapshotSeq));
+                }
+                lastRead[0] = recordSeq;
+                position += 8 + payload.length;
+                if (recordSeq <= snapshotSeq) {
+                    continue;
+                }
+                apply(record, tasks, completedTasks);
+                seq = recordSeq;
+                replayed++;
+            }
+        }
+        return replayed;
+    }
+
+    // The next record's payload, or null at the end of the segment. Only a record cut short by
+    // the end of the file with no whole record after it, or one that ends the file and fails
+    // its checksum, is taken for a torn append; so is a tail of zeros, as a file system may
+    // leave after a crash.
+    private byte[] readRecord(DataInputStream in, Path segment, long position, long size) throws IOException {
+        long remaining = size - position;
+        if (remaining < 8) {
+            return null;
+        }
+        int length = in.readInt();
+        int checksum = in.readInt();
+        if (length <= 0 || length > MAX_RECORD_SIZE) {
+            if (length == 0 && checksum == 0 && zerosToEnd(in)) {
+                return null;
+            }
+            throw corrupt(segment, position, "bad record length " + length);
+        }
+        if (length > remaining - 8) {
+            // Or a damaged length, if whole records follow
+            byte[] rest = in.readAllBytes();
+            if (recordFollows(rest)) {
+                throw corrupt(segment, position, "bad record length " + length);
+            }
+            return null;
+        }
+        byte[] payload = new byte[length];
+        in.readFully(payload);
+        crc.reset();
+        crc.update(payload);
+        if ((int) crc.getValue() != checksum) {
+            if (length == remaining - 8) {
+                return null;
+            }
+            throw corrupt(segment, position, "checksum mismatch");
+        }
+        return payload;
+    }
+
+    private boolean recordFollows(byte[] bytes) {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        for (int start = 0; start + 8 < bytes.length; start++) {
+            int length = buffer.getInt(start);
+            if (length > 0 && length <= bytes.length - start - 8) {
+                crc.reset();
+                crc.update(bytes, start + 8, length);
+                if ((int) crc.getValue() == buffer.getInt(start + 4)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static boolean zerosToEnd(InputStream in) throws IOException {
+        int b;
+        while ((b = in.read()) >= 0) {
+            if (b != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static IOException corrupt(Path segment, long position, String problem) {
+        return new IOException("Corrupt task journal " + segment + " at byte " + position + ": " + problem);
+    }
+
+    private static void apply(DataInputStream record, TaskStore tasks, TaskStore completedTasks) throws IOException {
+        byte op = record.readByte();
+        if (op == BATCH) {
+            int count = record.readInt();
+            for (int i = 0; i < count; i++) {
+                byte[] operation = new byte[record.readInt()];
+                record.readFully(operation);
+                apply(new DataInputStream(new ByteArrayInputStream(operation)), tasks, completedTasks);
+            }
+            return;
+        }
+        TaskStore store = record.readByte() == COMPLETED ? completedTasks : tasks;
+        long id = record.readLong();
+        int index = record.readInt();
+        String text = record.readBoolean() ? readString(record) : null;
+        // Creation times were added to ADD records later, priorities and due dates to ADD and EDIT
+        // records later still, and recurrence rules last; older records have none
+        long createdAt = op == ADD && record.available() >= 8 ? record.readLong() : 0;
+        boolean hasFields = record.available() >= 9;
+        int priority = hasFields ? record.readByte() : ToDoListApp.Task.NO_PRIORITY;
+        long dueDate = hasFields ? record.readLong() : ToDoListApp.Task.NO_DUE_DATE;
+        int recurrence = record.available() >= 4 ? record.readInt() : ToDoListApp.Task.NO_RECURRENCE;
+        switch (op) {
+            case ADD -> store.add(new ToDoListApp.Task(id, text, createdAt, priority, dueDate, recurrence));
+            case EDIT -> {
+                ToDoListApp.Task task = store.getById(id);
+                store.replace(hasFields ? task.with(text, priority, dueDate, recurrence) : task.withDescription(text));
+            }
+            case REMOVE -> store.remove(id);
+            case COMPLETE -> completedTasks.add(tasks.remove(id));
+            case UNCOMPLETE -> tasks.add(completedTasks.remove(id));
+            case MOVE -> store.move(id, index);
+            default -> throw new IOException("Unknown journal operation " + op);
+        }
+    }
+
+    @Override
+    public void logAdd(ToDoListApp.Task task) throws IOException {
+        append(ADD, TASKS, task.getId(), 0, task);
+    }
+
+    @Override
+    public void logEdit(int list, ToDoListApp.Task editedTask) throws IOException {
+        append(EDIT, list, editedTask.getId(), 0, editedTask);
+    }
+
+    @Override
+    public void logRemove(int list, long id) throws IOException {
+        append(REMOVE, list, id, 0, null);
+    }
+
+    @Override
+    public void logComplete(long id) throws IOException {
+        append(COMPLETE, TASKS, id, 0, null);
+    }
+
+    @Override
+    public void logUnComplete(long id) throws IOException {
+        append(UNCOMPLETE, COMPLETED, id, 0, null);
+    }
+
+    @Override
+    public void logMove(int list, long id, int newIndex) throws IOException {
+        append(MOVE, list, id, newIndex, null);
+    }
+
+    // Gather the operations logged until commitBatch() into a single record, so the batch is
+    // written and synced once and replayed all or nothing
+    @Override
+    public synchronized void beginBatch() {
+        batch = new ByteArrayOutputStream();
+        batchCount = 0;
+    }
+
+    @Override
+    public synchronized void commitBatch() throws IOException {
+        if (batch == null) {
+            return;
+        }
+        if (batchCount > 0) {
+            writeBatch();
+        }
+        batch = null;
+    }
+
+    // Drop the operations of an open batch without writing them
+    @Override
+    public synchronized void abortBatch() {
+        batch = null;
+    }
+
+    // ADD and EDIT records carry the task's fields; the others none
+    private synchronized void append(byte op, int list, long id, int index, ToDoListApp.Task task) throws IOException {
+        if (out == null) {
+            throw new IOException("Task journal is not open");
+        }
+        operationBuffer.reset();
+        DataOutputStream operation = new DataOutputStream(operationBuffer);
+        operation.writeByte(op);
+        operation.writeByte(list);
+        operation.writeLong(id);
+        operation.writeInt(index);
+        operation.writeBoolean(task != null);
+        if (task != null) {
+            writeString(operation, task.getDescription());
+            if (op == ADD) {
+                operation.writeLong(task.getCreatedAt());
+            }
+            operation.writeByte(task.getPriority());
+            operation.writeLong(task.getDueDate());
+            operation.writeInt(task.getRecurrence());
+        }
+
+        if (batch == null) {
+            writeRecord(operationBuffer, 1);
+            return;
+        }
+        new DataOutputStream(batch).writeInt(operationBuffer.size());
+        operationBuffer.writeTo(batch);
+        batchCount++;
+        // A batch too large for one record is committed in parts
+        if (batch.size() >= MAX_RECORD_SIZE / 2) {
+            writeBatch();
+        }
+    }
+
+    private void writeBatch() throws IOException {
+        operationBuffer.reset();
+        DataOutputStream operation = new DataOutputStream(operationBuffer);
+        operation.writeByte(BATCH);
+        operation.writeInt(batchCount);
+        batch.writeTo(operationBuffer);
+        writeRecord(operationBuffer, batchCount);
+        batch.reset();
+        batchCount = 0;
+    }
+
+    private void writeRecord(ByteArrayOutputStream body, int operations) throws IOException {
+        recordBuffer.reset();
+        new DataOutputStream(recordBuffer).writeLong(seq + 1);
+        body.writeTo(recordBuffer);
+
+        crc.reset();
+        crc.update(recordBuffer.toByteArray());
+        out.writeInt(recordBuffer.size());
+        out.writeInt((int) crc.getValue());
+        recordBuffer.writeTo(out);
+        out.flush();
+        seq++;
+        recordsSinceCompaction += operations;
+
+        if (fsyncPolicy == FsyncPolicy.ALWAYS) {
+            journalOut.getChannel().force(false);
+        } else {
+            dirty = true;
+        }
+    }
+
+    // Group commit for the INTERVAL policy: one fsync covers every record appended since the last one
+    private synchronized void sync() {
+        if (!dirty || journalOut == null) {
+            return;
+        }
+        try {
+            journalOut.getChannel().force(false);
+            dirty = false;
+        } catch (IOException e) {
+            System.out.println("Error syncing task journal: " + e.getMessage());
+        }
+    }
+
+    // Compact once enough records have piled up since the last compaction
+    @Override
+    public void saved(TaskStore.Snapshot tasks, TaskStore.Snapshot completedTasks) {
+        if (shouldCompact()) {
+            compact(tasks, completedTasks);
+        }
+    }
+
+    public synchronized boolean shouldCompact() {
+        return !compacting && recordsSinceCompaction >= compactThreshold;
+    }
+
+    // Start a new journal segment and write the given snapshots of both stores in the
+    // background. The snapshots must reflect every record logged so far.
+    public synchronized void compact(TaskStore.Snapshot tasks, TaskStore.Snapshot completedTasks) {
+        if (compacting) {
+            return;
+        }
+        compacting = true;
+        recordsSinceCompaction = 0;
+        long snapshotSeq = seq;
+        try {
+            if (!Files.exists(oldJournalFile)) {
+                closeJournal();
+                Files.move(journalFile, oldJournalFile, StandardCopyOption.ATOMIC_MOVE);
+                openJournal();
+            }
+        } catch (IOException e) {
+            System.out.println("Error rotating task journal: " + e.getMessage());
+            compacting = false;
+            return;
+        }
+
+        compactor.execute(() -> {
+            try {
+                writeSnapshot(snapshotSeq, tasks, completedTasks);
+                Files.deleteIfExists(oldJournalFile);
+            } catch (IOException e) {
+                System.out.println("Error compacting task journal: " + e.getMessage());
+            } finally {
+                synchronized (this) {
+                    compacting = false;
+                }
+            }
+        });
+    }
+
+    private void writeSnapshot(long snapshotSeq, TaskStore.Snapshot tasks, TaskStore.Snapshot completedTasks) throws IOException {
+        BinaryTaskFile.write(snapshotFile, snapshotSeq, tasks, completedTasks);
+    }
+
+    private void openJournal() throws IOException {
+        journalOut = new FileOutputStream(journalFile.toFile(), true);
+        out = new DataOutputStream(new BufferedOutputStream(journalOut));
+    }
+
+    private void closeJournal() throws IOException {
+        if (out != null) {
+            out.flush();
+            journalOut.getChannel().force(false);
+            out.close();
+            out = null;
+            journalOut = null;
+        }
+    }
+
+    @Override
+    public void close() {
+        compactor.shutdown();
+        try {
+            compactor.awaitTermination(30, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (this) {
+            try {
+                closeJournal();
+            } catch (IOException e) {
+                System.out.println("Error closing task journal: " + e.getMessage());
+            }
+        }
+        if (syncer != null) {
+            syncer.shutdown();
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String text) throws IOException {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,45 @@
+import javax.swing.AbstractListModel;
+
+// List model that reads rows straight from a TaskStore. Instead of clearing and refilling a
+// copy after every change, it forwards the store's change ranges as list events, so the JList
+// only repaints and relayouts the rows that actually changed.
+class TaskListModel extends AbstractListModel<ToDoListApp.Task> implements TaskStore.Listener {
+    private static final long serialVersionUID = 1L;
+
+    private final TaskStore store;
+
+    public TaskListModel(TaskStore store) {
+        this.store = store;
+        store.addListener(this);
+    }
+
+    // Stop following the store, for a model that is no longer shown
+    public void dispose() {
+        store.removeListener(this);
+    }
+
+    @Override
+    public int getSize() {
+        return store.size();
+    }
+
+    @Override
+    public ToDoListApp.Task getElementAt(int index) {
+        return store.get(index);
+    }
+
+    @Override
+    public void tasksInserted(int fromIndex, int toIndex) {
+        fireIntervalAdded(this, fromIndex, toIndex);
+    }
+
+    @Override
+    public void tasksRemoved(int fromIndex, int toIndex) {
+        fireIntervalRemoved(this, fromIndex, toIndex);
+    }
+
+    @Override
+    public void tasksChanged(int fromIndex, int toIndex) {
+        fireContentsChanged(this, fromIndex, toIndex);
+    }
+}
@@ -0,0 +1,216 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+// The named task lists in one directory, each its own shard: a ToDoListApp with its own files,
+// persistence, search index and watcher. List NAME keeps its tasks in NAME.txt and
+// completed_NAME.txt, so the original tasks.txt pair is the list "tasks".
+//
+// A shard is loaded the first time it is opened and then stays in memory, so switching back to
+// it reads nothing from disk. Beyond maxLoaded shards the least recently opened ones are closed
+// and dropped, after their pending writes finish. The shard opened last is never dropped.
+class TaskLists {
+    static final String DEFAULT_LIST = "tasks";
+    private static final String COMPLETED_PREFIX = "completed_";
+    private static final String SUFFIX = ".txt";
+
+    private final Path directory;
+    private final Function<String, ToDoListApp> factory;
+    private final int maxLoaded;
+    // Access-ordered, so iteration starts at the least recently opened shard
+    private final LinkedHashMap<String, CompletableFuture<ToDoListApp>> shards = new LinkedHashMap<>(16, 0.75f, true);
+    private final HashMap<String, CompletableFuture<Void>> closing = new HashMap<>();
+    private String current;
+
+    // factory makes a shard, not yet loaded, for a list name
+    public TaskLists(Path directory, Function<String, ToDoListApp> factory, int maxLoaded) {
+        this.directory = directory;
+        this.factory = factory;
+        this.maxLoaded = Math.max(1, maxLoaded);
+    }
+
+    // One list that is already made, under its own file names rather than a directory's
+    public static TaskLists of(String name, ToDoListApp app) {
+        return new TaskLists(null, listName -> app, 1) {
+            @Override
+            public List<String> names() {
+                return List.of(name);
+            }
+        };
+    }
+
+    public static String tasksFileName(Path directory, String name) {
+        return directory.resolve(name + SUFFIX).toString();
+    }
+
+    public static String completedTasksFileName(Path directory, String name) {
+        return directory.resolve(COMPLETED_PREFIX + name + SUFFIX).toString();
+    }
+
+    // Every list in the directory, sorted, always including the default one
+    public List<String> names() {
+        TreeSet<String> names = new TreeSet<>();
+        names.add(DEFAULT_LIST);
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + SUFFIX)) {
+            for (Path file : files) {
+                String fileName = file.getFileName().toString();
+                String name = fileName.substring(0, fileName.length() - SUFFIX.length());
+                if (!name.startsWith(COMPLETED_PREFIX) && Files.exists(directory.resolve(COMPLETED_PREFIX + fileName))) {
+                    names.add(name);
+                }
+            }
+        } catch (IOException e) {
+            System.out.println("Error listing task lists: " + e.getMessage());
+        }
+        return new ArrayList<>(names);
+    }
+
+    public boolean canCreate() {
+        return directory != null;
+    }
+
+    // Make a new, empty list. Names become file names, so path separators are refused.
+    public void create(String name) throws IOException {
+        if (!canCreate() || name.isEmpty() || name.startsWith(COMPLETED_PREFIX) || name.startsWith(".")
+                || name.indexOf('/') >= 0 || name.indexOf('\\') >= 0) {
+            throw new IOException("Cannot name a list \"" + name + "\"");
+        }
+        Path tasksFile = directory.resolve(name + SUFFIX);
+        Path completedTasksFile = directory.resolve(COMPLETED_PREFIX + name + SUFFIX);
+        if (Files.exists(tasksFile) && Files.exists(completedTasksFile)) {
+            throw new IOException("A list named \"" + name + "\" already exists");
+        }
+        if (!Files.exists(tasksFile)) {
+            Files.createFile(tasksFile);
+        }
+        if (!Files.exists(completedTasksFile)) {
+            Files.createFile(completedTasksFile);
+        }
+    }
+
+    // The shard for a list if it is in memory, or null. Never touches the disk, so the Event
+    // Dispatch Thread may call it.
+    public synchronized ToDoListApp loaded(String name) {
+        CompletableFuture<ToDoListApp> shard = shards.get(name);
+        ToDoListApp app = shard == null ? null : shard.getNow(null);
+        if (app != null) {
+            current = name;
+        }
+        return app;
+    }
+
+    // The shard for a list, loading it on the calling thread if it is not in memory. A list
+    // opened from two threads at once is loaded once.
+    public ToDoListApp open(String name) throws IOException {
+        return open(name, null);
+    }
+
+    // As above, handing firstPage the first tasks of a long list as soon as they are read, if
+    // this call is the one that loads it
+    public ToDoListApp open(String name, Consumer<List<ToDoListApp.Task>> firstPage) throws IOException {
+        CompletableFuture<ToDoListApp> shard;
+        CompletableFuture<Void> closed;
+        boolean load = false;
+        synchronized (this) {
+            current = name;
+            shard = shards.get(name);
+            if (shard == null) {
+                shard = new CompletableFuture<>();
+                shards.put(name, shard);
+                load = true;
+            }
+            closed = closing.get(name);
+        }
+        if (load) {
+            try {
+                // A dropped copy of this list may still be writing its last changes
+                if (closed != null) {
+                    closed.join();
+                }
+                ToDoListApp app = factory.apply(name);
+                app.loadListsNow(firstPage);
+                app.watchFiles();
+                shard.complete(app);
+            } catch (IOException | RuntimeException e) {
+                synchronized (this) {
+                    shards.remove(name);
+                }
+                shard.completeExceptionally(e);
+            }
+        }
+        try {
+            return shard.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            } else if (e.getCause() instanceof UncheckedIOException) {
+                throw ((UncheckedIOException) e.getCause()).getCause();
+            }
+            throw e;
+        }
+    }
+
+    // Drop the least recently opened shards beyond the limit. Their pending writes finish on a
+    // background thread; reopening one meanwhile waits for that.
+    public void trim() {
+        ArrayList<Map.Entry<String, ToDoListApp>> evicted = new ArrayList<>();
+        synchronized (this) {
+            Iterator<Map.Entry<String, CompletableFuture<ToDoListApp>>> entries = shards.entrySet().iterator();
+            int excess = shards.size() - maxLoaded;
+            while (excess > 0 && entries.hasNext()) {
+                Map.Entry<String, CompletableFuture<ToDoListApp>> entry = entries.next();
+                ToDoListApp app = entry.getValue().getNow(null);
+                if (app != null && !entry.getKey().equals(current)) {
+                    entries.remove();
+                    evicted.add(Map.entry(entry.getKey(), app));
+                    excess--;
+                }
+            }
+            for (Map.Entry<String, ToDoListApp> shard : evicted) {
+                closing.put(shard.getKey(), CompletableFuture.runAsync(() -> {
+                    shard.getValue().close();
+                    synchronized (this) {
+                        closing.remove(shard.getKey());
+                    }
+                }));
+            }
+        }
+    }
+
+    public synchronized List<String> loadedNames() {
+        return Collections.unmodifiableList(new ArrayList<>(shards.keySet()));
+    }
+
+    // Close every shard, waiting for their writes
+    public void close() {
+        ArrayList<CompletableFuture<ToDoListApp>> open;
+        ArrayList<CompletableFuture<Void>> closes;
+        synchronized (this) {
+            open = new ArrayList<>(shards.values());
+            closes = new ArrayList<>(closing.values());
+        }
+        for (CompletableFuture<ToDoListApp> shard : open) {
+            ToDoListApp app = shard.getNow(null);
+            if (app != null) {
+                app.close();
+            }
+        }
+        for (CompletableFuture<Void> close : closes) {
+            close.join();
+        }
+    }
+}
@@ -0,0 +1,44 @@
+import java.io.IOException;
+
+// Where a ToDoListApp keeps its lists when each mutation is stored as it happens instead of
+// rewriting whole files: the TaskJournal, or a database through JdbcTaskRepository. The app
+// loads through it once and then reports every committed mutation, in order, on its persistence
+// thread. Mutations that make up one batch are bracketed by beginBatch() and commitBatch(), and
+// must be stored all or nothing.
+//
+// Lists are named by TASKS and COMPLETED. Moves give the task's new position in its list.
+interface TaskRepository {
+    int TASKS = 0;
+    int COMPLETED = 1;
+
+    // Whether the repository holds lists yet. If not, the text files are imported: load() is
+    // handed stores already holding them, and takes them over.
+    boolean exists() throws IOException;
+
+    // Read both lists into the given stores
+    void load(TaskStore tasks, TaskStore completedTasks) throws IOException;
+
+    void logAdd(ToDoListApp.Task task) throws IOException;
+
+    void logEdit(int list, ToDoListApp.Task editedTask) throws IOException;
+
+    void logRemove(int list, long id) throws IOException;
+
+    void logComplete(long id) throws IOException;
+
+    void logUnComplete(long id) throws IOException;
+
+    void logMove(int list, long id, int newIndex) throws IOException;
+
+    void beginBatch();
+
+    void commitBatch() throws IOException;
+
+    // Drop the mutations of an open batch
+    void abortBatch();
+
+    // Called after each save with both lists as of it, for upkeep such as compaction
+    void saved(TaskStore.Snapshot tasks, TaskStore.Snapshot completedTasks);
+
+    void close();
+}
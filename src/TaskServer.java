@@ -0,0 +1,390 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+// Serves the task lists of a headless ToDoListApp over HTTP with JSON bodies.
+//
+//   GET    /tasks?list=incomplete|completed&offset=0&limit=50   one page of a list
+//   GET    /tasks/{id}                                         one task
+//   POST   /tasks               {"description": "..."}         add an uncompleted task
+//   PUT    /tasks/{id}          {"description": "..."}         edit an uncompleted task
+//   DELETE /tasks/{id}                                         delete a task
+//   POST   /tasks/{id}/complete                                move to the completed list
+//   POST   /tasks/{id}/uncomplete                              move back to the uncompleted list
+//   POST   /tasks/{id}/move     {"to": "up|down|top|bottom"}   reorder within its list
+//
+// Adding and editing also take an optional "priority" (0 none, 1 low, 2 medium, 3 high),
+// "due" ("YYYY-MM-DD", or null for none) and "recurrence" ("1d", "2w", "1m", "1y", or null for
+// none); an edit without them keeps the task's current ones.
+//
+// Line breaks in descriptions become spaces, as a task is one line in the text files.
+//
+// Each request runs on its own virtual thread where the JDK has them (21 and later) and on a
+// pooled thread otherwise. Requests that look a task up and then change it do both in one of
+// the model's batches, which holds its writer lock, so the answer matches what was done; list
+// requests read the model's published snapshot and never wait.
+class TaskServer {
+    private static final int MAX_PAGE_SIZE = 1000;
+
+    private final ToDoListApp app;
+    private final HttpServer server;
+    private final ExecutorService executor;
+
+    public TaskServer(ToDoListApp app, InetSocketAddress address) throws IOException {
+        // The JDK server closes keep-alive connections beyond 200 idle ones, which many clients
+        // then see as failed requests. It reads the limit once, when the server first starts.
+        if (System.getProperty("sun.net.httpserver.maxIdleConnections") == null) {
+            System.setProperty("sun.net.httpserver.maxIdleConnections", "4096");
+        }
+        this.app = app;
+        server = HttpServer.create(address, 1024);
+        executor = newRequestExecutor();
+        server.setExecutor(executor);
+        server.createContext("/tasks", this::handle);
+    }
+
+    // Executors.newVirtualThreadPerTaskExecutor() is looked up at run time so the server still
+    // builds and runs on JDKs without virtual threads
+    private static ExecutorService newRequestExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newFixedThreadPool(Math.max(4, Runtime.getRuntime().availableProcessors() * 4), r -> {
+                Thread thread = new Thread(r, "task-server");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    // Stop accepting requests, let the ones in progress finish, then save and close the model
+    public void stop() {
+        server.stop(1);
+        executor.shutdown();
+        try {
+            executor.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        app.close();
+    }
+
+    // A request that cannot be served, with the status to answer it with
+    private static final class RequestException extends Exception {
+        private static final long serialVersionUID = 1L;
+
+        final int status;
+
+        RequestException(int status, String message) {
+            super(message);
+            this.status = status;
+        }
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        long start = Metrics.start();
+        try {
+            int status = 200;
+            String response;
+            String method = exchange.getRequestMethod();
+            String[] path = exchange.getRequestURI().getPath().split("/");
+            // path[0] is empty and path[1] is "tasks"
+            if (path.length == 2) {
+                if (method.equals("GET")) {
+                    response = list(exchange.getRequestURI());
+                } else if (method.equals("POST")) {
+                    Map<String, Object> body = readBody(exchange);
+                    String description = requiredString(body, "description");
+                    Integer priority = optionalPriority(body);
+                    Long dueDate = optionalDueDate(body);
+                    Integer recurrence = optionalRecurrence(body);
+                    ToDoListApp.Task task = app.addTask(description, priority != null ? priority : ToDoListApp.Task.NO_PRIORITY,
+                            dueDate != null ? dueDate : ToDoListApp.Task.NO_DUE_DATE,
+                            recurrence != null ? recurrence : ToDoListApp.Task.NO_RECURRENCE, ToDoListApp.TaskType.INCOMPLETE);
+                    response = TaskTransfer.taskJson(task, false);
+                    status = 201;
+                } else {
+                    throw new RequestException(405, "Method not allowed");
+                }
+            } else if (path.length == 3 || path.length == 4) {
+                long id = parseId(path[2]);
+                String action = path.length == 4 ? path[3] : null;
+                response = handleTask(method, id, action, exchange);
+            } else {
+                throw new RequestException(404, "Not found");
+            }
+            send(exchange, status, response);
+        } catch (RequestException e) {
+            send(exchange, e.status, "{\"error\":" + Json.quote(e.getMessage()) + "}");
+        } catch (RuntimeException e) {
+            System.out.println("Error handling request: " + e.getMessage());
+            send(exchange, 500, "{\"error\":\"Internal error\"}");
+        } finally {
+            Metrics.record(Metrics.Op.HTTP_REQUEST, start);
+        }
+    }
+
+    private String handleTask(String method, long id, String action, HttpExchange exchange) throws IOException, RequestException {
+        if (action == null && method.equals("GET")) {
+            return lockedOrFail(() -> {
+                ToDoListApp.Task task = app.getTasks().getById(id);
+                if (task != null) {
+                    return TaskTransfer.taskJson(task, false);
+                }
+                task = app.getCompletedTasks().getById(id);
+                return task == null ? null : TaskTransfer.taskJson(task, true);
+            });
+        } else if (action == null && method.equals("PUT")) {
+            Map<String, Object> body = readBody(exchange);
+            String description = requiredString(body, "description");
+            Integer priority = optionalPriority(body);
+            Long dueDate = optionalDueDate(body);
+            Integer recurrence = optionalRecurrence(body);
+            return lockedOrFail(() -> {
+                ToDoListApp.Task task = uncompletedTask(id);
+                if (task == null) {
+                    return null;
+                }
+                app.editTask(task, description, priority != null ? priority : task.getPriority(),
+                        dueDate != null ? dueDate : task.getDueDate(),
+                        recurrence != null ? recurrence : task.getRecurrence(), ToDoListApp.TaskType.INCOMPLETE);
+                return TaskTransfer.taskJson(app.getTasks().getById(id), false);
+            });
+        } else if (action == null && method.equals("DELETE")) {
+            return lockedOrFail(() -> {
+                boolean completed = !app.getTasks().contains(id);
+                ToDoListApp.Task task = completed ? app.getCompletedTasks().getById(id) : app.getTasks().getById(id);
+                if (task == null) {
+                    return null;
+                }
+                app.removeTask(task, completed ? ToDoListApp.TaskType.COMPLETED : ToDoListApp.TaskType.INCOMPLETE);
+                return TaskTransfer.taskJson(task, completed);
+            });
+        } else if (method.equals("POST") && "complete".equals(action)) {
+            return lockedOrFail(() -> {
+                ToDoListApp.Task task = uncompletedTask(id);
+                if (task == null) {
+                    return null;
+                }
+                app.completeTask(task, ToDoListApp.TaskType.INCOMPLETE);
+                return TaskTransfer.taskJson(task, true);
+            });
+        } else if (method.equals("POST") && "uncomplete".equals(action)) {
+            return lockedOrFail(() -> {
+                ToDoListApp.Task task = app.getCompletedTasks().getById(id);
+                if (task == null) {
+                    return null;
+                }
+                app.unCompleteTask(task, ToDoListApp.TaskType.COMPLETED);
+                return TaskTransfer.taskJson(task, false);
+            });
+        } else if (method.equals("POST") && "move".equals(action)) {
+            String to = requiredString(readBody(exchange), "to");
+            if (!List.of("up", "down", "top", "bottom").contains(to)) {
+                throw new RequestException(400, "\"to\" must be up, down, top or bottom");
+            }
+            return lockedOrFail(() -> {
+                boolean completed = !app.getTasks().contains(id);
+                TaskStore store = completed ? app.getCompletedTasks() : app.getTasks();
+                ToDoListApp.Task task = store.getById(id);
+                if (task == null) {
+                    return null;
+                }
+                ToDoListApp.TaskType view = completed ? ToDoListApp.TaskType.COMPLETED : ToDoListApp.TaskType.INCOMPLETE;
+                switch (to) {
+                    case "up" -> app.moveTask(task, view, -1, false);
+                    case "down" -> app.moveTask(task, view, 1, false);
+                    case "top" -> app.moveTask(task, view, -1, true);
+                    default -> app.moveTask(task, view, 1, true);
+                }
+                return "{\"id\":" + id + ",\"index\":" + store.indexOf(id) + "}";
+            });
+        }
+        throw new RequestException(405, "Method not allowed");
+    }
+
+    private ToDoListApp.Task uncompletedTask(long id) throws RequestException {
+        ToDoListApp.Task task = app.getTasks().getById(id);
+        if (task == null && app.getCompletedTasks().contains(id)) {
+            throw new RequestException(409, "Task " + id + " is completed");
+        }
+        return task;
+    }
+
+    private String list(URI uri) throws RequestException {
+        Map<String, String> query = parseQuery(uri.getRawQuery());
+        String list = query.getOrDefault("list", "incomplete");
+        if (!list.equals("incomplete") && !list.equals("completed")) {
+            throw new RequestException(400, "\"list\" must be incomplete or completed");
+        }
+        int offset = parseInt(query.get("offset"), 0, "offset");
+        int limit = Math.min(parseInt(query.get("limit"), 50, "limit"), MAX_PAGE_SIZE);
+        boolean completed = list.equals("completed");
+
+        ToDoListApp.ListsSnapshot lists = app.snapshot();
+        TaskStore.Snapshot snapshot = completed ? lists.completedTasks : lists.tasks;
+
+        StringBuilder json = new StringBuilder();
+        json.append("{\"total\":").append(snapshot.size()).append(",\"offset\":").append(offset).append(",\"tasks\":[");
+        int end = (int) Math.min(snapshot.size(), (long) offset + limit);
+        for (int i = offset; i < end; i++) {
+            if (i > offset) {
+                json.append(',');
+            }
+            json.append(TaskTransfer.taskJson(snapshot.get(i), completed));
+        }
+        return json.append("]}").toString();
+    }
+
+    private interface LockedAction {
+        String run() throws RequestException;
+    }
+
+    // Run an action on the model in one batch, so no other writer changes the lists between
+    // its steps; a null result means the task was not found
+    private String lockedOrFail(LockedAction action) throws RequestException {
+        app.beginBatch();
+        try {
+            String result = action.run();
+            if (result == null) {
+                throw new RequestException(404, "No such task");
+            }
+            return result;
+        } finally {
+            app.commitBatch();
+        }
+    }
+
+    // The "priority" field, or null if the body has none
+    private static Integer optionalPriority(Map<String, Object> body) throws RequestException {
+        if (!body.containsKey("priority")) {
+            return null;
+        }
+        Object value = body.get("priority");
+        if (!(value instanceof Long) || (Long) value < ToDoListApp.Task.NO_PRIORITY || (Long) value > ToDoListApp.Task.HIGH) {
+            throw new RequestException(400, "\"priority\" must be 0, 1, 2 or 3");
+        }
+        return ((Long) value).intValue();
+    }
+
+    // The "due" field as days since 1970-01-01, NO_DUE_DATE for null, or null if the body has none
+    private static Long optionalDueDate(Map<String, Object> body) throws RequestException {
+        if (!body.containsKey("due")) {
+            return null;
+        }
+        Object value = body.get("due");
+        if (value == null) {
+            return ToDoListApp.Task.NO_DUE_DATE;
+        }
+        long dueDate = value instanceof String ? ToDoListApp.Task.parseDueDate((String) value) : ToDoListApp.Task.NO_DUE_DATE;
+        if (dueDate == ToDoListApp.Task.NO_DUE_DATE) {
+            throw new RequestException(400, "\"due\" must be a date as YYYY-MM-DD, or null");
+        }
+        return dueDate;
+    }
+
+    // The "recurrence" field as a Recurrence rule, NO_RECURRENCE for null, or null if the body has none
+    private static Integer optionalRecurrence(Map<String, Object> body) throws RequestException {
+        if (!body.containsKey("recurrence")) {
+            return null;
+        }
+        Object value = body.get("recurrence");
+        if (value == null) {
+            return ToDoListApp.Task.NO_RECURRENCE;
+        }
+        int recurrence = value instanceof String ? Recurrence.parse((String) value) : ToDoListApp.Task.NO_RECURRENCE;
+        if (recurrence == ToDoListApp.Task.NO_RECURRENCE) {
+            throw new RequestException(400, "\"recurrence\" must be a rule such as \"1d\", \"2w\", \"1m\" or \"1y\", or null");
+        }
+        return recurrence;
+    }
+
+    private static Map<String, Object> readBody(HttpExchange exchange) throws IOException, RequestException {
+        try (InputStream in = exchange.getRequestBody()) {
+            String body = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+            try {
+                return Json.parseObject(body);
+            } catch (IllegalArgumentException e) {
+                throw new RequestException(400, "Malformed JSON: " + e.getMessage());
+            }
+        }
+    }
+
+    private static String requiredString(Map<String, Object> body, String key) throws RequestException {
+        Object value = body.get(key);
+        if (!(value instanceof String) || ((String) value).isEmpty()) {
+            throw new RequestException(400, "\"" + key + "\" must be a non-empty string");
+        }
+        return (String) value;
+    }
+
+    private static long parseId(String text) throws RequestException {
+        try {
+            return Long.parseLong(text);
+        } catch (NumberFormatException e) {
+            throw new RequestException(404, "Not found");
+        }
+    }
+
+    private static int parseInt(String text, int defaultValue, String name) throws RequestException {
+        if (text == null) {
+            return defaultValue;
+        }
+        try {
+            int value = Integer.parseInt(text);
+            if (value < 0) {
+                throw new NumberFormatException();
+            }
+            return value;
+        } catch (NumberFormatException e) {
+            throw new RequestException(400, "\"" + name + "\" must be a non-negative integer");
+        }
+    }
+
+    private static Map<String, String> parseQuery(String rawQuery) {
+        HashMap<String, String> query = new HashMap<>();
+        if (rawQuery == null) {
+            return query;
+        }
+        for (String pair : rawQuery.split("&")) {
+            int equals = pair.indexOf('=');
+            if (equals > 0) {
+                query.put(decode(pair.substring(0, equals)), decode(pair.substring(equals + 1)));
+            }
+        }
+        return query;
+    }
+
+    private static String decode(String text) {
+        return java.net.URLDecoder.decode(text, StandardCharsets.UTF_8);
+    }
+
+    private static void send(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+}
@@ -0,0 +1,567 @@
+import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.UnaryOperator;
+
+// Ordered collection of tasks with identity lookup by task ID.
+//
+// Order is kept with order-maintenance labels: every task carries a long label, the labels
+// increase along the list, and a weight-balanced tree keyed by label (with subtree sizes)
+// answers position queries. The hash index maps a task ID to its label, so lookup, insert,
+// remove and move are all O(log n) and never compare descriptions. Labels are spread out so
+// that a new label between two neighbours is usually free. When a gap runs out, only the
+// smallest enclosing range of labels that is sparse enough has its tasks spread evenly over
+// it, as in Bender et al.'s order-maintenance list: ranges are aligned powers of two, and a
+// range of 2^i labels may hold at most (2/T)^i tasks. An insert then relabels O(log U) tasks
+// amortized, U being the 2^62 labels, even when every insert lands in the same place, where
+// relabelling the whole list would cost O(n) every few dozen inserts.
+//
+// Tree nodes are never modified after construction, so a snapshot is just the current root.
+// Listeners hear about each change as a range of positions, after it has been applied.
+//
+// Changes and ID lookups synchronize on the store. size(), get(), snapshot() and iteration
+// read the current root without locking, so any thread may call them while another writes;
+// each call sees the list as of one change. A reader that needs several calls to agree
+// should take a snapshot.
+class TaskStore implements Iterable<ToDoListApp.Task> {
+    interface Listener {
+        void tasksInserted(int fromIndex, int toIndex);
+
+        void tasksRemoved(int fromIndex, int toIndex);
+
+        void tasksChanged(int fromIndex, int toIndex);
+    }
+
+    private static final long GAP = 1L << 20;
+    private static final long LABEL_LIMIT = 1L << 61;
+    // Added to a label to align relabelling ranges, leaving every label non-negative
+    private static final long LABEL_OFFSET = 1L << 62;
+    // Most tasks one range of 2^i labels may hold is DENSITY_BASE^i, that is (2/T)^i with T = 1.4,
+    // which still lets a range of 2^62 labels hold four billion tasks
+    private static final double DENSITY_BASE = 2 / 1.4;
+    private static final int DELTA = 3;
+    private static final int RATIO = 2;
+
+    private static final class Node {
+        final long label;
+        final ToDoListApp.Task task;
+        final int size;
+        final Node left;
+        final Node right;
+
+        Node(long label, ToDoListApp.Task task, Node left, Node right) {
+            this.label = label;
+            this.task = task;
+            this.left = left;
+            this.right = right;
+            this.size = size(left) + size(right) + 1;
+        }
+    }
+
+    private volatile Node root;
+    private LongLongMap labels = new LongLongMap();
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    public int size() {
+        return size(root);
+    }
+
+    public boolean isEmpty() {
+        return root == null;
+    }
+
+    public synchronized boolean contains(long id) {
+        return labels.containsKey(id);
+    }
+
+    public ToDoListApp.Task get(int index) {
+        return nodeAt(root, index).task;
+    }
+
+    public synchronized ToDoListApp.Task getById(long id) {
+        long label = labels.get(id);
+        return label == LongLongMap.MISSING ? null : find(root, label).task;
+    }
+
+    // Position of the task with the given ID, or -1 if it is not in this store
+    public synchronized int indexOf(long id) {
+        long label = labels.get(id);
+        return label == LongLongMap.MISSING ? -1 : rank(root, label);
+    }
+
+    public synchronized void add(ToDoListApp.Task task) {
+        add(size(), task);
+    }
+
+    public synchronized void add(int index, ToDoListApp.Task task) {
+        if (index < 0 || index > size()) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size());
+        }
+        if (labels.containsKey(task.getId())) {
+            throw new IllegalArgumentException("Duplicate task ID " + task.getId());
+        }
+        long label = labelFor(index);
+        root = insert(root, label, task);
+        labels.put(task.getId(), label);
+        for (Listener listener : listeners) {
+            listener.tasksInserted(index, index);
+        }
+    }
+
+    // Append tasks in order. An empty store is built in one O(n) pass.
+    public synchronized void addAll(Collection<ToDoListApp.Task> newTasks) {
+        if (!isEmpty()) {
+            for (ToDoListApp.Task task : newTasks) {
+                add(task);
+            }
+            return;
+        }
+        ToDoListApp.Task[] ordered = newTasks.toArray(new ToDoListApp.Task[0]);
+        LongLongMap newLabels = new LongLongMap(ordered.length);
+        long first = firstLabel(ordered.length);
+        for (int i = 0; i < ordered.length; i++) {
+            if (!newLabels.putIfAbsent(ordered[i].getId(), first + i * GAP)) {
+                throw new IllegalArgumentException("Duplicate task ID " + ordered[i].getId());
+            }
+        }
+        labels = newLabels;
+        root = build(ordered, first, 0, ordered.length);
+        if (ordered.length > 0) {
+            for (Listener listener : listeners) {
+                listener.tasksInserted(0, ordered.length - 1);
+            }
+        }
+    }
+
+    // Append every task of another store, which is left empty. An empty store simply takes
+    // over the other store's tree, so handing over a freshly loaded store is O(1).
+    public void addAll(TaskStore other) {
+        synchronized (this) {
+            synchronized (other) {
+                takeOver(other);
+            }
+        }
+    }
+
+    private void takeOver(TaskStore other) {
+        if (other.isEmpty()) {
+            return;
+        }
+        if (!isEmpty()) {
+            ArrayList<ToDoListApp.Task> moved = new ArrayList<>(other.size());
+            for (ToDoListApp.Task task : other) {
+                moved.add(task);
+            }
+            other.clear();
+            addAll(moved);
+            return;
+        }
+        root = other.root;
+        labels = other.labels;
+        other.root = null;
+        other.labels = new LongLongMap();
+        int size = size();
+        for (Listener listener : other.listeners) {
+            listener.tasksRemoved(0, size - 1);
+        }
+        for (Listener listener : listeners) {
+            listener.tasksInserted(0, size - 1);
+        }
+    }
+
+    public synchronized ToDoListApp.Task remove(long id) {
+        long label = labels.remove(id);
+        if (label == LongLongMap.MISSING) {
+            return null;
+        }
+        ToDoListApp.Task task = find(root, label).task;
+        int index = rank(root, label);
+        root = delete(root, label);
+        for (Listener listener : listeners) {
+            listener.tasksRemoved(index, index);
+        }
+        return task;
+    }
+
+    // Swap in a new version of a task that is already in the store, keeping its position
+    public synchronized void replace(ToDoListApp.Task task) {
+        long label = labels.get(task.getId());
+        if (label == LongLongMap.MISSING) {
+            throw new NoSuchElementException("No task with ID " + task.getId());
+        }
+        root = replace(root, label, task);
+        int index = rank(root, label);
+        for (Listener listener : listeners) {
+            listener.tasksChanged(index, index);
+        }
+    }
+
+    // Swap every task for the version the function returns, which must keep its ID, in order.
+    // The labels and the shape of the tree stay as they are, so this is one O(n) pass, and
+    // listeners hear of it as a single change of the whole list.
+    public synchronized void replaceAll(UnaryOperator<ToDoListApp.Task> replacement) {
+        if (root == null) {
+            return;
+        }
+        root = replaceAll(root, replacement);
+        int size = size();
+        for (Listener listener : listeners) {
+            listener.tasksChanged(0, size - 1);
+        }
+    }
+
+    // Move a task to the given position, counted after it has been taken out of the list
+    public synchronized void move(long id, int newIndex) {
+        ToDoListApp.Task task = remove(id);
+        if (task == null) {
+            throw new NoSuchElementException("No task with ID " + id);
+        }
+        add(newIndex, task);
+    }
+
+    public synchronized void clear() {
+        int size = size();
+        root = null;
+        labels.clear();
+        if (size > 0) {
+            for (Listener listener : listeners) {
+                listener.tasksRemoved(0, size - 1);
+            }
+        }
+    }
+
+    public Snapshot snapshot() {
+        return new Snapshot(root);
+    }
+
+    @Override
+    public Iterator<ToDoListApp.Task> iterator() {
+        return new NodeIterator(root);
+    }
+
+    // Immutable view of the store at one point in time
+    static final class Snapshot implements Iterable<ToDoListApp.Task> {
+        private final Node root;
+
+        private Snapshot(Node root) {
+            this.root = root;
+        }
+
+        public int size() {
+            return TaskStore.size(root);
+        }
+
+        public ToDoListApp.Task get(int index) {
+            return nodeAt(root, index).task;
+        }
+
+        // Whether the store is unchanged since this snapshot was taken
+        public boolean isSnapshotOf(TaskStore store) {
+            return store.root == root;
+        }
+
+        @Override
+        public Iterator<ToDoListApp.Task> iterator() {
+            return new NodeIterator(root);
+        }
+    }
+
+    private static final class NodeIterator implements Iterator<ToDoListApp.Task> {
+        private final ArrayDeque<Node> stack = new ArrayDeque<>();
+
+        NodeIterator(Node root) {
+            pushLeft(root);
+        }
+
+        private void pushLeft(Node node) {
+            for (; node != null; node = node.left) {
+                stack.push(node);
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return !stack.isEmpty();
+        }
+
+        @Override
+        public ToDoListApp.Task next() {
+            if (stack.isEmpty()) {
+                throw new NoSuchElementException();
+            }
+            Node node = stack.pop();
+            pushLeft(node.right);
+            return node.task;
+        }
+    }
+
+    // Pick a label for a task inserted at the given position, relabelling if the gap is used up
+    private long labelFor(int index) {
+        int size = size();
+        if (size == 0) {
+            return 0;
+        }
+        if (index == size) {
+            long last = nodeAt(root, size - 1).label;
+            if (last < LABEL_LIMIT) {
+                return last + GAP;
+            }
+        } else if (index == 0) {
+            long first = nodeAt(root, 0).label;
+            if (first > -LABEL_LIMIT) {
+                return first - GAP;
+            }
+        } else {
+            long before = nodeAt(root, index - 1).label;
+            long after = nodeAt(root, index).label;
+            if (after - before > 1) {
+                return before + (after - before) / 2;
+            }
+            long label = relabelAround(index);
+            if (label != LongLongMap.MISSING) {
+                return label;
+            }
+        }
+
+        relabel(toArray());
+        return labelFor(index);
+    }
+
+    // Relabel the smallest range around the neighbour before the given position that has room
+    // for one more task, spreading its tasks evenly with a slot left free at the position, and
+    // return that slot's label. Returns MISSING if even the largest range is too full.
+    private long relabelAround(int index) {
+        long anchor = nodeAt(root, index - 1).label + LABEL_OFFSET;
+        for (int level = 1; level <= 62; level++) {
+            long rangeSize = 1L << level;
+            long low = (anchor & -rangeSize) - LABEL_OFFSET;
+            int first = countBelow(root, low);
+            int count = countBelow(root, low + rangeSize) - first;
+            if (count + 1 > Math.pow(DENSITY_BASE, level)) {
+                continue;
+            }
+            long step = rangeSize / (count + 1);
+            long[] newLabels = new long[count];
+            for (int i = 0; i < count; i++) {
+                int slot = first + i < index ? i : i + 1;
+                newLabels[i] = low + slot * step + step / 2;
+            }
+            root = relabel(root, 0, first, first + count, newLabels);
+            return low + (index - first) * step + step / 2;
+        }
+        return LongLongMap.MISSING;
+    }
+
+    // A copy of the tree with the tasks at positions from to to - 1 given the new labels, in
+    // order, copying only those nodes and the paths to them. The caller keeps the tree in order.
+    private Node relabel(Node node, int offset, int from, int to, long[] newLabels) {
+        if (node == null || offset >= to || offset + node.size <= from) {
+            return node;
+        }
+        int position = offset + size(node.left);
+        Node left = relabel(node.left, offset, from, to, newLabels);
+        long label = node.label;
+        if (position >= from && position < to) {
+            label = newLabels[position - from];
+            labels.put(node.task.getId(), label);
+        }
+        return new Node(label, node.task, left, relabel(node.right, position + 1, from, to, newLabels));
+    }
+
+    private ToDoListApp.Task[] toArray() {
+        ToDoListApp.Task[] ordered = new ToDoListApp.Task[size()];
+        int i = 0;
+        for (ToDoListApp.Task task : this) {
+            ordered[i++] = task;
+        }
+        return ordered;
+    }
+
+    // Rebuild the tree with evenly spaced labels centred on zero
+    private void relabel(ToDoListApp.Task[] ordered) {
+        long first = firstLabel(ordered.length);
+        root = build(ordered, first, 0, ordered.length);
+        for (int i = 0; i < ordered.length; i++) {
+            labels.put(ordered[i].getId(), first + i * GAP);
+        }
+    }
+
+    private static long firstLabel(int count) {
+        return -(count / 2) * GAP;
+    }
+
+    private static Node build(ToDoListApp.Task[] ordered, long firstLabel, int from, int to) {
+        if (from >= to) {
+            return null;
+        }
+        int mid = (from + to) >>> 1;
+        return new Node(firstLabel + mid * GAP, ordered[mid],
+                build(ordered, firstLabel, from, mid), build(ordered, firstLabel, mid + 1, to));
+    }
+
+    private static int size(Node node) {
+        return node == null ? 0 : node.size;
+    }
+
+    private static Node nodeAt(Node node, int index) {
+        if (index < 0 || index >= size(node)) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size(node));
+        }
+        while (true) {
+            int leftSize = size(node.left);
+            if (index < leftSize) {
+                node = node.left;
+            } else if (index == leftSize) {
+                return node;
+            } else {
+                index -= leftSize + 1;
+                node = node.right;
+            }
+        }
+    }
+
+    private static Node find(Node node, long label) {
+        while (node.label != label) {
+            node = label < node.label ? node.left : node.right;
+        }
+        return node;
+    }
+
+    // How many tasks have a label below the given one
+    private static int countBelow(Node node, long label) {
+        int count = 0;
+        while (node != null) {
+            if (node.label < label) {
+                count += size(node.left) + 1;
+                node = node.right;
+            } else {
+                node = node.left;
+            }
+        }
+        return count;
+    }
+
+    private static int rank(Node node, long label) {
+        int rank = 0;
+        while (node.label != label) {
+            if (label < node.label) {
+                node = node.left;
+            } else {
+                rank += size(node.left) + 1;
+                node = node.right;
+            }
+        }
+        return rank + size(node.left);
+    }
+
+    private static Node insert(Node node, long label, ToDoListApp.Task task) {
+        if (node == null) {
+            return new Node(label, task, null, null);
+        }
+        if (label < node.label) {
+            return balance(node.label, node.task, insert(node.left, label, task), node.right);
+        }
+        return balance(node.label, node.task, node.left, insert(node.right, label, task));
+    }
+
+    private static Node replace(Node node, long label, ToDoListApp.Task task) {
+        if (label < node.label) {
+            return new Node(node.label, node.task, replace(node.left, label, task), node.right);
+        } else if (label > node.label) {
+            return new Node(node.label, node.task, node.left, replace(node.right, label, task));
+        }
+        return new Node(label, task, node.left, node.right);
+    }
+
+    // In order, so the function sees the tasks as they are listed
+    private static Node replaceAll(Node node, UnaryOperator<ToDoListApp.Task> replacement) {
+        if (node == null) {
+            return null;
+        }
+        Node left = replaceAll(node.left, replacement);
+        ToDoListApp.Task task = replacement.apply(node.task);
+        if (task.getId() != node.task.getId()) {
+            throw new IllegalArgumentException("Task " + node.task.getId() + " replaced by task " + task.getId());
+        }
+        return new Node(node.label, task, left, replaceAll(node.right, replacement));
+    }
+
+    private static Node delete(Node node, long label) {
+        if (label < node.label) {
+            return balance(node.label, node.task, delete(node.left, label), node.right);
+        } else if (label > node.label) {
+            return balance(node.label, node.task, node.left, delete(node.right, label));
+        }
+        return glue(node.left, node.right);
+    }
+
+    private static Node glue(Node left, Node right) {
+        if (left == null) {
+            return right;
+        }
+        if (right == null) {
+            return left;
+        }
+        if (left.size > right.size) {
+            Node max = left;
+            while (max.right != null) {
+                max = max.right;
+            }
+            return balance(max.label, max.task, deleteMax(left), right);
+        }
+        Node min = right;
+        while (min.left != null) {
+            min = min.left;
+        }
+        return balance(min.label, min.task, left, deleteMin(right));
+    }
+
+    private static Node deleteMin(Node node) {
+        if (node.left == null) {
+            return node.right;
+        }
+        return balance(node.label, node.task, deleteMin(node.left), node.right);
+    }
+
+    private static Node deleteMax(Node node) {
+        if (node.right == null) {
+            return node.left;
+        }
+        return balance(node.label, node.task, node.left, deleteMax(node.right));
+    }
+
+    // Weight-balanced tree rebalancing (Adams' trees, delta 3 / ratio 2)
+    private static Node balance(long label, ToDoListApp.Task task, Node left, Node right) {
+        int leftSize = size(left);
+        int rightSize = size(right);
+        if (leftSize + rightSize <= 1) {
+            return new Node(label, task, left, right);
+        }
+        if (rightSize > DELTA * leftSize) {
+            if (size(right.left) < RATIO * size(right.right)) {
+                return new Node(right.label, right.task, new Node(label, task, left, right.left), right.right);
+            }
+            Node middle = right.left;
+            return new Node(middle.label, middle.task,
+                    new Node(label, task, left, middle.left),
+                    new Node(right.label, right.task, middle.right, right.right));
+        }
+        if (leftSize > DELTA * rightSize) {
+            if (size(left.right) < RATIO * size(left.left)) {
+                return new Node(left.label, left.task, left.left, new Node(label, task, left.right, right));
+            }
+            Node middle = left.right;
+            return new Node(middle.label, middle.task,
+                    new Node(left.label, left.task, left.left, middle.left),
+                    new Node(label, task, middle.right, right));
+        }
+        return new Node(label, task, left, right);
+    }
+}
@@ -0,0 +1,439 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Map;
+
+// Bulk import and export of both lists as CSV or JSON, picked by the file's extension.
+//
+//   CSV   a header line, then description,priority,due,createdAt,completed,recurrence per task,
+//         quoted as in RFC 4180 where needed; recurrence is optional on import
+//   JSON  an array of the objects the task server returns: {"id", "description", "createdAt",
+//         "priority", "due", "recurrence", "completed"}
+//
+// Both directions stream. Export walks a snapshot of the lists and writes each task as it goes;
+// import reads one record at a time through a small buffer and hands the tasks over in batches
+// of BATCH_SIZE, so neither ever holds a whole file, and dumps of any size pass through a small
+// fixed heap. Imported tasks get new IDs. Both report progress and stop early when cancelled;
+// an import keeps the batches handed over before that, an export leaves no file behind.
+class TaskTransfer {
+    static final int BATCH_SIZE = 10_000;
+    // Longest record accepted, so a malformed file cannot make one record fill the heap
+    private static final int MAX_RECORD_CHARS = 1 << 20;
+    // Most fields accepted in a CSV record; a task has six
+    private static final int MAX_RECORD_FIELDS = 64;
+    private static final String CSV_HEADER = "description,priority,due,createdAt,completed,recurrence";
+
+    interface Progress {
+        // Work done out of the total, in tasks for an export and bytes for an import
+        void progress(long done, long total);
+
+        boolean isCancelled();
+    }
+
+    // Receives one batch of imported tasks, uncompleted and completed ones apart
+    interface Sink {
+        void accept(ArrayList<ToDoListApp.Task> tasks, ArrayList<ToDoListApp.Task> completedTasks) throws IOException;
+    }
+
+    private TaskTransfer() {
+    }
+
+    static boolean isJson(Path file) {
+        return file.getFileName().toString().toLowerCase().endsWith(".json");
+    }
+
+    // The task as the task server and JSON files show it
+    static String taskJson(ToDoListApp.Task task, boolean completed) {
+        return "{\"id\":" + task.getId() + ",\"description\":" + Json.quote(task.getDescription())
+                + ",\"createdAt\":" + task.getCreatedAt() + ",\"priority\":" + task.getPriority()
+                + ",\"due\":" + (task.getDueDate() == ToDoListApp.Task.NO_DUE_DATE ? "null" : Json.quote(LocalDate.ofEpochDay(task.getDueDate()).toString()))
+                + ",\"recurrence\":" + (task.getRecurrence() == ToDoListApp.Task.NO_RECURRENCE ? "null" : Json.quote(Recurrence.format(task.getRecurrence())))
+                + ",\"completed\":" + completed + "}";
+    }
+
+    // Write both lists to the file, through a temporary file that replaces it only when
+    // complete. Returns the number of tasks written, or -1 if cancelled.
+    public static long export(ToDoListApp.ListsSnapshot lists, Path file, Progress progress) throws IOException {
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        boolean json = isJson(file);
+        long total = (long) lists.tasks.size() + lists.completedTasks.size();
+        long written = 0;
+        boolean cancelled = false;
+        try (BufferedWriter out = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+            out.write(json ? "[" : CSV_HEADER);
+            lists:
+            for (TaskStore.Snapshot list : new TaskStore.Snapshot[] { lists.tasks, lists.completedTasks }) {
+                boolean completed = list == lists.completedTasks;
+                for (ToDoListApp.Task task : list) {
+                    if (json) {
+                        out.write(written == 0 ? "\n" : ",\n");
+                        out.write(taskJson(task, completed));
+                    } else {
+                        out.newLine();
+                        writeCsvRecord(out, task, completed);
+                    }
+                    if (++written % BATCH_SIZE == 0) {
+                        if (progress.isCancelled()) {
+                            cancelled = true;
+                            break lists;
+                        }
+                        progress.progress(written, total);
+                    }
+                }
+            }
+            if (!cancelled) {
+                out.write(json ? "\n]\n" : "\n");
+            }
+        } catch (IOException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+        if (cancelled) {
+            // The writer is closed by now, so the partial file can be removed on every platform
+            Files.delete(temp);
+            return -1;
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        progress.progress(written, total);
+        return written;
+    }
+
+    private static void writeCsvRecord(Writer out, ToDoListApp.Task task, boolean completed) throws IOException {
+        writeCsvField(out, task.getDescription());
+        out.write(',');
+        out.write(Integer.toString(task.getPriority()));
+        out.write(',');
+        if (task.getDueDate() != ToDoListApp.Task.NO_DUE_DATE) {
+            out.write(LocalDate.ofEpochDay(task.getDueDate()).toString());
+        }
+        out.write(',');
+        out.write(Long.toString(task.getCreatedAt()));
+        out.write(',');
+        out.write(Boolean.toString(completed));
+        out.write(',');
+        if (task.getRecurrence() != ToDoListApp.Task.NO_RECURRENCE) {
+            out.write(Recurrence.format(task.getRecurrence()));
+        }
+    }
+
+    private static void writeCsvField(Writer out, String value) throws IOException {
+        boolean quote = false;
+        for (int i = 0; i < value.length() && !quote; i++) {
+            char c = value.charAt(i);
+            quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+        }
+        if (!quote) {
+            out.write(value);
+            return;
+        }
+        out.write('"');
+        out.write(value.replace("\"", "\"\""));
+        out.write('"');
+    }
+
+    // Read the file and hand its tasks to the sink in batches. Returns the number of tasks
+    // read, or -1 if cancelled.
+    public static long importFile(Path file, Sink sink, Progress progress) throws IOException {
+        long total = Files.size(file);
+        try (CountingInputStream counted = new CountingInputStream(Files.newInputStream(file));
+                BufferedReader in = new BufferedReader(new InputStreamReader(counted, StandardCharsets.UTF_8))) {
+            RecordReader records = isJson(file) ? new JsonRecords(in) : new CsvRecords(in);
+            ArrayList<ToDoListApp.Task> tasks = new ArrayList<>();
+            ArrayList<ToDoListApp.Task> completedTasks = new ArrayList<>();
+            long read = 0;
+            ImportedTask record;
+            while ((record = records.next()) != null) {
+                (record.completed ? completedTasks : tasks).add(record.task);
+                if (++read % BATCH_SIZE == 0) {
+                    if (progress.isCancelled()) {
+                        return -1;
+                    }
+                    sink.accept(tasks, completedTasks);
+                    tasks = new ArrayList<>();
+                    completedTasks = new ArrayList<>();
+                    progress.progress(counted.count, total);
+                }
+            }
+            if (progress.isCancelled()) {
+                return -1;
+            }
+            if (!tasks.isEmpty() || !completedTasks.isEmpty()) {
+                sink.accept(tasks, completedTasks);
+            }
+            progress.progress(total, total);
+            return read;
+        }
+    }
+
+    private static final class ImportedTask {
+        final ToDoListApp.Task task;
+        final boolean completed;
+
+        ImportedTask(ToDoListApp.Task task, boolean completed) {
+            this.task = task;
+            this.completed = completed;
+        }
+    }
+
+    private interface RecordReader {
+        // The next task, or null at the end
+        ImportedTask next() throws IOException;
+    }
+
+    // RFC 4180 records, read a character at a time. Quoted fields may hold commas, doubled
+    // quotes and line breaks.
+    private static final class CsvRecords implements RecordReader {
+        private final BufferedReader in;
+        private final ArrayList<String> fields = new ArrayList<>();
+        private final StringBuilder field = new StringBuilder();
+        private long line = 1;
+        // Where the last record read starts, as a quoted field may span lines
+        private long recordLine;
+
+        CsvRecords(BufferedReader in) throws IOException {
+            this.in = in;
+            if (readRecord() && !fields.isEmpty() && !fields.get(0).equals("description")) {
+                throw new IOException("Expected the header \"" + CSV_HEADER + "\" on line 1");
+            }
+        }
+
+        @Override
+        public ImportedTask next() throws IOException {
+            while (readRecord()) {
+                if (fields.size() == 1 && fields.get(0).isEmpty()) {
+                    continue;
+                }
+                String description = fields.get(0);
+                int priority = fields.size() > 1 && !fields.get(1).isEmpty() ? parsePriority(fields.get(1), recordLine) : ToDoListApp.Task.NO_PRIORITY;
+                long dueDate = fields.size() > 2 && !fields.get(2).isEmpty() ? parseDue(fields.get(2), recordLine) : ToDoListApp.Task.NO_DUE_DATE;
+                long createdAt = fields.size() > 3 && !fields.get(3).isEmpty() ? parseLong(fields.get(3), recordLine) : 0;
+                boolean completed = fields.size() > 4 && fields.get(4).equalsIgnoreCase("true");
+                int recurrence = fields.size() > 5 && !fields.get(5).isEmpty() ? parseRecurrence(fields.get(5), recordLine) : ToDoListApp.Task.NO_RECURRENCE;
+                return imported(description, createdAt, priority, dueDate, recurrence, completed);
+            }
+            return null;
+        }
+
+        // Read the fields of one record; false at the end of the input
+        private boolean readRecord() throws IOException {
+            fields.clear();
+            field.setLength(0);
+            int c = in.read();
+            if (c < 0) {
+                return false;
+            }
+            boolean quoted = false;
+            recordLine = line;
+            int recordChars = 0;
+            while (true) {
+                // The limit covers every character of the record, separators and quotes included
+                if (++recordChars > MAX_RECORD_CHARS) {
+                    throw new IOException("Record on line " + recordLine + " is too long");
+                }
+                if (quoted) {
+                    if (c < 0) {
+                        throw new IOException("Unterminated quoted field on line " + line);
+                    } else if (c == '"') {
+                        c = in.read();
+                        if (c == '"') {
+                            field.append('"');
+                        } else {
+                            quoted = false;
+                            continue;
+                        }
+                    } else {
+                        if (c == '\n') {
+                            line++;
+                        }
+                        field.append((char) c);
+                    }
+                } else if (c == '"' && field.length() == 0) {
+                    quoted = true;
+                } else if (c == ',') {
+                    if (fields.size() + 1 >= MAX_RECORD_FIELDS) {
+                        throw new IOException("Record on line " + recordLine + " has more than " + MAX_RECORD_FIELDS + " fields");
+                    }
+                    fields.add(field.toString());
+                    field.setLength(0);
+                } else if (c == '\n' || c < 0) {
+                    fields.add(field.toString());
+                    line++;
+                    return true;
+                } else if (c != '\r') {
+                    field.append((char) c);
+                }
+                c = in.read();
+            }
+        }
+    }
+
+    // An array of flat objects. Each object's text is cut out of the stream by tracking nesting
+    // and strings, then parsed by Json, so only one object is in memory at a time.
+    private static final class JsonRecords implements RecordReader {
+        private final BufferedReader in;
+        private final StringBuilder object = new StringBuilder();
+        private long line = 1;
+
+        JsonRecords(BufferedReader in) throws IOException {
+            this.in = in;
+            if (skipWhitespace() != '[') {
+                throw new IOException("Expected a JSON array of tasks");
+            }
+        }
+
+        @Override
+        public ImportedTask next() throws IOException {
+            int c = skipWhitespace();
+            if (c == ',') {
+                c = skipWhitespace();
+            }
+            if (c == ']') {
+                return null;
+            } else if (c != '{') {
+                throw new IOException("Expected a task object on line " + line);
+            }
+            long recordLine = line;
+            readObject();
+            Map<String, Object> fields;
+            try {
+                fields = Json.parseObject(object.toString());
+            } catch (IllegalArgumentException e) {
+                throw new IOException("Bad task on line " + recordLine + ": " + e.getMessage());
+            }
+            if (!(fields.get("description") instanceof String)) {
+                throw new IOException("Task on line " + recordLine + " has no description");
+            }
+            Object priority = fields.get("priority");
+            Object due = fields.get("due");
+            Object createdAt = fields.get("createdAt");
+            Object recurrence = fields.get("recurrence");
+            return imported((String) fields.get("description"), createdAt instanceof Long ? (Long) createdAt : 0,
+                    priority instanceof Long ? parsePriority(priority.toString(), recordLine) : ToDoListApp.Task.NO_PRIORITY,
+                    due instanceof String ? parseDue((String) due, recordLine) : ToDoListApp.Task.NO_DUE_DATE,
+                    recurrence instanceof String ? parseRecurrence((String) recurrence, recordLine) : ToDoListApp.Task.NO_RECURRENCE,
+                    Boolean.TRUE.equals(fields.get("completed")));
+        }
+
+        // Copy one object, its opening brace already read, into the buffer
+        private void readObject() throws IOException {
+            object.setLength(0);
+            object.append('{');
+            boolean inString = false;
+            int depth = 1;
+            while (depth > 0) {
+                int c = in.read();
+                if (c < 0) {
+                    throw new IOException("Unterminated task object on line " + line);
+                } else if (object.length() > MAX_RECORD_CHARS) {
+                    throw new IOException("Task object on line " + line + " is too long");
+                }
+                object.append((char) c);
+                if (c == '\n') {
+                    line++;
+                }
+                if (inString) {
+                    if (c == '\\') {
+                        object.append((char) in.read());
+                    } else if (c == '"') {
+                        inString = false;
+                    }
+                } else if (c == '"') {
+                    inString = true;
+                } else if (c == '{') {
+                    depth++;
+                } else if (c == '}') {
+                    depth--;
+                }
+            }
+        }
+
+        private int skipWhitespace() throws IOException {
+            int c;
+            while ((c = in.read()) >= 0 && Character.isWhitespace(c)) {
+                if (c == '\n') {
+                    line++;
+                }
+            }
+            return c;
+        }
+    }
+
+    // Line breaks in a description become spaces in the Task constructor
+    private static ImportedTask imported(String description, long createdAt, int priority, long dueDate, int recurrence,
+            boolean completed) {
+        return new ImportedTask(new ToDoListApp.Task(0, description, createdAt, priority, dueDate, recurrence), completed);
+    }
+
+    private static int parsePriority(String text, long line) throws IOException {
+        try {
+            int priority = Integer.parseInt(text.trim());
+            if (priority >= ToDoListApp.Task.NO_PRIORITY && priority <= ToDoListApp.Task.HIGH) {
+                return priority;
+            }
+        } catch (NumberFormatException e) {
+            // Reported below
+        }
+        throw new IOException("Bad priority \"" + text + "\" on line " + line);
+    }
+
+    private static long parseDue(String text, long line) throws IOException {
+        long dueDate = ToDoListApp.Task.parseDueDate(text.trim());
+        if (dueDate == ToDoListApp.Task.NO_DUE_DATE) {
+            throw new IOException("Bad due date \"" + text + "\" on line " + line);
+        }
+        return dueDate;
+    }
+
+    private static int parseRecurrence(String text, long line) throws IOException {
+        int recurrence = Recurrence.parse(text.trim());
+        if (recurrence == ToDoListApp.Task.NO_RECURRENCE) {
+            throw new IOException("Bad recurrence \"" + text + "\" on line " + line);
+        }
+        return recurrence;
+    }
+
+    private static long parseLong(String text, long line) throws IOException {
+        try {
+            return Long.parseLong(text.trim());
+        } catch (NumberFormatException e) {
+            throw new IOException("Bad number \"" + text + "\" on line " + line);
+        }
+    }
+
+    // Counts the bytes read, for progress through a file
+    private static final class CountingInputStream extends FilterInputStream {
+        volatile long count;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                count++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int read = super.read(buffer, offset, length);
+            if (read > 0) {
+                count += read;
+            }
+            return read;
+        }
+    }
+}
@@ -0,0 +1,223 @@
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
+// A hashed timing wheel (Varghese and Lauck), run by one thread however many timeouts are
+// pending. Time is cut into ticks; a ring of buckets holds the timeouts, each in the bucket of
+// the tick it expires on, modulo the ring size, with the number of further turns of the ring to
+// wait. Scheduling and cancelling are O(1), and each tick only visits one bucket, so hundreds of
+// thousands of schedules cost one thread and a few objects each, where a java.util.Timer keeps
+// a heap (O(log n) per insert) and a Timer per item a thread each.
+//
+// Timeouts fire up to one tick late, never early. New and cancelled timeouts go through queues
+// that the wheel thread drains at each tick, so callers never touch the buckets. Tasks run on
+// the wheel thread and must be short; anything longer should be handed off.
+class TimingWheel {
+    private static final int PENDING = 0;
+    private static final int CANCELLED = 1;
+    private static final int EXPIRED = 2;
+    // Most new timeouts moved into the wheel per tick, so a flood of schedules cannot stall it
+    private static final int MAX_ADDED_PER_TICK = 100_000;
+
+    private static final AtomicIntegerFieldUpdater<Timeout> STATE = AtomicIntegerFieldUpdater.newUpdater(Timeout.class, "state");
+
+    public final class Timeout {
+        private final Runnable task;
+        // Nanoseconds after the wheel started
+        private final long deadline;
+        private long remainingRounds;
+        private Timeout next;
+        private Timeout previous;
+        private Bucket bucket;
+        private volatile int state = PENDING;
+
+        Timeout(Runnable task, long deadline) {
+            this.task = task;
+            this.deadline = deadline;
+        }
+
+        // Stop the timeout from firing. False if it has already fired or been cancelled.
+        public boolean cancel() {
+            if (!STATE.compareAndSet(this, PENDING, CANCELLED)) {
+                return false;
+            }
+            cancelled.add(this);
+            return true;
+        }
+
+        public boolean isCancelled() {
+            return state == CANCELLED;
+        }
+    }
+
+    // The timeouts of one slot of the ring, as a doubly linked list, so removal is O(1)
+    private static final class Bucket {
+        private Timeout head;
+        private Timeout tail;
+
+        void add(Timeout timeout) {
+            timeout.bucket = this;
+            if (head == null) {
+                head = tail = timeout;
+            } else {
+                tail.next = timeout;
+                timeout.previous = tail;
+                tail = timeout;
+            }
+        }
+
+        Timeout remove(Timeout timeout) {
+            Timeout next = timeout.next;
+            if (timeout.previous != null) {
+                timeout.previous.next = next;
+            }
+            if (next != null) {
+                next.previous = timeout.previous;
+            }
+            if (timeout == head) {
+                head = next;
+            }
+            if (timeout == tail) {
+                tail = timeout.previous;
+            }
+            timeout.previous = null;
+            timeout.next = null;
+            timeout.bucket = null;
+            return next;
+        }
+    }
+
+    private final long tickNanos;
+    private final Bucket[] wheel;
+    private final int mask;
+    private final Queue<Timeout> added = new ConcurrentLinkedQueue<>();
+    private final Queue<Timeout> cancelled = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pending = new AtomicInteger();
+    private final long startTime = System.nanoTime();
+    private final Thread thread;
+    private volatile boolean stopped;
+    private long tick;
+
+    // ticksPerWheel is rounded up to a power of two. Timeouts further off than one turn of the
+    // ring wait out whole turns in their bucket.
+    public TimingWheel(long tickDuration, TimeUnit unit, int ticksPerWheel, String threadName) {
+        tickNanos = Math.max(1, unit.toNanos(tickDuration));
+        int size = Integer.highestOneBit(Math.max(1, ticksPerWheel - 1)) << 1;
+        wheel = new Bucket[size];
+        for (int i = 0; i < size; i++) {
+            wheel[i] = new Bucket();
+        }
+        mask = size - 1;
+        thread = new Thread(this::run, threadName);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    // Run the task on the wheel thread after the delay
+    public Timeout schedule(Runnable task, long delay, TimeUnit unit) {
+        if (stopped) {
+            throw new IllegalStateException("Timing wheel is stopped");
+        }
+        long deadline = System.nanoTime() - startTime + Math.max(0, unit.toNanos(delay));
+        Timeout timeout = new Timeout(task, deadline);
+        pending.incrementAndGet();
+        added.add(timeout);
+        return timeout;
+    }
+
+    // Timeouts scheduled and neither fired nor cancelled
+    public int pending() {
+        return pending.get();
+    }
+
+    // Stop the thread; pending timeouts never fire
+    public void stop() {
+        stopped = true;
+        thread.interrupt();
+    }
+
+    private void run() {
+        while (!stopped) {
+            long now = waitForNextTick();
+            if (now < 0) {
+                return;
+            }
+            removeCancelled();
+            transferAdded();
+            expire(wheel[(int) (tick & mask)], now);
+            tick++;
+        }
+    }
+
+    // Sleep until the current tick has passed; the time then, or -1 if stopped
+    private long waitForNextTick() {
+        long deadline = tickNanos * (tick + 1);
+        while (true) {
+            long now = System.nanoTime() - startTime;
+            long sleepNanos = deadline - now;
+            if (sleepNanos <= 0) {
+                return now;
+            }
+            try {
+                TimeUnit.NANOSECONDS.sleep(sleepNanos);
+            } catch (InterruptedException e) {
+                if (stopped) {
+                    return -1;
+                }
+            }
+        }
+    }
+
+    private void removeCancelled() {
+        Timeout timeout;
+        while ((timeout = cancelled.poll()) != null) {
+            // One cancelled before it reached the wheel is dropped from the added queue instead
+            if (timeout.bucket != null) {
+                timeout.bucket.remove(timeout);
+            }
+            pending.decrementAndGet();
+        }
+    }
+
+    private void transferAdded() {
+        for (int i = 0; i < MAX_ADDED_PER_TICK; i++) {
+            Timeout timeout = added.poll();
+            if (timeout == null) {
+                return;
+            }
+            if (timeout.state == CANCELLED) {
+                continue;
+            }
+            long expiresOnTick = timeout.deadline / tickNanos;
+            timeout.remainingRounds = (expiresOnTick - tick) / wheel.length;
+            // One already due goes in the current bucket, about to be expired
+            wheel[(int) (Math.max(expiresOnTick, tick) & mask)].add(timeout);
+        }
+    }
+
+    private void expire(Bucket bucket, long now) {
+        Timeout timeout = bucket.head;
+        while (timeout != null) {
+            if (timeout.remainingRounds > 0) {
+                timeout.remainingRounds--;
+                timeout = timeout.next;
+            } else if (timeout.deadline <= now) {
+                Timeout next = bucket.remove(timeout);
+                if (STATE.compareAndSet(timeout, PENDING, EXPIRED)) {
+                    pending.decrementAndGet();
+                    try {
+                        timeout.task.run();
+                    } catch (RuntimeException e) {
+                        System.out.println("Error running scheduled task: " + e.getMessage());
+                    }
+                }
+                timeout = next;
+            } else {
+                // Placed in this bucket late in its tick; it expires on the next turn
+                timeout = timeout.next;
+            }
+        }
+    }
+}
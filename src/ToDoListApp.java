@@ -0,0 +1,3035 @@
+import javax.swing.*;
+import javax.swing.border.Border;
+import javax.swing.border.LineBorder;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import java.awt.*;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
+import java.io.*;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.InvocationTargetException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.UnaryOperator;
+
+// The task lists and the operations on them, shown by the Swing GUI below or used headless.
+//
+// Mutations may come from any thread. They take turns on one writer lock, which a batch holds
+// from beginBatch() to commitBatch(). Each committed change publishes an immutable snapshot of
+// both lists, so readers on other threads (saves, servers) get a consistent pair of lists
+// without taking the lock. Store listeners, the View and the search index are told about
+// changes on the writing thread; with a GUI all writes come from the Event Dispatch Thread.
+class ToDoListApp {
+    private TaskStore tasks;
+    private TaskStore completedTasks;
+    private String tasksFileName;
+    private String completedTasksFileName;
+    private TaskRepository repository;
+    private String binaryFileName;
+    private PersistenceExecutor persistence;
+    // Where the descriptions of loaded, added and edited tasks are kept, each distinct one once.
+    // Replaced under the write lock by compactDescriptions.
+    private DescriptionPool descriptions = new DescriptionPool();
+    private SearchIndex searchIndex;
+    private ArrayList<Consumer<SearchIndex>> pendingIndexUpdates = new ArrayList<>();
+    private long nextTaskId = 1;
+    private int batchDepth;
+    private ArrayList<JournalEntry> batchEntries = new ArrayList<>();
+    private boolean batchTasksChanged;
+    private boolean batchCompletedTasksChanged;
+    private volatile View view;
+    private GUI gui;
+    private boolean indexing;
+    private final ReentrantLock writeLock = new ReentrantLock();
+    private volatile ListsSnapshot published;
+    private TaskFileWatcher watcher;
+    private volatile TaskFileWatcher.WatchedFile watchedTasksFile;
+    private volatile TaskFileWatcher.WatchedFile watchedCompletedTasksFile;
+    private String startupSnapshotFileName;
+    private String loadedTasksFingerprint;
+    private String loadedCompletedTasksFingerprint;
+    // The timer for the next occurrence of each recurring uncompleted task, by ID
+    private final HashMap<Long, TimingWheel.Timeout> schedules = new HashMap<>();
+    private volatile boolean closed;
+    // Series whose timers fired, waiting to be given their occurrences in one batch
+    private final Queue<Long> dueSeries = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean occurrencesQueued = new AtomicBoolean();
+    private String historyFileName;
+    private volatile TaskHistory history;
+    // Whether a version is waiting to be recorded, and when the last one was
+    private final AtomicBoolean historyQueued = new AtomicBoolean();
+    private volatile long lastHistoryRecord;
+
+    // Both lists as of one committed change
+    static final class ListsSnapshot {
+        final TaskStore.Snapshot tasks;
+        final TaskStore.Snapshot completedTasks;
+
+        ListsSnapshot(TaskStore.Snapshot tasks, TaskStore.Snapshot completedTasks) {
+            this.tasks = tasks;
+            this.completedTasks = completedTasks;
+        }
+    }
+
+    // What the model tells about its changes. The GUI is one; without a window nothing listens.
+    interface View {
+        void updateTaskList();
+
+        void showSaving();
+
+        // Another program changed a task file and its changes were merged into the list
+        void showExternalChanges(String fileName, int applied, int conflicts);
+    }
+
+    private static final View NO_VIEW = new View() {
+        @Override
+        public void updateTaskList() {
+        }
+
+        @Override
+        public void showSaving() {
+        }
+
+        @Override
+        public void showExternalChanges(String fileName, int applied, int conflicts) {
+        }
+    };
+
+    // Set by --startup-timing: report how long each step of startup took, and exit once the
+    // first list is shown
+    static volatile boolean startupTiming;
+
+    static void startupMilestone(String milestone) {
+        if (startupTiming) {
+            // Loads the management classes the first time, which the first milestone pays for
+            long started = ManagementFactory.getRuntimeMXBean().getStartTime();
+            System.out.printf("%-12s %6d ms%n", milestone, System.currentTimeMillis() - started);
+        }
+    }
+
+    // The view the GUI shows. The operations without a view argument act as if done in it.
+    // SORTED shows the uncompleted tasks by priority and due date instead of their own order.
+    enum TaskType { ALL, INCOMPLETE, COMPLETED, SORTED }
+    volatile TaskType taskType = TaskType.ALL;
+
+    public ToDoListApp(String tasksFileName, String completedTasksFileName) {
+        this(tasksFileName, completedTasksFileName, null);
+    }
+
+    // With a repository, such as a TaskJournal, each mutation is stored in it instead of
+    // rewriting the task files
+    public ToDoListApp(String tasksFileName, String completedTasksFileName, TaskRepository repository) {
+        this(tasksFileName, completedTasksFileName, repository, null);
+    }
+
+    // With a binary file name (and no repository), both lists are kept in that one BinaryTaskFile
+    // and the text files are only read to import them the first time
+    public ToDoListApp(String tasksFileName, String completedTasksFileName, TaskRepository repository, String binaryFileName) {
+        this(tasksFileName, completedTasksFileName, repository, binaryFileName, true);
+    }
+
+    private ToDoListApp(String tasksFileName, String completedTasksFileName, TaskRepository repository, String binaryFileName,
+            boolean showGui) {
+        this.tasksFileName = tasksFileName;
+        this.completedTasksFileName = completedTasksFileName;
+        this.repository = repository;
+        this.binaryFileName = repository == null ? binaryFileName : null;
+        tasks = new TaskStore();
+        completedTasks = new TaskStore();
+        persistence = new PersistenceExecutor();
+        published = new ListsSnapshot(tasks.snapshot(), completedTasks.snapshot());
+        if (!showGui) {
+            view = NO_VIEW;
+            return;
+        }
+        Runtime.getRuntime().addShutdownHook(new Thread(this::close));
+        gui = new GUI(TaskLists.of(Paths.get(tasksFileName).getFileName().toString(), this));
+        gui.createAndShowGUI();
+    }
+
+    // The model without a window, for benchmarks and tools. Call loadNow() before using it and
+    // close() when done; nothing touches Swing.
+    public static ToDoListApp headless(String tasksFileName, String completedTasksFileName, TaskRepository repository, String binaryFileName) {
+        return new ToDoListApp(tasksFileName, completedTasksFileName, repository, binaryFileName, false);
+    }
+
+    // Load both lists and index them on the calling thread
+    public void loadNow() throws IOException {
+        loadListsNow();
+        indexNow();
+    }
+
+    // Load both lists on the calling thread, leaving the search index to indexNow()
+    public void loadListsNow() throws IOException {
+        loadListsNow(null);
+    }
+
+    // As above, handing firstPage the first FIRST_PAGE_SIZE uncompleted tasks as soon as they
+    // are read, when the list is longer and is read from a file
+    public void loadListsNow(Consumer<List<Task>> firstPage) throws IOException {
+        long start = Metrics.start();
+        TaskStore loadedTasks = new TaskStore();
+        TaskStore loadedCompletedTasks = new TaskStore();
+        load(loadedTasks, loadedCompletedTasks, firstPage);
+        openHistory();
+        installLoaded(loadedTasks, loadedCompletedTasks);
+        Metrics.record(Metrics.Op.LOAD, start);
+    }
+
+    // Index the loaded lists on the calling thread. Changes made meanwhile are queued by
+    // updateSearchIndex and applied before the index is put to use. Only the first call builds.
+    public void indexNow() {
+        writeLock.lock();
+        try {
+            if (indexing) {
+                return;
+            }
+            indexing = true;
+        } finally {
+            writeLock.unlock();
+        }
+        long start = Metrics.start();
+        ListsSnapshot lists = snapshot();
+        SearchIndex index = new SearchIndex();
+        index.addAll(lists.tasks);
+        index.addAll(lists.completedTasks);
+        installSearchIndex(index);
+        Metrics.record(Metrics.Op.INDEX, start);
+    }
+
+    public boolean isIndexed() {
+        writeLock.lock();
+        try {
+            return searchIndex != null;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    // The tasks matching every word of the query, or null for a query without words or before
+    // the index is built. Takes turns with the writers, so it may run on any thread.
+    public SearchIndex.Result search(String query) {
+        long start = Metrics.start();
+        writeLock.lock();
+        try {
+            return searchIndex != null ? searchIndex.search(query) : null;
+        } finally {
+            writeLock.unlock();
+            Metrics.record(Metrics.Op.SEARCH, start);
+        }
+    }
+
+    // Report changes to the given view from now on, or to none with null. Takes turns with the
+    // writers, so each change goes to either the old view or the new one.
+    void setView(View view) {
+        writeLock.lock();
+        try {
+            this.view = view != null ? view : NO_VIEW;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    // Take over freshly loaded stores, which are left empty
+    private void installLoaded(TaskStore loadedTasks, TaskStore loadedCompletedTasks) {
+        writeLock.lock();
+        try {
+            tasks.addAll(loadedTasks);
+            completedTasks.addAll(loadedCompletedTasks);
+            for (Task task : tasks) {
+                if (task.isRecurring()) {
+                    schedule(task);
+                }
+            }
+            publish();
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    // Both lists as of the last committed change. Safe to call from any thread; never blocks.
+    public ListsSnapshot snapshot() {
+        return published;
+    }
+
+    private void publish() {
+        published = new ListsSnapshot(tasks.snapshot(), completedTasks.snapshot());
+        recordHistory();
+    }
+
+    public TaskStore getTasks() {
+        return tasks;
+    }
+
+    public TaskStore getCompletedTasks() {
+        return completedTasks;
+    }
+
+    // Block until every save queued so far is on disk
+    public void flush() {
+        persistence.flush();
+    }
+
+    // Finish every pending write. Called when the window closes and again, harmlessly, from the
+    // shutdown hook.
+    public void close() {
+        if (watcher != null) {
+            watcher.close();
+        }
+        writeLock.lock();
+        try {
+            closed = true;
+            for (TimingWheel.Timeout timeout : schedules.values()) {
+                timeout.cancel();
+            }
+            schedules.clear();
+        } finally {
+            writeLock.unlock();
+        }
+        // Changes still waiting for their version get it now
+        if (history != null && historyQueued.getAndSet(false)) {
+            ListsSnapshot lists = snapshot();
+            try {
+                persistence.submitLatest(history, () -> recordVersion(lists));
+            } catch (IllegalStateException e) {
+                // Closed already
+            }
+        }
+        persistence.close();
+        writeStartupSnapshot();
+        if (repository != null) {
+            repository.close();
+        }
+        if (history != null) {
+            history.close();
+        }
+    }
+
+    // Read both lists into the given stores, from the repository or binary file when one is in
+    // use. The first start in either mode imports the existing text files. This does no GUI
+    // work, so it can run off the Event Dispatch Thread. A repository or binary file that cannot
+    // be read is reported rather than replaced, so the caller must not save over it.
+    public void load(TaskStore loadedTasks, TaskStore loadedCompletedTasks) throws IOException {
+        load(loadedTasks, loadedCompletedTasks, null);
+    }
+
+    private void load(TaskStore loadedTasks, TaskStore loadedCompletedTasks, Consumer<List<Task>> firstPage) throws IOException {
+        if (repository == null && binaryFileName != null && Files.exists(Paths.get(binaryFileName))) {
+            nextTaskId = BinaryTaskFile.read(Paths.get(binaryFileName), loadedTasks, loadedCompletedTasks, FIRST_PAGE_SIZE, firstPage).nextTaskId;
+            return;
+        }
+        if (repository == null) {
+            // Fingerprints from before reading, so a change made while reading is picked up later
+            loadedTasksFingerprint = TaskFileWatcher.fingerprint(Paths.get(tasksFileName));
+            loadedCompletedTasksFingerprint = TaskFileWatcher.fingerprint(Paths.get(completedTasksFileName));
+            if (binaryFileName == null && readStartupSnapshot(loadedTasks, loadedCompletedTasks, firstPage)) {
+                return;
+            }
+            readTaskFile(tasksFileName, loadedTasks, "Error loading tasks: ", firstPage);
+            readTaskFile(completedTasksFileName, loadedCompletedTasks, "Error loading completed tasks: ");
+            return;
+        }
+
+        if (!repository.exists()) {
+            readTaskFile(tasksFileName, loadedTasks, "Error loading tasks: ");
+            readTaskFile(completedTasksFileName, loadedCompletedTasks, "Error loading completed tasks: ");
+        }
+        repository.load(loadedTasks, loadedCompletedTasks);
+        poolDescriptions(loadedTasks);
+        poolDescriptions(loadedCompletedTasks);
+
+        // Stored IDs are stable across runs, so new tasks continue after the highest one
+        for (Task task : loadedTasks) {
+            nextTaskId = Math.max(nextTaskId, task.getId() + 1);
+        }
+        for (Task task : loadedCompletedTasks) {
+            nextTaskId = Math.max(nextTaskId, task.getId() + 1);
+        }
+    }
+
+    // Files at least this large are memory-mapped and decoded lazily instead of read line by line
+    private static final long MAPPED_LOAD_THRESHOLD = 8 * 1024 * 1024;
+
+    // Tasks reported to a loader's firstPage, enough to fill the window
+    static final int FIRST_PAGE_SIZE = 200;
+
+    // Keep a binary copy of each text-mode list, written on close and read on the next load in
+    // place of the text files as long as they have not changed since. A binary file is read
+    // several times faster than text, with nothing decoded until it is shown. Has no effect with
+    // a repository or binary file, which already load without parsing text.
+    public void useStartupSnapshot(String fileName) {
+        startupSnapshotFileName = fileName;
+    }
+
+    // Read the startup snapshot if it was written for the text files as they now are. Called
+    // with the fingerprints of the text files just taken.
+    private boolean readStartupSnapshot(TaskStore loadedTasks, TaskStore loadedCompletedTasks, Consumer<List<Task>> firstPage) {
+        if (startupSnapshotFileName == null || loadedTasksFingerprint == null || loadedCompletedTasksFingerprint == null) {
+            return false;
+        }
+        Path snapshot = Paths.get(startupSnapshotFileName);
+        long key = startupSnapshotKey(loadedTasksFingerprint, loadedCompletedTasksFingerprint);
+        try {
+            if (!Files.exists(snapshot) || BinaryTaskFile.readSequence(snapshot) != key) {
+                return false;
+            }
+            nextTaskId = BinaryTaskFile.read(snapshot, loadedTasks, loadedCompletedTasks, FIRST_PAGE_SIZE, firstPage).nextTaskId;
+            return true;
+        } catch (IOException e) {
+            // The stores are only filled by a read that succeeds, so the text files can still be read
+            System.out.println("Error reading startup snapshot: " + e.getMessage());
+            return false;
+        }
+    }
+
+    // Replace the startup snapshot with what the text files now hold. Only done while both files
+    // are as the app last read or wrote them, so a snapshot never stands for contents the app
+    // has not seen.
+    private void writeStartupSnapshot() {
+        TaskFileWatcher.WatchedFile tasksFile = watchedTasksFile;
+        TaskFileWatcher.WatchedFile completedTasksFile = watchedCompletedTasksFile;
+        if (startupSnapshotFileName == null || tasksFile == null || completedTasksFile == null) {
+            return;
+        }
+        Path snapshot = Paths.get(startupSnapshotFileName);
+        try {
+            if (!tasksFile.isUnchanged() || !completedTasksFile.isUnchanged()
+                    || tasksFile.fingerprint() == null || completedTasksFile.fingerprint() == null) {
+                return;
+            }
+            long key = startupSnapshotKey(tasksFile.fingerprint(), completedTasksFile.fingerprint());
+            if (Files.exists(snapshot) && BinaryTaskFile.isBinaryFile(snapshot) && BinaryTaskFile.readSequence(snapshot) == key) {
+                return;
+            }
+            BinaryTaskFile.write(snapshot, key, tasksFile.base(), completedTasksFile.base());
+        } catch (IOException e) {
+            System.out.println("Error writing startup snapshot: " + e.getMessage());
+        }
+    }
+
+    // The snapshot's header sequence: a 64-bit FNV-1a hash of both files' fingerprints, which
+    // change whenever a file is written or replaced
+    private static long startupSnapshotKey(String tasksFingerprint, String completedTasksFingerprint) {
+        long hash = 0xcbf29ce484222325L;
+        String fingerprints = tasksFingerprint + "\n" + completedTasksFingerprint;
+        for (int i = 0; i < fingerprints.length(); i++) {
+            hash ^= fingerprints.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    // The text files carry no IDs, so tasks are numbered as they are read. Each line is a task
+    // as written by Task.toLine.
+    private void readTaskFile(String fileName, TaskStore store, String errorMessage) {
+        readTaskFile(fileName, store, errorMessage, null);
+    }
+
+    private void readTaskFile(String fileName, TaskStore store, String errorMessage, Consumer<List<Task>> firstPage) {
+        try {
+            Path file = Paths.get(fileName);
+            if (MappedTaskFile.isSupported() && Files.isRegularFile(file) && Files.size(file) >= MAPPED_LOAD_THRESHOLD) {
+                MappedTaskFile mapped = new MappedTaskFile(file);
+                ArrayList<Task> loaded = new ArrayList<>(mapped.lineCount());
+                for (int line = 0; line < mapped.lineCount(); line++) {
+                    loaded.add(new Task(nextTaskId++, mapped, line, 0, mapped.priority(line), mapped.dueDate(line), mapped.recurrence(line)));
+                    if (firstPage != null && loaded.size() == FIRST_PAGE_SIZE && mapped.lineCount() > FIRST_PAGE_SIZE) {
+                        firstPage.accept(new ArrayList<>(loaded));
+                    }
+                }
+                store.addAll(loaded);
+                return;
+            }
+
+            ArrayList<Task> loaded = new ArrayList<>();
+            try (BufferedReader reader = new BufferedReader(new FileReader(fileName))) {
+                String task;
+                while ((task = reader.readLine()) != null) {
+                    loaded.add(pooled(Task.fromLine(nextTaskId++, task)));
+                    // The line count is not known ahead, so the page goes out once a line
+                    // past it is read, which leaves short lists to arrive whole as on the
+                    // mapped path
+                    if (firstPage != null && loaded.size() == FIRST_PAGE_SIZE + 1) {
+                        firstPage.accept(new ArrayList<>(loaded.subList(0, FIRST_PAGE_SIZE)));
+                    }
+                }
+            }
+            store.addAll(loaded);
+        } catch (IOException e) {
+            System.out.println(errorMessage + e.getMessage());
+        }
+    }
+
+    // The task with its description moved into the pool. Tasks that already read their
+    // description from elsewhere, such as a mapped file, are returned as they are.
+    private Task pooled(Task task) {
+        if (task.description == null) {
+            return task;
+        }
+        return new Task(task.id, descriptions, descriptions.intern(task.description), task.createdAt, task.priority, task.dueDate,
+                task.recurrence);
+    }
+
+    // Pools with fewer entries than this are left as they are, whatever they hold
+    private static final int MIN_COMPACTED_POOL = 1 << 14;
+
+    // The pool only grows, so edits and removals leave descriptions behind that no task uses.
+    // Once the pool holds more than twice as many entries as there are tasks, more than half of
+    // it is dead: the live descriptions are interned into a new pool and the tasks swapped for
+    // copies that read from it. That takes one pass over the lists, paid for by the entries
+    // added since the last one. Snapshots taken before keep the old pool, which is freed with
+    // the last of them. Called with the write lock held, outside batches.
+    private void compactDescriptions() {
+        DescriptionPool old = descriptions;
+        int entries = old.size();
+        if (entries < MIN_COMPACTED_POOL || entries <= 2L * (tasks.size() + completedTasks.size())) {
+            return;
+        }
+        DescriptionPool compacted = new DescriptionPool();
+        UnaryOperator<Task> repool = task -> task.source != old ? task
+                : new Task(task.id, compacted, compacted.intern(task.getDescription()), task.createdAt, task.priority,
+                        task.dueDate, task.recurrence);
+        tasks.replaceAll(repool);
+        completedTasks.replaceAll(repool);
+        descriptions = compacted;
+    }
+
+    // Pool the descriptions of a freshly loaded store, which nothing is listening to yet
+    private void poolDescriptions(TaskStore store) {
+        ArrayList<Task> pooledTasks = new ArrayList<>(store.size());
+        for (Task task : store) {
+            pooledTasks.add(pooled(task));
+        }
+        store.clear();
+        store.addAll(pooledTasks);
+    }
+
+    // Saves are queued on the persistence thread; saves of the same file that pile up while an
+    // earlier one is still running collapse into one write of the newest contents
+    public void saveTasks() {
+        TaskStore.Snapshot snapshot = tasks.snapshot();
+        TaskFileWatcher.WatchedFile watched = watchedTasksFile;
+        persistence.submitLatest(tasksFileName, () -> writeTaskFile(tasksFileName, watched, snapshot));
+    }
+
+    public void saveCompletedTasks() {
+        TaskStore.Snapshot snapshot = completedTasks.snapshot();
+        TaskFileWatcher.WatchedFile watched = watchedCompletedTasksFile;
+        persistence.submitLatest(completedTasksFileName, () -> writeTaskFile(completedTasksFileName, watched, snapshot));
+    }
+
+    // Write to a temporary file and rename it over the old one, so a crash mid-write leaves the
+    // previous contents intact. A watched file that another program changed since it was read is
+    // left alone; the watcher merges that change, and the merge saves again.
+    private void writeTaskFile(String fileName, TaskFileWatcher.WatchedFile watched, TaskStore.Snapshot snapshot) throws IOException {
+        long start = Metrics.start();
+        Path file = Paths.get(fileName);
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (BufferedWriter writer = new BufferedWriter(new FileWriter(temp.toFile()))) {
+            for (Task task : snapshot) {
+                writer.write(task.toLine());
+                writer.newLine();
+            }
+        }
+        if (watched == null) {
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } else if (!watched.replace(temp, snapshot)) {
+            Files.delete(temp);
+            watcher.reconcile(watched);
+        }
+        Metrics.record(Metrics.Op.SAVE_TEXT, start);
+    }
+
+    // Follow changes other programs make to the text files, such as a sync tool or an editor.
+    // Only plain text mode has such files; a repository or binary file belongs to the app alone.
+    // Call once the loaded lists are installed.
+    public void watchFiles() {
+        if (repository != null || binaryFileName != null || watcher != null) {
+            return;
+        }
+        ListsSnapshot lists = snapshot();
+        TaskFileWatcher.WatchedFile tasksFile = new TaskFileWatcher.WatchedFile(Paths.get(tasksFileName), lists.tasks, loadedTasksFingerprint);
+        TaskFileWatcher.WatchedFile completedTasksFile = new TaskFileWatcher.WatchedFile(Paths.get(completedTasksFileName),
+                lists.completedTasks, loadedCompletedTasksFingerprint);
+        try {
+            watcher = new TaskFileWatcher(List.of(tasksFile, completedTasksFile), (file, changes) -> {
+                if (view != NO_VIEW) {
+                    SwingUtilities.invokeLater(() -> applyExternalChanges(file, changes));
+                } else {
+                    applyExternalChanges(file, changes);
+                }
+            });
+        } catch (IOException e) {
+            System.out.println("Error watching task files: " + e.getMessage());
+            return;
+        }
+        watchedTasksFile = tasksFile;
+        watchedCompletedTasksFile = completedTasksFile;
+        // Catch anything written while the files were being loaded
+        watcher.reconcile(tasksFile);
+        watcher.reconcile(completedTasksFile);
+        watcher.start();
+    }
+
+    // Merge another program's changes to a task file into its list. Tasks the app has not
+    // touched since the file was last read or written take the other program's version. A task
+    // changed on both sides keeps the app's version and gets the other version added next to it;
+    // one deleted on one side and edited on the other is kept. If the list had changes of its
+    // own, the merged list is saved; otherwise it already matches the file. The merge is reported
+    // once the lock is released, since the window may report it in a modal dialog, which would
+    // otherwise hold up every other writer until dismissed.
+    private void applyExternalChanges(TaskFileWatcher.WatchedFile file, TaskFileWatcher.Changes changes) {
+        TaskStore store = file == watchedTasksFile ? tasks : completedTasks;
+        View reportTo;
+        int applied = 0;
+        int conflicts = 0;
+        writeLock.lock();
+        try {
+            if (batchDepth > 0 || file.base() != changes.base || (view != NO_VIEW && !SwingUtilities.isEventDispatchThread())) {
+                // Saved or mid-batch since the file was compared, or shown in a window since;
+                // compare it again
+                watcher.reconcile(file);
+                return;
+            }
+            boolean localChanges = !changes.base.isSnapshotOf(store);
+            // What the file now holds, kept as tasks so the next comparison can start from it
+            ArrayList<Task> fileContents = localChanges ? new ArrayList<>(changes.base.size()) : null;
+            int baseIndex = 0;
+            int fallback = 0;
+            for (TaskFileWatcher.Hunk hunk : changes.hunks) {
+                if (localChanges) {
+                    while (baseIndex < hunk.baseIndex) {
+                        fileContents.add(changes.base.get(baseIndex++));
+                    }
+                    baseIndex += hunk.removed.length;
+                }
+                Task last = hunk.anchor;
+                int pairs = Math.min(hunk.removed.length, hunk.added.length);
+                for (int i = 0; i < hunk.removed.length; i++) {
+                    Task old = hunk.removed[i];
+                    Task current = store.getById(old.getId());
+                    if (i < pairs) {
+                        Task theirs = Task.fromLine(old.getId(), hunk.added[i]);
+                        Task result;
+                        if (unchanged(current, old)) {
+                            result = pooled(old.with(theirs.getDescription(), theirs.getPriority(), theirs.getDueDate(),
+                                    theirs.getRecurrence()));
+                            store.replace(result);
+                            scheduleIn(store, result);
+                            updateSearchIndex(index -> index.replace(old, result));
+                            applied++;
+                        } else if (current != null && current.toLine().equals(hunk.added[i])) {
+                            result = current;
+                        } else {
+                            // Changed here too, or deleted here: keep both
+                            result = newTaskFromLine(hunk.added[i]);
+                            store.add(indexAfter(store, current != null ? current : last, fallback), result);
+                            scheduleIn(store, result);
+                            updateSearchIndex(index -> index.add(result));
+                            conflicts++;
+                        }
+                        last = result;
+                        if (localChanges) {
+                            fileContents.add(result);
+                        }
+                    } else if (unchanged(current, old)) {
+                        store.remove(old.getId());
+                        unschedule(old.getId());
+                        updateSearchIndex(index -> index.remove(old));
+                        applied++;
+                    } else if (current != null) {
+                        // Edited here, deleted there: keep the edit
+                        conflicts++;
+                    }
+                }
+                for (int i = pairs; i < hunk.added.length; i++) {
+                    Task added = newTaskFromLine(hunk.added[i]);
+                    store.add(indexAfter(store, last, fallback), added);
+                    scheduleIn(store, added);
+                    updateSearchIndex(index -> index.add(added));
+                    applied++;
+                    last = added;
+                    if (localChanges) {
+                        fileContents.add(added);
+                    }
+                }
+                fallback = indexAfter(store, last, fallback);
+            }
+
+            // Conflicts need changes on both sides, so without local changes the list now
+            // matches the file
+            if (localChanges) {
+                while (baseIndex < changes.base.size()) {
+                    fileContents.add(changes.base.get(baseIndex++));
+                }
+                TaskStore contents = new TaskStore();
+                contents.addAll(fileContents);
+                file.synced(contents.snapshot(), changes.fingerprint);
+                save(List.of(), store == tasks, store == completedTasks);
+            } else {
+                file.synced(store.snapshot(), changes.fingerprint);
+                publish();
+            }
+            view.updateTaskList();
+            reportTo = view;
+        } finally {
+            writeLock.unlock();
+        }
+        reportTo.showExternalChanges(file.path.getFileName().toString(), applied, conflicts);
+    }
+
+    // Whether a task is still as it was when last read from or written to its file. Compared by
+    // value, since compactDescriptions swaps tasks for copies.
+    private static boolean unchanged(Task current, Task old) {
+        return current == old || current != null && current.createdAt == old.createdAt && current.toLine().equals(old.toLine());
+    }
+
+    // A task created now from a line written by another program or kept in the history. Called
+    // with the write lock held.
+    private Task newTaskFromLine(String line) {
+        Task parsed = Task.fromLine(0, line);
+        return pooled(new Task(nextTaskId++, parsed.getDescription(), System.currentTimeMillis(), parsed.getPriority(), parsed.getDueDate(),
+                parsed.getRecurrence()));
+    }
+
+    // Where to insert after a task, or at the fallback if the task is no longer in the store
+    private static int indexAfter(TaskStore store, Task task, int fallback) {
+        if (task == null) {
+            return 0;
+        }
+        int index = store.indexOf(task.getId());
+        return index >= 0 ? index + 1 : Math.min(fallback, store.size());
+    }
+
+    public void saveBinaryFile() {
+        ListsSnapshot lists = snapshot();
+        persistence.submitLatest(binaryFileName, () -> {
+            long start = Metrics.start();
+            BinaryTaskFile.write(Paths.get(binaryFileName), 0, lists.tasks, lists.completedTasks);
+            Metrics.record(Metrics.Op.SAVE_BINARY, start);
+        });
+    }
+
+    private interface JournalEntry {
+        void writeTo(TaskRepository repository) throws IOException;
+    }
+
+    // Group mutations: everything between beginBatch() and commitBatch() is applied to the lists
+    // right away, but saved once and shown once, at the commit. A repository stores the batch
+    // all or nothing, and other threads neither write nor see the lists change until the commit.
+    // Batches nest; only the outermost commit saves. Both calls must come from one thread.
+    public void beginBatch() {
+        writeLock.lock();
+        batchDepth++;
+    }
+
+    public void commitBatch() {
+        if (!writeLock.isHeldByCurrentThread() || batchDepth == 0) {
+            throw new IllegalStateException("No batch to commit");
+        }
+        try {
+            if (--batchDepth > 0 || batchEntries.isEmpty()) {
+                return;
+            }
+            List<JournalEntry> entries = new ArrayList<>(batchEntries);
+            batchEntries.clear();
+            save(entries, batchTasksChanged, batchCompletedTasksChanged);
+            batchTasksChanged = false;
+            batchCompletedTasksChanged = false;
+            view.updateTaskList();
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    // Run the mutations as one batch
+    public void batch(Runnable mutations) {
+        beginBatch();
+        try {
+            mutations.run();
+        } finally {
+            commitBatch();
+        }
+    }
+
+    // Record a mutation, or hold it for the commit when a batch is open
+    private void persist(JournalEntry entry, boolean tasksChanged, boolean completedTasksChanged) {
+        if (batchDepth > 0) {
+            batchEntries.add(entry);
+            batchTasksChanged |= tasksChanged;
+            batchCompletedTasksChanged |= completedTasksChanged;
+            return;
+        }
+        save(List.of(entry), tasksChanged, completedTasksChanged);
+    }
+
+    // Show the change unless a batch will show it at its commit
+    private void refresh() {
+        if (batchDepth == 0) {
+            view.updateTaskList();
+        }
+    }
+
+    // Store the mutations in the repository, or rewrite the changed files when there is none.
+    // Either way the disk work happens on the persistence thread.
+    private void save(List<JournalEntry> entries, boolean tasksChanged, boolean completedTasksChanged) {
+        compactDescriptions();
+        publish();
+        view.showSaving();
+        if (binaryFileName != null) {
+            saveBinaryFile();
+            return;
+        }
+        if (repository == null) {
+            if (tasksChanged) {
+                saveTasks();
+            }
+            if (completedTasksChanged) {
+                saveCompletedTasks();
+            }
+            return;
+        }
+
+        ListsSnapshot lists = snapshot();
+        persistence.submit(() -> {
+            long start = Metrics.start();
+            if (entries.size() == 1) {
+                entries.get(0).writeTo(repository);
+            } else {
+                repository.beginBatch();
+                try {
+                    for (JournalEntry entry : entries) {
+                        entry.writeTo(repository);
+                    }
+                    repository.commitBatch();
+                } catch (IOException e) {
+                    repository.abortBatch();
+                    throw e;
+                }
+            }
+            Metrics.record(Metrics.Op.REPOSITORY_WRITE, start);
+            repository.saved(lists.tasks, lists.completedTasks);
+        });
+    }
+
+    // Start using an index built from the stores, after replaying the changes made meanwhile
+    private void installSearchIndex(SearchIndex index) {
+        writeLock.lock();
+        try {
+            for (Consumer<SearchIndex> update : pendingIndexUpdates) {
+                update.accept(index);
+            }
+            pendingIndexUpdates = null;
+            searchIndex = index;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    // Apply a change to the search index, or hold it back while the index is still being built
+    private void updateSearchIndex(Consumer<SearchIndex> update) {
+        if (searchIndex != null) {
+            update.accept(searchIndex);
+        } else {
+            pendingIndexUpdates.add(update);
+        }
+    }
+
+    // Add a new task to the list
+    public Task addTask(String description) {
+        return addTask(description, Task.NO_PRIORITY, Task.NO_DUE_DATE, Task.NO_RECURRENCE, taskType);
+    }
+
+    // Add a task to the end of the uncompleted list and return it, or return null if the view is
+    // the Completed one, which tasks are not added to. A recurrence rule with a due date makes a
+    // recurring task (see addOccurrence).
+    public Task addTask(String description, int priority, long dueDate, int recurrence, TaskType view) {
+        if (view == TaskType.COMPLETED) {
+            return null;
+        }
+        long start = Metrics.start();
+        writeLock.lock();
+        try {
+            Task task = pooled(new Task(nextTaskId++, description, System.currentTimeMillis(), priority, dueDate, recurrence));
+            tasks.add(task);
+            schedule(task);
+            updateSearchIndex(index -> index.add(task));
+            persist(j -> j.logAdd(task), true, false);
+            refresh();
+            return task;
+        } finally {
+            writeLock.unlock();
+            Metrics.record(Metrics.Op.ADD, start);
+        }
+    }
+
+    // Add tasks at the end of their lists as one batch, under new IDs, as an import does
+    public void importTasks(List<Task> newTasks, List<Task> newCompletedTasks) {
+        batch(() -> {
+            addImported(tasks, newTasks);
+            addImported(completedTasks, newCompletedTasks);
+        });
+    }
+
+    // Called in a batch
+    private void addImported(TaskStore store, List<Task> imported) {
+        ArrayList<Task> added = new ArrayList<>(imported.size());
+        for (Task source : imported) {
+            Task task = pooled(new Task(nextTaskId++, source.getDescription(), source.getCreatedAt(), source.getPriority(),
+                    source.getDueDate(), source.getRecurrence()));
+            added.add(task);
+            updateSearchIndex(index -> index.add(task));
+            if (store == tasks) {
+                schedule(task);
+                persist(j -> j.logAdd(task), true, false);
+            } else {
+                // Repositories add to the uncompleted list, so a completed task is added and completed
+                persist(j -> {
+                    j.logAdd(task);
+                    j.logComplete(task.getId());
+                }, true, true);
+            }
+        }
+        store.addAll(added);
+    }
+
+    // Edit an existing task's description
+    public void editTask(Task task, String editedDescription) {
+        editTask(task, taskType, oldTask -> oldTask.withDescription(editedDescription));
+    }
+
+    // Edit the description, priority, due date and recurrence at once
+    public void editTask(Task task, String editedDescription, int priority, long dueDate, int recurrence, TaskType view) {
+        editTask(task, view, oldTask -> oldTask.with(editedDescription, priority, dueDate, recurrence));
+    }
+
+    // The All view edits a task in whichever list holds it, completed ones included
+    private void editTask(Task task, TaskType view, UnaryOperator<Task> edit) {
+        if (view != TaskType.COMPLETED) {
+            long start = Metrics.start();
+            writeLock.lock();
+            try {
+                TaskStore store = storeHolding(task, view);
+                Task oldTask = store.getById(task.getId());
+                if (oldTask != null) {
+                    Task editedTask = pooled(edit.apply(oldTask));
+                    store.replace(editedTask);
+                    if (store == tasks) {
+                        schedule(editedTask);
+                    }
+                    int journalList = store == tasks ? TaskRepository.TASKS : TaskRepository.COMPLETED;
+                    updateSearchIndex(index -> index.replace(oldTask, editedTask));
+                    persist(j -> j.logEdit(journalList, editedTask), store == tasks, store == completedTasks);
+                    refresh();
+                }
+            } finally {
+                writeLock.unlock();
+                Metrics.record(Metrics.Op.EDIT, start);
+            }
+        }
+    }
+
+    // Remove a task from the list
+    public void removeTask(Task task) {
+        removeTask(task, taskType);
+    }
+
+    public void removeTask(Task task, TaskType view) {
+        long start = Metrics.start();
+        writeLock.lock();
+        try {
+            TaskStore store = storeHolding(task, view);
+            Task removed = store.remove(task.getId());
+            if (removed != null) {
+                unschedule(task.getId());
+                int journalList = store == tasks ? TaskRepository.TASKS : TaskRepository.COMPLETED;
+                updateSearchIndex(index -> index.remove(removed));
+                persist(j -> j.logRemove(journalList, task.getId()), store == tasks, store == completedTasks);
+                refresh();
+            }
+        } finally {
+            writeLock.unlock();
+            Metrics.record(Metrics.Op.REMOVE, start);
+        }
+    }
+
+    // Mark a task as completed
+    public void completeTask(Task task) {
+        completeTask(task, taskType);
+    }
+
+    public void completeTask(Task task, TaskType view) {
+        if (view != TaskType.COMPLETED) {
+            long start = Metrics.start();
+            writeLock.lock();
+            try {
+                Task removed = tasks.remove(task.getId());
+                if (removed != null) {
+                    completedTasks.add(removed);
+                    unschedule(task.getId());
+                    persist(j -> j.logComplete(task.getId()), true, true);
+                    refresh();
+                }
+            } finally {
+                writeLock.unlock();
+                Metrics.record(Metrics.Op.COMPLETE, start);
+            }
+        }
+    }
+
+    public void unCompleteTask(Task task) {
+        unCompleteTask(task, taskType);
+    }
+
+    public void unCompleteTask(Task task, TaskType view) {
+        if (view == TaskType.COMPLETED || view == TaskType.ALL) {
+            long start = Metrics.start();
+            writeLock.lock();
+            try {
+                Task removed = completedTasks.remove(task.getId());
+                if (removed != null) {
+                    tasks.add(removed);
+                    schedule(removed);
+                    persist(j -> j.logUnComplete(task.getId()), true, true);
+                    refresh();
+                }
+            } finally {
+                writeLock.unlock();
+                Metrics.record(Metrics.Op.UNCOMPLETE, start);
+            }
+        }
+    }
+
+    // Recurring tasks. A recurring task is a series: it stays in the uncompleted list, its due
+    // date always the next occurrence. When that day comes, the series hands out an occurrence,
+    // a plain task due that day, and moves its own due date on to the next one. Completing an
+    // occurrence leaves the series as it is; completing or removing the series ends it.
+    //
+    // Each series has a timer for the start of its due day on a timing wheel shared by every
+    // list, so a hundred thousand series cost one thread and a small object each, and adding,
+    // editing or removing one sets or cancels its timer in constant time.
+    private static final class Scheduler {
+        // One-second ticks are plenty for timers that fire at midnight
+        static final TimingWheel WHEEL = new TimingWheel(1, TimeUnit.SECONDS, 4096, "Task scheduler");
+    }
+
+    // Set the timer for the task's next occurrence, replacing any it had. Called with the write
+    // lock held.
+    private void schedule(Task task) {
+        unschedule(task.getId());
+        if (!task.isRecurring() || closed) {
+            return;
+        }
+        long id = task.getId();
+        long dueAt = LocalDate.ofEpochDay(task.getDueDate()).atStartOfDay(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        schedules.put(id, Scheduler.WHEEL.schedule(() -> occurrenceDue(id), dueAt - System.currentTimeMillis(), TimeUnit.MILLISECONDS));
+    }
+
+    // Called with the write lock held
+    private void scheduleIn(TaskStore store, Task task) {
+        if (store == tasks) {
+            schedule(task);
+        }
+    }
+
+    // Called with the write lock held
+    private void unschedule(long id) {
+        TimingWheel.Timeout timeout = schedules.remove(id);
+        if (timeout != null) {
+            timeout.cancel();
+        }
+    }
+
+    // On the wheel thread, which must not wait for the lock. Series falling due together, as
+    // they all do at midnight, get their occurrences in one batch.
+    private void occurrenceDue(long id) {
+        dueSeries.add(id);
+        if (occurrencesQueued.compareAndSet(false, true)) {
+            if (view != NO_VIEW) {
+                SwingUtilities.invokeLater(this::addDueOccurrences);
+            } else {
+                new Thread(this::addDueOccurrences, "Task occurrences").start();
+            }
+        }
+    }
+
+    private void addDueOccurrences() {
+        occurrencesQueued.set(false);
+        batch(() -> {
+            Long id;
+            while ((id = dueSeries.poll()) != null) {
+                if (!closed) {
+                    addOccurrence(id);
+                }
+            }
+        });
+    }
+
+    // Give a series whose due day has come its occurrence, and move it on to the next. A series
+    // whose days were missed, because the app was not running or the computer slept, gets one
+    // occurrence, for the latest of them. Called in a batch.
+    private void addOccurrence(long id) {
+        Task series = tasks.getById(id);
+        if (series == null || !series.isRecurring()) {
+            unschedule(id);
+            return;
+        }
+        long today = LocalDate.now().toEpochDay();
+        if (series.getDueDate() > today) {
+            // Fired early, as when the clock or time zone changed
+            schedule(series);
+            return;
+        }
+        long occurrence = series.getDueDate();
+        long next = Recurrence.next(occurrence, series.getRecurrence());
+        while (next <= today) {
+            occurrence = next;
+            next = Recurrence.next(occurrence, series.getRecurrence());
+        }
+        Task instance = pooled(new Task(nextTaskId++, series.getDescription(), System.currentTimeMillis(), series.getPriority(), occurrence));
+        Task advanced = series.withDueDate(next);
+        tasks.add(instance);
+        tasks.replace(advanced);
+        updateSearchIndex(index -> {
+            index.add(instance);
+            index.replace(series, advanced);
+        });
+        persist(j -> {
+            j.logAdd(instance);
+            j.logEdit(TaskRepository.TASKS, advanced);
+        }, true, false);
+        refresh();
+        schedule(advanced);
+    }
+
+    // Recurring tasks with a timer set
+    int scheduledCount() {
+        writeLock.lock();
+        try {
+            return schedules.size();
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    // History. With useHistory, both lists are recorded as a version in a TaskHistory after
+    // loading and then as they are saved, at most once every HISTORY_INTERVAL_MILLIS, so a burst
+    // of edits makes one version, and once more on close. Versions share their unchanged chunks,
+    // so each costs about what changed in it. Any version can be compared with another or
+    // restored. Works alongside every kind of storage. Off unless turned on, since each version
+    // hashes the whole list and the history is never pruned.
+    static final long HISTORY_INTERVAL_MILLIS = 30_000;
+
+    // Keep the history in files named after the given one. Call before loading.
+    public void useHistory(String fileName) {
+        historyFileName = fileName;
+    }
+
+    // The history, or null when none is kept
+    public TaskHistory history() {
+        return history;
+    }
+
+    private void openHistory() {
+        if (historyFileName == null || history != null) {
+            return;
+        }
+        try {
+            history = new TaskHistory(historyFileName);
+        } catch (IOException e) {
+            System.out.println("Error opening history: " + e.getMessage());
+        }
+    }
+
+    // Record the lists as they will be once the interval since the last version is up. Called
+    // on every publish, so it only queues.
+    private void recordHistory() {
+        if (history == null || !historyQueued.compareAndSet(false, true)) {
+            return;
+        }
+        long delay = lastHistoryRecord + HISTORY_INTERVAL_MILLIS - System.currentTimeMillis();
+        if (delay <= 0) {
+            submitHistory();
+        } else {
+            Scheduler.WHEEL.schedule(this::submitHistory, delay, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    // Hand the latest lists to the persistence thread, which stores them after the saves
+    // queued before them
+    private void submitHistory() {
+        if (closed || !historyQueued.getAndSet(false)) {
+            return;
+        }
+        ListsSnapshot lists = snapshot();
+        lastHistoryRecord = System.currentTimeMillis();
+        try {
+            persistence.submitLatest(history, () -> recordVersion(lists));
+        } catch (IllegalStateException e) {
+            // Closing; close() records the last version
+        }
+    }
+
+    private void recordVersion(ListsSnapshot lists) {
+        try {
+            history.record(lists.tasks, lists.completedTasks);
+        } catch (IOException e) {
+            System.out.println("Error recording history: " + e.getMessage());
+        }
+    }
+
+    // Put both lists back as they were in a version. The lists as they are now are recorded
+    // first, so a restore can itself be undone, and the difference is applied as edits,
+    // removals and additions in one batch: tasks in both keep their IDs, and a repository
+    // stores only what changed. Reads the history on the calling thread, which must not be the
+    // Event Dispatch Thread when there is a window. Returns false, changing nothing, if the
+    // lists changed while the difference was worked out.
+    public boolean restoreVersion(TaskHistory.Version version) throws IOException {
+        // Versions queued before this one are stored first, so this one is the latest
+        persistence.flush();
+        ListsSnapshot current = snapshot();
+        TaskHistory.Version now = history.record(current.tasks, current.completedTasks);
+        lastHistoryRecord = System.currentTimeMillis();
+        List<TaskHistory.Change> tasksChanges = history.diff(now, version, false);
+        List<TaskHistory.Change> completedTasksChanges = history.diff(now, version, true);
+        if (view == NO_VIEW) {
+            return applyHistory(current, tasksChanges, completedTasksChanges);
+        }
+        boolean[] applied = new boolean[1];
+        try {
+            SwingUtilities.invokeAndWait(() -> applied[0] = applyHistory(current, tasksChanges, completedTasksChanges));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Restore interrupted");
+        } catch (InvocationTargetException e) {
+            throw new IOException(e.getCause().getMessage(), e.getCause());
+        }
+        return applied[0];
+    }
+
+    private boolean applyHistory(ListsSnapshot current, List<TaskHistory.Change> tasksChanges,
+            List<TaskHistory.Change> completedTasksChanges) {
+        beginBatch();
+        try {
+            if (snapshot() != current) {
+                return false;
+            }
+            applyHistory(tasks, tasksChanges);
+            applyHistory(completedTasks, completedTasksChanges);
+            return true;
+        } finally {
+            commitBatch();
+        }
+    }
+
+    // Apply one list's changes, last first so the positions of the earlier ones still hold.
+    // Called in a batch.
+    private void applyHistory(TaskStore store, List<TaskHistory.Change> changes) {
+        int journalList = store == tasks ? TaskRepository.TASKS : TaskRepository.COMPLETED;
+        boolean completedList = store == completedTasks;
+        for (int c = changes.size() - 1; c >= 0; c--) {
+            TaskHistory.Change change = changes.get(c);
+            int pairs = Math.min(change.removed.length, change.added.length);
+            for (int i = 0; i < pairs; i++) {
+                Task old = store.get(change.fromIndex + i);
+                Task theirs = Task.fromLine(old.getId(), change.added[i]);
+                Task result = pooled(old.with(theirs.getDescription(), theirs.getPriority(), theirs.getDueDate(), theirs.getRecurrence()));
+                store.replace(result);
+                scheduleIn(store, result);
+                updateSearchIndex(index -> index.replace(old, result));
+                persist(j -> j.logEdit(journalList, result), !completedList, completedList);
+            }
+            for (int i = change.removed.length - 1; i >= pairs; i--) {
+                Task old = store.get(change.fromIndex + i);
+                store.remove(old.getId());
+                unschedule(old.getId());
+                updateSearchIndex(index -> index.remove(old));
+                persist(j -> j.logRemove(journalList, old.getId()), !completedList, completedList);
+            }
+            for (int i = pairs; i < change.added.length; i++) {
+                Task added = newTaskFromLine(change.added[i]);
+                int position = change.fromIndex + i;
+                store.add(position, added);
+                scheduleIn(store, added);
+                updateSearchIndex(index -> index.add(added));
+                // Repositories add at the end of the uncompleted list, so the task is completed
+                // if need be and then moved into place
+                boolean atEnd = position == store.size() - 1;
+                persist(j -> {
+                    j.logAdd(added);
+                    if (completedList) {
+                        j.logComplete(added.getId());
+                    }
+                    if (!atEnd) {
+                        j.logMove(journalList, added.getId(), position);
+                    }
+                }, true, completedList);
+            }
+        }
+    }
+
+    // The store a view shows, or null for the All view, which shows both
+    private TaskStore storeFor(TaskType view) {
+        if (view == TaskType.INCOMPLETE || view == TaskType.SORTED) {
+            return tasks;
+        } else if (view == TaskType.COMPLETED) {
+            return completedTasks;
+        }
+        return null;
+    }
+
+    // The store a view shows the task from. The All view takes it from whichever list holds it,
+    // so a task completed meanwhile is still found. Call with the write lock held.
+    private TaskStore storeHolding(Task task, TaskType view) {
+        TaskStore store = storeFor(view);
+        if (store == null) {
+            store = completedTasks.contains(task.getId()) ? completedTasks : tasks;
+        }
+        return store;
+    }
+
+    // The store whose own order a view shows, or null for the All and Sorted views
+    private TaskStore reorderableStoreFor(TaskType view) {
+        return view == TaskType.SORTED ? null : storeFor(view);
+    }
+
+    // Move a task from one spot to another within the list shown by the given view
+    public void moveTask(Task task, TaskType view, int offset, boolean toEnd) {
+        TaskStore store = reorderableStoreFor(view);
+        if (store == null) {
+            return;
+        }
+        long start = Metrics.start();
+        writeLock.lock();
+        try {
+            int index = store.indexOf(task.getId());
+            if (index != -1) {
+                moveTaskTo(store, task, toEnd ? (offset < 0 ? 0 : store.size() - 1) : index + offset);
+            }
+        } finally {
+            writeLock.unlock();
+            Metrics.record(Metrics.Op.MOVE, start);
+        }
+    }
+
+    // Called with the write lock held
+    private void moveTaskTo(TaskStore store, Task task, int newIndex) {
+        int index = store.indexOf(task.getId());
+        if (newIndex < 0 || newIndex >= store.size() || newIndex == index) {
+            return;
+        }
+        int journalList = store == tasks ? TaskRepository.TASKS : TaskRepository.COMPLETED;
+        store.move(task.getId(), newIndex);
+        persist(j -> j.logMove(journalList, task.getId(), newIndex), store == tasks, store == completedTasks);
+        refresh();
+    }
+
+    // Move several tasks of the current view one spot, or to one end, as a batch. The tasks keep
+    // their order; one already against the end it moves toward stays put and holds back the
+    // selected tasks right behind it.
+    public void moveTasks(List<Task> selected, int offset, boolean toEnd) {
+        TaskStore store = reorderableStoreFor(taskType);
+        if (store == null) {
+            return;
+        }
+        long start = Metrics.start();
+        beginBatch();
+        try {
+            int[] indices = new int[selected.size()];
+            int count = 0;
+            for (Task task : selected) {
+                int index = store.indexOf(task.getId());
+                if (index != -1) {
+                    indices[count++] = index;
+                }
+            }
+            Arrays.sort(indices, 0, count);
+
+            // Moving a task only shifts the tasks between its old and new spot, none of which are
+            // selected ones still to be moved, so the indices stay valid while working from the
+            // end the tasks move toward
+            int bound = offset < 0 ? 0 : store.size() - 1;
+            for (int k = 0; k < count; k++) {
+                int index = offset < 0 ? indices[k] : indices[count - 1 - k];
+                Task task = store.get(index);
+                if (toEnd) {
+                    moveTaskTo(store, task, offset < 0 ? k : store.size() - 1 - k);
+                } else if (index == bound) {
+                    bound -= offset;
+                } else {
+                    moveTaskTo(store, task, index + offset);
+                }
+            }
+        } finally {
+            commitBatch();
+            Metrics.record(Metrics.Op.MOVE, start);
+        }
+    }
+
+    // Move a task to the top of the list
+    public void moveTaskToTop(Task task) {
+        moveTask(task, taskType, -1, true);
+    }
+
+    // Move a task to the bottom of the list
+    public void moveTaskToBottom(Task task) {
+        moveTask(task, taskType, 1, true);
+    }
+
+    // Move a task up one spot in the list
+    public void moveTaskUp(Task task) {
+        moveTask(task, taskType, -1, false);
+    }
+
+    // Move a task down one spot in the list
+    public void moveTaskDown(Task task) {
+        moveTask(task, taskType, 1, false);
+    }
+
+    // The window. It shows one list at a time, picked in the sidebar from the TaskLists, and
+    // switches by attaching to that list's shard.
+    public static class GUI implements ActionListener, View {
+        private final TaskLists lists;
+        private ToDoListApp app;
+        private TaskType taskType = TaskType.ALL;
+        private JFrame frame;
+        private JPanel panel;
+        private JLabel titleLabel;
+        private JComboBox<String> taskTypeComboBox;
+        private JLabel statusLabel;
+        private JTextField searchField;
+        private javax.swing.Timer searchDebounce;
+        // Counts the searches started, so a result that arrives after a newer search was started
+        // is dropped. Written on the Event Dispatch Thread, read by the search workers.
+        private volatile int searchGeneration;
+        private FilteredTaskListModel filteredTaskListModel;
+        private TaskListModel incompleteTaskListModel;
+        private TaskListModel completedTaskListModel;
+        // Made the first time the Sorted view is shown, since keeping it costs a little per change
+        private SortedTaskListModel sortedTaskListModel;
+        private CompositeTaskListModel allTaskListModel;
+        // What the views show while no list is attached: the first page of one being loaded
+        private TaskStore loadingTasks = new TaskStore();
+        private ListModel<Task> taskListModel;
+        private JList<Task> taskList;
+        private JScrollPane taskListScrollPane;
+        private JButton addButton;
+        private JButton editButton;
+        private JButton deleteButton;
+        private JButton completeButton;
+        private JButton unCompleteButton;
+        private JButton moveUpButton;
+        private JButton moveDownButton;
+        private JButton moveToTopButton;
+        private JButton moveToBottomButton;
+        private final ButtonAnimator buttonAnimator = new ButtonAnimator(200, 15);
+        private DefaultListModel<String> listNamesModel;
+        private JList<String> listNames;
+        private JButton newListButton;
+        private JButton importButton;
+        private JButton exportButton;
+        private JButton historyButton;
+        private PersistenceExecutor.Listener persistenceListener;
+
+        public GUI(TaskLists lists) {
+            this.lists = lists;
+        }
+
+        public void createAndShowGUI() {
+            frame = new JFrame("To-Do List App");
+            // Closing waits for pending writes instead of exiting in the middle of one
+            frame.setDefaultCloseOperation(JFrame.DO_NOTHING_ON_CLOSE);
+            frame.addWindowListener(new WindowAdapter() {
+                @Override
+                public void windowClosing(WindowEvent e) {
+                    lists.close();
+                    frame.dispose();
+                    System.exit(0);
+                }
+            });
+            frame.setSize(1200, 800);
+
+            ImageIcon icon = new ImageIcon("C:\\Users\\Carter\\IdeaProjects\\ToDoList\\src\\favicon.png");
+            frame.setIconImage(icon.getImage());
+
+            JPanel panel = new JPanel(new BorderLayout());
+
+            Border outline = new LineBorder(Color.BLACK, 2);
+
+            Color initialColor = Color.decode("#ec6900");
+            Color hoverColor = Color.decode("#804028");
+
+            JPanel buttonPanel = new JPanel(new GridLayout(8, 1));
+            editButton = new JButton("Edit");
+            editButton.addActionListener(this);
+            editButton.setBackground(Color.decode("#ec6900"));
+            editButton.setForeground(Color.WHITE);
+            editButton.addMouseListener(new MouseAdapter() {
+                @Override
+                public void mouseEntered(MouseEvent e) {
+                    animateButtonColor(editButton, initialColor, hoverColor);
+                }
+
+                @Override
+                public void mouseExited(MouseEvent e) {
+                    animateButtonColor(editButton, hoverColor, initialColor);
+                }
+            });
+            editButton.setBorder(outline);
+
+            deleteButton = new JButton("Delete");
+            deleteButton.addActionListener(this);
+            deleteButton.setBackground(Color.decode("#ec6900"));
+            deleteButton.setForeground(Color.WHITE);
+            deleteButton.addMouseListener(new MouseAdapter() {
+                @Override
+                public void mouseEntered(MouseEvent e) {
+                    animateButtonColor(deleteButton, initialColor, hoverColor);
+                }
+
+                @Override
+                public void mouseExited(MouseEvent e) {
+                    animateButtonColor(deleteButton, hoverColor, initialColor);
+                }
+            });
+            deleteButton.setBorder(outline);
+
+            completeButton = new JButton("Complete");
+            completeButton.addActionListener(this);
+            completeButton.setBackground(Color.decode("#ec6900"));
+            completeButton.setForeground(Color.WHITE);
+            completeButton.addMouseListener(new MouseAdapter() {
+                @Override
+                public void mouseEntered(MouseEvent e) {
+                    animateButtonColor(completeButton, initialColor, hoverColor);
+                }
+
+                @Override
+                public void mouseExited(MouseEvent e) {
+                    animateButtonColor(completeButton, hoverColor, initialColor);
+                }
+            });
+            completeButton.setBorder(outline);
+
+            unCompleteButton = new JButton("Un-Complete");
+            unCompleteButton.addActionListener(this);
+            unCompleteButton.setBackground(Color.decode("#ec6900"));
+            unCompleteButton.setForeground(Color.WHITE);
+            unCompleteButton.addMouseListener(new MouseAdapter() {
+                @Override
+                public void mouseEntered(MouseEvent e) {
+                    animateButtonColor(unCompleteButton, initialColor, hoverColor);
+                }
+
+                @Override
+                public void mouseExited(MouseEvent e) {
+                    animateButtonColor(unCompleteButton, hoverColor, initialColor);
+                }
+            });
+            unCompleteButton.setBorder(outline);
+
+            moveUpButton = new JButton("Move Up");
+            moveUpButton.addActionListener(this);
+            moveUpButton.setBackground(Color.decode("#ec6900"));
+            moveUpButton.setForeground(Color.WHITE);
+            moveUpButton.addMouseListener(new MouseAdapter() {
+                @Override
+                public void mouseEntered(MouseEvent e) {
+                    animateButtonColor(moveUpButton, initialColor, hoverColor);
+                }
+
+                @Override
+                public void mouseExited(MouseEvent e) {
+                    animateButtonColor(moveUpButton, hoverColor, initialColor);
+                }
+            });
+            moveUpButton.setBorder(outline);
+
+            moveDownButton = new JButton("Move Down");
+            moveDownButton.addActionListener(this);
+            moveDownButton.setBackground(Color.decode("#ec6900"));
+            moveDownButton.setForeground(Color.WHITE);
+            moveDownButton.addMouseListener(new MouseAdapter() {
+                @Override
+                public void mouseEntered(MouseEvent e) {
+                    animateButtonColor(moveDownButton, initialColor, hoverColor);
+                }
+
+                @Override
+                public void mouseExited(MouseEvent e) {
+                    animateButtonColor(moveDownButton, hoverColor, initialColor);
+                }
+            });
+            moveDownButton.setBorder(outline);
+
+            moveToTopButton = new JButton("Move to Top");
+            moveToTopButton.addActionListener(this);
+            moveToTopButton.setBackground(Color.decode("#ec6900"));
+            moveToTopButton.setForeground(Color.WHITE);
+            moveToTopButton.addMouseListener(new MouseAdapter() {
+                @Override
+                public void mouseEntered(MouseEvent e) {
+                    animateButtonColor(moveToTopButton, initialColor, hoverColor);
+                }
+
+                @Override
+                public void mouseExited(MouseEvent e) {
+                    animateButtonColor(moveToTopButton, hoverColor, initialColor);
+                }
+            });
+            moveToTopButton.setBorder(outline);
+
+            moveToBottomButton = new JButton("Move to Bottom");
+            moveToBottomButton.addActionListener(this);
+            moveToBottomButton.setBackground(Color.decode("#ec6900"));
+            moveToBottomButton.setForeground(Color.WHITE);
+            moveToBottomButton.addMouseListener(new MouseAdapter() {
+                @Override
+                public void mouseEntered(MouseEvent e) {
+                    animateButtonColor(moveToBottomButton, initialColor, hoverColor);
+                }
+
+                @Override
+                public void mouseExited(MouseEvent e) {
+                    animateButtonColor(moveToBottomButton, hoverColor, initialColor);
+                }
+            });
+            moveToBottomButton.setBorder(outline);
+
+            buttonPanel.add(editButton);
+            buttonPanel.add(deleteButton);
+            buttonPanel.add(completeButton);
+            buttonPanel.add(unCompleteButton);
+            buttonPanel.add(moveUpButton);
+            buttonPanel.add(moveDownButton);
+            buttonPanel.add(moveToTopButton);
+            buttonPanel.add(moveToBottomButton);
+            buttonPanel.setBackground(Color.decode("#984303"));
+            panel.add(buttonPanel, BorderLayout.WEST);
+
+            taskTypeComboBox = new JComboBox<>();
+            taskTypeComboBox.addItem("Uncompleted Tasks");
+            taskTypeComboBox.addItem("Completed Tasks");
+            taskTypeComboBox.addItem("All Tasks");
+            taskTypeComboBox.addItem("Sorted Tasks");
+            taskTypeComboBox.addActionListener(this);
+
+            statusLabel = new JLabel("Loading tasks...");
+            statusLabel.setBorder(BorderFactory.createEmptyBorder(0, 8, 0, 8));
+            JPanel statusPanel = new JPanel(new BorderLayout());
+            statusPanel.add(taskTypeComboBox, BorderLayout.CENTER);
+            statusPanel.add(statusLabel, BorderLayout.EAST);
+            panel.add(statusPanel, BorderLayout.SOUTH);
+
+            persistenceListener = new PersistenceExecutor.Listener() {
+                @Override
+                public void writeCompleted(boolean idle) {
+                    if (idle) {
+                        SwingUtilities.invokeLater(() -> {
+                            if (app != null && app.persistence.isIdle()) {
+                                statusLabel.setText("All changes saved");
+                            }
+                        });
+                    }
+                }
+
+                @Override
+                public void writeFailed(IOException e) {
+                    System.out.println("Error saving tasks: " + e.getMessage());
+                    SwingUtilities.invokeLater(() -> {
+                        statusLabel.setText("Save failed");
+                        JOptionPane.showMessageDialog(frame, "Could not save tasks: " + e.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
+                    });
+                }
+            };
+
+            allTaskListModel = new CompositeTaskListModel(new TaskStore(), new TaskStore());
+            filteredTaskListModel = new FilteredTaskListModel();
+            taskListModel = allTaskListModel;
+            taskList = new JList<>(taskListModel);
+            taskList.setSelectionMode(ListSelectionModel.MULTIPLE_INTERVAL_SELECTION);
+            taskList.setBackground(Color.decode("#c24902"));
+            taskList.setForeground(Color.WHITE);
+            taskList.setCellRenderer(new TaskCellRenderer(task -> app != null && app.completedTasks.contains(task.getId())));
+            // Fixed cell sizes stop the list UI from measuring every row on each change, so
+            // layout and painting only touch the visible rows however long the list gets
+            taskList.setFixedCellHeight(taskList.getFontMetrics(taskList.getFont()).getHeight() + 4);
+            taskList.setFixedCellWidth(100);
+            taskListScrollPane = new JScrollPane(taskList);
+            taskListScrollPane.setBackground(Color.decode("#c24902"));
+            taskListScrollPane.setForeground(Color.WHITE);
+            taskListScrollPane.setBorder(outline);
+            panel.add(taskListScrollPane, BorderLayout.CENTER);
+
+            addButton = new JButton("Add Task");
+            addButton.addActionListener(this);
+            addButton.setBackground(Color.decode("#FF7F50"));
+            addButton.setForeground(Color.WHITE);
+            addButton.addMouseListener(new MouseAdapter() {
+                @Override
+                public void mouseEntered(MouseEvent e) {
+                    animateButtonColor(addButton, Color.decode("#FF7F50"), hoverColor);
+                }
+
+                @Override
+                public void mouseExited(MouseEvent e) {
+                    animateButtonColor(addButton, hoverColor, Color.decode("#FF7F50"));
+                }
+            });
+            addButton.setBorder(outline);
+
+            // Typing in the search box filters the current view once typing pauses
+            searchField = new JTextField(20);
+            searchField.setEnabled(false);
+            searchDebounce = new javax.swing.Timer(150, e -> updateTaskList());
+            searchDebounce.setRepeats(false);
+            searchField.getDocument().addDocumentListener(new DocumentListener() {
+                @Override
+                public void insertUpdate(DocumentEvent e) {
+                    searchDebounce.restart();
+                }
+
+                @Override
+                public void removeUpdate(DocumentEvent e) {
+                    searchDebounce.restart();
+                }
+
+                @Override
+                public void changedUpdate(DocumentEvent e) {
+                    searchDebounce.restart();
+                }
+            });
+            JPanel searchPanel = new JPanel(new BorderLayout());
+            searchPanel.setBorder(BorderFactory.createEmptyBorder(0, 8, 0, 8));
+            searchPanel.add(new JLabel("Search: "), BorderLayout.WEST);
+            searchPanel.add(searchField, BorderLayout.CENTER);
+
+            JPanel topPanel = new JPanel(new BorderLayout());
+            topPanel.add(addButton, BorderLayout.CENTER);
+            topPanel.add(searchPanel, BorderLayout.EAST);
+            panel.add(topPanel, BorderLayout.NORTH);
+
+            // The lists to switch between, with a button to start a new one
+            listNamesModel = new DefaultListModel<>();
+            listNamesModel.addAll(lists.names());
+            listNames = new JList<>(listNamesModel);
+            listNames.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+            listNames.setBackground(Color.decode("#984303"));
+            listNames.setForeground(Color.WHITE);
+            listNames.addListSelectionListener(e -> {
+                if (!e.getValueIsAdjusting() && listNames.getSelectedValue() != null) {
+                    showList(listNames.getSelectedValue());
+                }
+            });
+            newListButton = new JButton("New List");
+            newListButton.addActionListener(this);
+            newListButton.setBackground(Color.decode("#FF7F50"));
+            newListButton.setForeground(Color.WHITE);
+            newListButton.setBorder(outline);
+            newListButton.setEnabled(lists.canCreate());
+            importButton = new JButton("Import...");
+            exportButton = new JButton("Export...");
+            historyButton = new JButton("History...");
+            for (JButton button : new JButton[] { importButton, exportButton, historyButton }) {
+                button.addActionListener(this);
+                button.setBackground(Color.decode("#FF7F50"));
+                button.setForeground(Color.WHITE);
+                button.setBorder(outline);
+            }
+            JPanel listButtons = new JPanel(new GridLayout(4, 1));
+            listButtons.add(newListButton);
+            listButtons.add(importButton);
+            listButtons.add(exportButton);
+            listButtons.add(historyButton);
+            JPanel sidebar = new JPanel(new BorderLayout());
+            sidebar.add(new JScrollPane(listNames), BorderLayout.CENTER);
+            sidebar.add(listButtons, BorderLayout.SOUTH);
+            sidebar.setPreferredSize(new Dimension(180, 0));
+
+            JPanel content = new JPanel(new BorderLayout());
+            content.add(sidebar, BorderLayout.WEST);
+            content.add(panel, BorderLayout.CENTER);
+            frame.getContentPane().add(content);
+
+            // Ctrl+Shift+D shows the latency of each operation over the window
+            DiagnosticsOverlay overlay = new DiagnosticsOverlay();
+            frame.setGlassPane(overlay);
+            JRootPane rootPane = frame.getRootPane();
+            rootPane.getInputMap(JComponent.WHEN_IN_FOCUSED_WINDOW).put(KeyStroke.getKeyStroke("ctrl shift D"), "toggleDiagnostics");
+            rootPane.getActionMap().put("toggleDiagnostics", new AbstractAction() {
+                @Override
+                public void actionPerformed(ActionEvent e) {
+                    overlay.toggle();
+                }
+            });
+            frame.setVisible(true);
+            startupMilestone("window");
+
+            attach(null);
+            listNames.setSelectedValue(listNamesModel.contains(TaskLists.DEFAULT_LIST) ? TaskLists.DEFAULT_LIST : listNamesModel.get(0), true);
+        }
+
+        // Switch to a list. One already in memory is shown at once; otherwise its files are read
+        // on a worker thread and editing stays disabled until then, so nothing can be added
+        // before the loaded tasks and their IDs are in place. The first page of a long list is
+        // shown as soon as it is read.
+        private void showList(String name) {
+            ToDoListApp loaded = lists.loaded(name);
+            if (loaded != null) {
+                attach(loaded);
+                return;
+            }
+            attach(null);
+            statusLabel.setText("Loading " + name + "...");
+            new SwingWorker<ToDoListApp, Task>() {
+                @Override
+                protected ToDoListApp doInBackground() throws IOException {
+                    return lists.open(name, firstPage -> publish(firstPage.toArray(new Task[0])));
+                }
+
+                @Override
+                protected void process(List<Task> firstPage) {
+                    if (app == null && name.equals(listNames.getSelectedValue())) {
+                        loadingTasks.addAll(firstPage);
+                        statusLabel.setText("Loading " + name + "...");
+                        startupMilestone("first page");
+                    }
+                }
+
+                @Override
+                protected void done() {
+                    if (!name.equals(listNames.getSelectedValue())) {
+                        // Switched elsewhere meanwhile; the shard stays warm for later
+                        return;
+                    }
+                    try {
+                        attach(get());
+                        startupMilestone("loaded");
+                        if (startupTiming) {
+                            frame.dispatchEvent(new WindowEvent(frame, WindowEvent.WINDOW_CLOSING));
+                        }
+                    } catch (Exception e) {
+                        // Leave editing disabled so nothing gets saved over the unreadable file
+                        Throwable cause = e.getCause() != null ? e.getCause() : e;
+                        System.out.println("Error loading tasks: " + cause.getMessage());
+                        statusLabel.setText("Loading failed");
+                        JOptionPane.showMessageDialog(frame, "Could not load tasks: " + cause.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
+                    }
+                }
+            }.execute();
+        }
+
+        // Show a loaded shard, or nothing with null. The list models follow the shard's stores,
+        // and the shard reports its changes here until the next switch.
+        private void attach(ToDoListApp shard) {
+            if (app != null) {
+                app.setView(null);
+                app.persistence.setListener(null);
+                incompleteTaskListModel.dispose();
+                completedTaskListModel.dispose();
+                allTaskListModel.dispose();
+            }
+            if (sortedTaskListModel != null) {
+                sortedTaskListModel.dispose();
+                sortedTaskListModel = null;
+            }
+            app = shard;
+            if (shard == null) {
+                loadingTasks = new TaskStore();
+                incompleteTaskListModel = new TaskListModel(loadingTasks);
+                completedTaskListModel = new TaskListModel(new TaskStore());
+                allTaskListModel = new CompositeTaskListModel(loadingTasks, new TaskStore());
+                setControlsEnabled(false);
+                searchField.setEnabled(false);
+                updateTaskList();
+                return;
+            }
+            incompleteTaskListModel = new TaskListModel(shard.tasks);
+            completedTaskListModel = new TaskListModel(shard.completedTasks);
+            allTaskListModel = new CompositeTaskListModel(shard.tasks, shard.completedTasks);
+            shard.setView(this);
+            shard.persistence.setListener(persistenceListener);
+            lists.trim();
+
+            statusLabel.setText(" ");
+            updateTaskList();
+            setControlsEnabled(true);
+            searchField.setEnabled(shard.isIndexed());
+            if (!shard.isIndexed()) {
+                buildSearchIndexInBackground(shard);
+            }
+        }
+
+        // Index the shown list on a worker thread. Changes made in the meantime are queued by
+        // updateSearchIndex and applied before the index is put to use.
+        private void buildSearchIndexInBackground(ToDoListApp shard) {
+            new SwingWorker<Void, Void>() {
+                @Override
+                protected Void doInBackground() {
+                    shard.indexNow();
+                    return null;
+                }
+
+                @Override
+                protected void done() {
+                    try {
+                        get();
+                        if (app == shard) {
+                            searchField.setEnabled(true);
+                        }
+                    } catch (Exception e) {
+                        System.out.println("Error building search index: " + e.getMessage());
+                    }
+                }
+            }.execute();
+        }
+
+        private void setControlsEnabled(boolean enabled) {
+            for (JButton button : new JButton[] { addButton, editButton, deleteButton, completeButton, unCompleteButton,
+                    moveUpButton, moveDownButton, moveToTopButton, moveToBottomButton, importButton, exportButton }) {
+                button.setEnabled(enabled);
+            }
+            historyButton.setEnabled(enabled && app != null && app.history() != null);
+            taskTypeComboBox.setEnabled(enabled);
+        }
+
+        // Ask for a description, priority, due date and recurrence, filled in from the given task if
+        // there is one. Returns them as a task without an ID, or null if cancelled or left empty.
+        private Task showTaskDialog(String title, Task initial) {
+            JTextField description = new JTextField(initial == null ? "" : initial.getDescription(), 30);
+            JComboBox<String> priority = new JComboBox<>(new String[] { "None", "Low", "Medium", "High" });
+            priority.setSelectedIndex(initial == null ? Task.NO_PRIORITY : initial.getPriority());
+            JTextField dueDate = new JTextField(initial == null || initial.getDueDate() == Task.NO_DUE_DATE ? ""
+                    : LocalDate.ofEpochDay(initial.getDueDate()).toString(), 10);
+            ArrayList<Integer> rules = new ArrayList<>(List.of(Task.NO_RECURRENCE, Recurrence.of(1, Recurrence.DAYS),
+                    Recurrence.of(1, Recurrence.WEEKS), Recurrence.of(2, Recurrence.WEEKS), Recurrence.of(1, Recurrence.MONTHS),
+                    Recurrence.of(1, Recurrence.YEARS)));
+            int initialRule = initial == null ? Task.NO_RECURRENCE : initial.getRecurrence();
+            if (!rules.contains(initialRule)) {
+                // A rule set in the file or over HTTP, such as every 3 days
+                rules.add(initialRule);
+            }
+            JComboBox<String> recurrence = new JComboBox<>();
+            for (int rule : rules) {
+                recurrence.addItem(rule == Task.NO_RECURRENCE ? "Never" : Recurrence.describe(rule));
+            }
+            recurrence.setSelectedIndex(rules.indexOf(initialRule));
+            JPanel form = new JPanel(new GridLayout(4, 2, 4, 4));
+            form.add(new JLabel("Task:"));
+            form.add(description);
+            form.add(new JLabel("Priority:"));
+            form.add(priority);
+            form.add(new JLabel("Due date (YYYY-MM-DD):"));
+            form.add(dueDate);
+            form.add(new JLabel("Repeats:"));
+            form.add(recurrence);
+            while (true) {
+                int choice = JOptionPane.showConfirmDialog(frame, form, title, JOptionPane.OK_CANCEL_OPTION, JOptionPane.PLAIN_MESSAGE);
+                if (choice != JOptionPane.OK_OPTION || description.getText().isEmpty()) {
+                    return null;
+                }
+                long due = Task.NO_DUE_DATE;
+                if (!dueDate.getText().isBlank()) {
+                    due = Task.parseDueDate(dueDate.getText().trim());
+                    if (due == Task.NO_DUE_DATE) {
+                        JOptionPane.showMessageDialog(frame, "Enter the due date as YYYY-MM-DD.", "Error", JOptionPane.ERROR_MESSAGE);
+                        continue;
+                    }
+                }
+                int rule = rules.get(recurrence.getSelectedIndex());
+                if (rule != Task.NO_RECURRENCE && due == Task.NO_DUE_DATE) {
+                    // A recurring task repeats from its due date; without one it starts today
+                    due = LocalDate.now().toEpochDay();
+                }
+                return new Task(0, description.getText(), 0, priority.getSelectedIndex(), due, rule);
+            }
+        }
+
+        // Ask for a name, make the empty list and switch to it
+        private void createList() {
+            String name = JOptionPane.showInputDialog(frame, "Name of the new list:");
+            if (name == null || name.trim().isEmpty()) {
+                return;
+            }
+            name = name.trim();
+            try {
+                lists.create(name);
+            } catch (IOException e) {
+                System.out.println("Error creating list: " + e.getMessage());
+                JOptionPane.showMessageDialog(frame, "Could not create the list: " + e.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
+                return;
+            }
+            listNamesModel.clear();
+            listNamesModel.addAll(lists.names());
+            listNames.setSelectedValue(name, true);
+        }
+
+        // Import a CSV or JSON file into the shown list. The file is read on a worker thread and
+        // each batch is added on the Event Dispatch Thread while the worker waits, so no more than
+        // one batch is held at a time.
+        private void importTasks(ToDoListApp app) {
+            JFileChooser chooser = new JFileChooser();
+            if (chooser.showOpenDialog(frame) != JFileChooser.APPROVE_OPTION) {
+                return;
+            }
+            Path file = chooser.getSelectedFile().toPath();
+            TransferProgress progress = new TransferProgress("Importing " + file.getFileName());
+            new SwingWorker<Long, Void>() {
+                @Override
+                protected Long doInBackground() throws IOException {
+                    return TaskTransfer.importFile(file, (tasks, completedTasks) -> {
+                        try {
+                            SwingUtilities.invokeAndWait(() -> app.importTasks(tasks, completedTasks));
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                            throw new InterruptedIOException("Import interrupted");
+                        } catch (InvocationTargetException e) {
+                            throw new IOException(e.getCause().getMessage(), e.getCause());
+                        }
+                    }, progress);
+                }
+
+                @Override
+                protected void done() {
+                    progress.close();
+                    try {
+                        long imported = get();
+                        statusLabel.setText(imported < 0 ? "Import cancelled" : "Imported " + imported + " tasks");
+                    } catch (Exception e) {
+                        Throwable cause = e.getCause() != null ? e.getCause() : e;
+                        System.out.println("Error importing tasks: " + cause.getMessage());
+                        JOptionPane.showMessageDialog(frame, "Could not import " + file.getFileName() + ": " + cause.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
+                    }
+                }
+            }.execute();
+        }
+
+        // Write both lists of the shown list to a CSV or JSON file, from a snapshot, on a worker
+        // thread
+        private void exportTasks(ToDoListApp app) {
+            JFileChooser chooser = new JFileChooser();
+            chooser.setSelectedFile(new File("tasks.csv"));
+            if (chooser.showSaveDialog(frame) != JFileChooser.APPROVE_OPTION) {
+                return;
+            }
+            Path file = chooser.getSelectedFile().toPath();
+            ListsSnapshot snapshot = app.snapshot();
+            TransferProgress progress = new TransferProgress("Exporting to " + file.getFileName());
+            new SwingWorker<Long, Void>() {
+                @Override
+                protected Long doInBackground() throws IOException {
+                    return TaskTransfer.export(snapshot, file, progress);
+                }
+
+                @Override
+                protected void done() {
+                    progress.close();
+                    try {
+                        long exported = get();
+                        statusLabel.setText(exported < 0 ? "Export cancelled" : "Exported " + exported + " tasks");
+                    } catch (Exception e) {
+                        Throwable cause = e.getCause() != null ? e.getCause() : e;
+                        System.out.println("Error exporting tasks: " + cause.getMessage());
+                        JOptionPane.showMessageDialog(frame, "Could not export to " + file.getFileName() + ": " + cause.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
+                    }
+                }
+            }.execute();
+        }
+
+        // Lines of a comparison shown at most, so comparing distant versions of a long list
+        // stays quick to show
+        private static final int MAX_HISTORY_LINES = 2_000;
+        private static final DateTimeFormatter VERSION_TIME = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+        // Browse the shown list's past versions, newest first. Selecting one shows what changed
+        // in it since the version before; selecting two shows what changed between them. The
+        // history is read on worker threads, since it waits for a version being recorded.
+        private void showHistory(ToDoListApp app) {
+            TaskHistory history = app.history();
+            JDialog dialog = new JDialog(frame, "History", true);
+            DefaultListModel<TaskHistory.Version> versionsModel = new DefaultListModel<>();
+            JList<TaskHistory.Version> versions = new JList<>(versionsModel);
+            versions.setCellRenderer(new DefaultListCellRenderer() {
+                @Override
+                public Component getListCellRendererComponent(JList<?> list, Object value, int index, boolean isSelected, boolean cellHasFocus) {
+                    TaskHistory.Version version = (TaskHistory.Version) value;
+                    String text = version.number + "   "
+                            + VERSION_TIME.format(LocalDateTime.ofInstant(Instant.ofEpochMilli(version.time), ZoneId.systemDefault()))
+                            + "   " + version.taskCount() + " tasks, " + version.completedTaskCount() + " completed";
+                    return super.getListCellRendererComponent(list, text, index, isSelected, cellHasFocus);
+                }
+            });
+            JTextArea changes = new JTextArea(20, 60);
+            changes.setEditable(false);
+            changes.setFont(new Font(Font.MONOSPACED, Font.PLAIN, 12));
+            changes.setText("Loading versions...");
+            JButton restoreButton = new JButton("Restore");
+            restoreButton.setEnabled(false);
+            JButton closeButton = new JButton("Close");
+            closeButton.addActionListener(e -> dialog.dispose());
+
+            // The comparison being worked out, replaced when the selection changes
+            ArrayList<SwingWorker<String, Void>> comparing = new ArrayList<>();
+            versions.addListSelectionListener(e -> {
+                if (e.getValueIsAdjusting()) {
+                    return;
+                }
+                List<TaskHistory.Version> selected = versions.getSelectedValuesList();
+                restoreButton.setEnabled(selected.size() == 1);
+                for (SwingWorker<String, Void> worker : comparing) {
+                    worker.cancel(false);
+                }
+                comparing.clear();
+                if (selected.isEmpty() || selected.size() > 2) {
+                    changes.setText(selected.isEmpty() ? "" : "Select one version, or two to compare.");
+                    return;
+                }
+                // Shown newest first, so the last selected is the older
+                TaskHistory.Version to = selected.get(0);
+                TaskHistory.Version from = selected.size() == 2 ? selected.get(1)
+                        : versions.getSelectedIndex() + 1 < versionsModel.size() ? versionsModel.get(versions.getSelectedIndex() + 1) : null;
+                changes.setText("Comparing...");
+                SwingWorker<String, Void> worker = new SwingWorker<String, Void>() {
+                    @Override
+                    protected String doInBackground() throws IOException {
+                        return describeChanges(history, from, to);
+                    }
+
+                    @Override
+                    protected void done() {
+                        if (isCancelled()) {
+                            return;
+                        }
+                        try {
+                            changes.setText(get());
+                            changes.setCaretPosition(0);
+                        } catch (Exception e) {
+                            Throwable cause = e.getCause() != null ? e.getCause() : e;
+                            System.out.println("Error reading history: " + cause.getMessage());
+                            changes.setText("Could not read the history: " + cause.getMessage());
+                        }
+                    }
+                };
+                comparing.add(worker);
+                worker.execute();
+            });
+
+            restoreButton.addActionListener(e -> {
+                TaskHistory.Version version = versions.getSelectedValue();
+                if (version == null || JOptionPane.showConfirmDialog(dialog, "Restore the list to version " + version.number
+                        + "? The list as it is now is kept as a version first.", "Restore", JOptionPane.OK_CANCEL_OPTION) != JOptionPane.OK_OPTION) {
+                    return;
+                }
+                restoreButton.setEnabled(false);
+                closeButton.setEnabled(false);
+                changes.setText("Restoring...");
+                new SwingWorker<Boolean, Void>() {
+                    @Override
+                    protected Boolean doInBackground() throws IOException {
+                        return app.restoreVersion(version);
+                    }
+
+                    @Override
+                    protected void done() {
+                        closeButton.setEnabled(true);
+                        try {
+                            if (get()) {
+                                statusLabel.setText("Restored version " + version.number);
+                                dialog.dispose();
+                                return;
+                            }
+                            changes.setText("The list changed while restoring, so nothing was restored. Try again.");
+                        } catch (Exception e) {
+                            Throwable cause = e.getCause() != null ? e.getCause() : e;
+                            System.out.println("Error restoring version: " + cause.getMessage());
+                            JOptionPane.showMessageDialog(dialog, "Could not restore version " + version.number + ": " + cause.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
+                        }
+                        restoreButton.setEnabled(versions.getSelectedValuesList().size() == 1);
+                    }
+                }.execute();
+            });
+
+            new SwingWorker<List<TaskHistory.Version>, Void>() {
+                @Override
+                protected List<TaskHistory.Version> doInBackground() {
+                    return history.versions();
+                }
+
+                @Override
+                protected void done() {
+                    try {
+                        List<TaskHistory.Version> all = get();
+                        for (int i = all.size() - 1; i >= 0; i--) {
+                            versionsModel.addElement(all.get(i));
+                        }
+                        changes.setText(all.isEmpty() ? "No versions recorded yet." : "");
+                    } catch (Exception e) {
+                        Throwable cause = e.getCause() != null ? e.getCause() : e;
+                        changes.setText("Could not read the history: " + cause.getMessage());
+                    }
+                }
+            }.execute();
+
+            JPanel buttons = new JPanel(new FlowLayout(FlowLayout.RIGHT));
+            buttons.add(restoreButton);
+            buttons.add(closeButton);
+            JSplitPane split = new JSplitPane(JSplitPane.VERTICAL_SPLIT, new JScrollPane(versions), new JScrollPane(changes));
+            split.setResizeWeight(0.4);
+            dialog.getContentPane().add(split, BorderLayout.CENTER);
+            dialog.getContentPane().add(buttons, BorderLayout.SOUTH);
+            dialog.setSize(640, 560);
+            dialog.setLocationRelativeTo(frame);
+            dialog.setVisible(true);
+        }
+
+        // What changed from one version to another as "-" and "+" lines under the position in
+        // each list, or the whole of the first version when there is none before it
+        private static String describeChanges(TaskHistory history, TaskHistory.Version from, TaskHistory.Version to) throws IOException {
+            StringBuilder text = new StringBuilder();
+            int[] shown = new int[1];
+            for (boolean completed : new boolean[] { false, true }) {
+                String list = completed ? "Completed" : "Tasks";
+                if (from == null) {
+                    List<String> lines = history.lines(to, completed);
+                    text.append(list).append(": ").append(lines.size()).append(" in the first version\n");
+                    for (String line : lines) {
+                        if (!appendLine(text, "+ ", line, shown)) {
+                            return text.toString();
+                        }
+                    }
+                    continue;
+                }
+                for (TaskHistory.Change change : history.diff(from, to, completed)) {
+                    text.append(list).append(", line ").append(change.toIndex + 1).append(":\n");
+                    for (String line : change.removed) {
+                        if (!appendLine(text, "- ", line, shown)) {
+                            return text.toString();
+                        }
+                    }
+                    for (String line : change.added) {
+                        if (!appendLine(text, "+ ", line, shown)) {
+                            return text.toString();
+                        }
+                    }
+                }
+            }
+            return text.length() == 0 ? "No changes." : text.toString();
+        }
+
+        private static boolean appendLine(StringBuilder text, String prefix, String line, int[] shown) {
+            if (shown[0]++ == MAX_HISTORY_LINES) {
+                text.append("... and more\n");
+                return false;
+            }
+            text.append(prefix).append(line).append('\n');
+            return true;
+        }
+
+        // An import's or export's progress, shown in a dialog with a Cancel button. The worker
+        // reports after each batch and stops at the next one once Cancel has been pressed.
+        private final class TransferProgress implements TaskTransfer.Progress {
+            private final ProgressMonitor monitor;
+            private volatile boolean cancelled;
+
+            TransferProgress(String message) {
+                monitor = new ProgressMonitor(frame, message, null, 0, 1000);
+                monitor.setMillisToDecideToPopup(200);
+            }
+
+            @Override
+            public void progress(long done, long total) {
+                int permille = total == 0 ? 1000 : (int) (done * 1000 / total);
+                SwingUtilities.invokeLater(() -> {
+                    if (monitor.isCanceled()) {
+                        cancelled = true;
+                    } else {
+                        monitor.setProgress(permille);
+                    }
+                });
+            }
+
+            @Override
+            public boolean isCancelled() {
+                return cancelled;
+            }
+
+            void close() {
+                monitor.close();
+            }
+        }
+
+        @Override
+        public void showSaving() {
+            statusLabel.setText("Saving...");
+        }
+
+        @Override
+        public void showExternalChanges(String fileName, int applied, int conflicts) {
+            statusLabel.setText("Merged " + applied + " outside " + (applied == 1 ? "change" : "changes") + " to " + fileName);
+            if (conflicts > 0) {
+                JOptionPane.showMessageDialog(frame, conflicts + (conflicts == 1 ? " task was" : " tasks were")
+                        + " changed both here and in " + fileName + ". Both versions have been kept.",
+                        "Conflicting Changes", JOptionPane.WARNING_MESSAGE);
+            }
+        }
+
+        // Hover fades of all buttons share one animation clock
+        private void animateButtonColor(JButton button, Color startColor, Color endColor) {
+            buttonAnimator.animate(button, startColor, endColor);
+        }
+
+        // Show the list picked in the combo box, filtered by the search box if it has any words.
+        // Every view follows its stores through its list model, so after a mutation there is
+        // nothing left to do unless a search is shown, which is run again. Searches run on a
+        // worker thread; the rows shown stay until the newest one's result comes back.
+        @Override
+        public void updateTaskList() {
+            long start = Metrics.start();
+            ListModel<Task> model = taskListModel;
+            TaskStore tasks = app != null ? app.tasks : loadingTasks;
+            TaskStore completedTasks = app != null ? app.completedTasks : new TaskStore();
+            TaskStore[] stores = {};
+            if (taskTypeComboBox.getSelectedItem().equals("Uncompleted Tasks")) {
+                model = incompleteTaskListModel;
+                stores = new TaskStore[] { tasks };
+                taskType = TaskType.INCOMPLETE;
+            } else if (taskTypeComboBox.getSelectedItem().equals("Completed Tasks")) {
+                model = completedTaskListModel;
+                stores = new TaskStore[] { completedTasks };
+                taskType = TaskType.COMPLETED;
+            } else if (taskTypeComboBox.getSelectedItem().equals("All Tasks")) {
+                model = allTaskListModel;
+                stores = new TaskStore[] { tasks, completedTasks };
+                taskType = TaskType.ALL;
+            } else if (taskTypeComboBox.getSelectedItem().equals("Sorted Tasks")) {
+                if (sortedTaskListModel == null) {
+                    sortedTaskListModel = new SortedTaskListModel(tasks, Task.PRIORITY_ORDER);
+                }
+                model = sortedTaskListModel;
+                stores = new TaskStore[] { tasks };
+                taskType = TaskType.SORTED;
+            }
+            if (app != null) {
+                app.taskType = taskType;
+            }
+
+            int generation = ++searchGeneration;
+            String query = searchField.getText();
+            if (app != null && !SearchIndex.words(query).isEmpty()) {
+                search(app, query, stores, model, generation);
+            } else {
+                filteredTaskListModel.stop();
+                showModel(model);
+            }
+            Metrics.record(Metrics.Op.REFRESH, start);
+        }
+
+        private void showModel(ListModel<Task> model) {
+            if (model != taskListModel) {
+                taskListModel = model;
+                taskList.setModel(model);
+            }
+        }
+
+        // Search the shard on a worker and show the result, or the whole list if the shard is not
+        // indexed yet, unless the shard was switched or a newer search started by then. A search
+        // still waiting for a worker when a newer one is started is skipped.
+        private void search(ToDoListApp shard, String query, TaskStore[] stores, ListModel<Task> model, int generation) {
+            new SwingWorker<SearchIndex.Result, Void>() {
+                @Override
+                protected SearchIndex.Result doInBackground() {
+                    return generation == searchGeneration ? shard.search(query) : null;
+                }
+
+                @Override
+                protected void done() {
+                    if (generation != searchGeneration || app != shard) {
+                        return;
+                    }
+                    try {
+                        SearchIndex.Result result = get();
+                        if (result != null) {
+                            filteredTaskListModel.show(stores, result);
+                            showModel(filteredTaskListModel);
+                        } else {
+                            filteredTaskListModel.stop();
+                            showModel(model);
+                        }
+                    } catch (Exception e) {
+                        System.out.println("Error searching tasks: " + e.getMessage());
+                    }
+                }
+            }.execute();
+        }
+
+        @Override
+        public void actionPerformed(ActionEvent e) {
+            ToDoListApp app = this.app;
+            if (e.getSource() == newListButton) {
+                createList();
+                return;
+            } else if (app == null) {
+                return;
+            }
+
+            if (e.getSource() == importButton) {
+                importTasks(app);
+            } else if (e.getSource() == exportButton) {
+                exportTasks(app);
+            } else if (e.getSource() == historyButton) {
+                showHistory(app);
+            } else if (e.getSource() == taskTypeComboBox) {
+                updateTaskList();
+            } else if (e.getSource() == addButton) {
+                if (taskType == TaskType.COMPLETED) {
+                    JOptionPane.showMessageDialog(frame, "You can only add tasks to the Uncompleted Tasks list.", "Error", JOptionPane.ERROR_MESSAGE);
+                    return;
+                }
+
+                Task task = showTaskDialog("Add Task", null);
+                if (task != null) {
+                    app.addTask(task.getDescription(), task.getPriority(), task.getDueDate(), task.getRecurrence(), taskType);
+                }
+            }
+
+            if (e.getSource() == deleteButton) {
+                List<Task> selectedTasks = taskList.getSelectedValuesList();
+                app.batch(() -> selectedTasks.forEach(app::removeTask));
+            } else if (e.getSource() == editButton) {
+                int selectedIndex = taskList.getSelectedIndex();
+                if (selectedIndex != -1) {
+                    Task selectedTask = taskListModel.getElementAt(selectedIndex);
+                    Task editedTask = showTaskDialog("Edit Task", selectedTask);
+                    if (editedTask != null) {
+                        app.editTask(selectedTask, editedTask.getDescription(), editedTask.getPriority(), editedTask.getDueDate(),
+                                editedTask.getRecurrence(), taskType);
+                    }
+                }
+            } else if (e.getSource() == completeButton) {
+                List<Task> selectedTasks = taskList.getSelectedValuesList();
+
+                if (taskType == TaskType.COMPLETED) {
+                    JOptionPane.showMessageDialog(frame, "You can only add uncomplete tasks from the Completed Tasks list.", "Error", JOptionPane.ERROR_MESSAGE);
+                    return;
+                }
+
+                app.batch(() -> selectedTasks.forEach(app::completeTask));
+            } else if (e.getSource() == unCompleteButton) {
+                List<Task> selectedTasks = taskList.getSelectedValuesList();
+
+                if (taskType == TaskType.INCOMPLETE || taskType == TaskType.SORTED) {
+                    JOptionPane.showMessageDialog(frame, "You can only complete tasks from the Uncompleted Tasks list.", "Error", JOptionPane.ERROR_MESSAGE);
+                    return;
+                }
+
+                app.batch(() -> selectedTasks.forEach(app::unCompleteTask));
+            } else if (e.getSource() == moveUpButton) {
+                moveSelectedTasks(-1, false);
+            } else if (e.getSource() == moveDownButton) {
+                moveSelectedTasks(1, false);
+            } else if (e.getSource() == moveToTopButton) {
+                moveSelectedTasks(-1, true);
+            } else if (e.getSource() == moveToBottomButton) {
+                moveSelectedTasks(1, true);
+            }
+        }
+
+        // Move the selected tasks and keep them selected where they ended up
+        private void moveSelectedTasks(int offset, boolean toEnd) {
+            List<Task> selectedTasks = taskList.getSelectedValuesList();
+            if (selectedTasks.isEmpty()) {
+                return;
+            }
+            if (taskType == TaskType.SORTED) {
+                JOptionPane.showMessageDialog(frame, "The Sorted Tasks list is ordered by priority and due date.", "Error", JOptionPane.ERROR_MESSAGE);
+                return;
+            }
+            app.moveTasks(selectedTasks, offset, toEnd);
+
+            TaskStore store = app.storeFor(taskType);
+            if (store != null && taskListModel instanceof TaskListModel) {
+                int[] indices = new int[selectedTasks.size()];
+                for (int i = 0; i < indices.length; i++) {
+                    indices[i] = store.indexOf(selectedTasks.get(i).getId());
+                }
+                taskList.setSelectedIndices(indices);
+            }
+        }
+    }
+
+    // Where a lazily loaded task reads its description from
+    interface DescriptionSource {
+        String description(int index);
+    }
+
+    // A task as stored in the lists. Tasks are immutable; an edit produces a new version with the
+    // same ID, so an ID keeps identifying the same task even when descriptions repeat.
+    public static class Task {
+        static final int NO_PRIORITY = 0;
+        static final int LOW = 1;
+        static final int MEDIUM = 2;
+        static final int HIGH = 3;
+        // Due dates are days since 1970-01-01; tasks without one sort after all that have one
+        static final long NO_DUE_DATE = Long.MAX_VALUE;
+        // Recurrence rules are made by Recurrence; a task with one and a due date repeats from
+        // that date on
+        static final int NO_RECURRENCE = 0;
+
+        // Highest priority first, then earliest due date, then oldest task
+        static final Comparator<Task> PRIORITY_ORDER = (a, b) -> {
+            if (a.priority != b.priority) {
+                return Integer.compare(b.priority, a.priority);
+            } else if (a.dueDate != b.dueDate) {
+                return Long.compare(a.dueDate, b.dueDate);
+            }
+            return Long.compare(a.id, b.id);
+        };
+
+        private static final String DUE_PREFIX = " due:";
+        private static final int DUE_SUFFIX_LENGTH = DUE_PREFIX.length() + 10;
+        static final String RECURRENCE_PREFIX = " rec:";
+        private static final char ESCAPE = '\\';
+
+        private final long id;
+        private final String description;
+        private final DescriptionSource source;
+        private final int sourceIndex;
+        private final long createdAt;
+        private final int priority;
+        private final long dueDate;
+        private final int recurrence;
+
+        // A creation time of 0 means unknown, as for tasks imported from the text files
+        public Task(long id, String description) {
+            this(id, description, 0);
+        }
+
+        public Task(long id, String description, long createdAt) {
+            this(id, description, createdAt, NO_PRIORITY, NO_DUE_DATE);
+        }
+
+        public Task(long id, String description, long createdAt, int priority, long dueDate) {
+            this(id, description, createdAt, priority, dueDate, NO_RECURRENCE);
+        }
+
+        public Task(long id, String description, long createdAt, int priority, long dueDate, int recurrence) {
+            this.id = id;
+            this.description = description;
+            this.source = null;
+            this.sourceIndex = 0;
+            this.createdAt = createdAt;
+            this.priority = priority;
+            this.dueDate = dueDate;
+            this.recurrence = recurrence;
+        }
+
+        // A task whose description is decoded from the source each time it is asked for
+        public Task(long id, DescriptionSource source, int sourceIndex, long createdAt) {
+            this(id, source, sourceIndex, createdAt, NO_PRIORITY, NO_DUE_DATE);
+        }
+
+        public Task(long id, DescriptionSource source, int sourceIndex, long createdAt, int priority, long dueDate) {
+            this(id, source, sourceIndex, createdAt, priority, dueDate, NO_RECURRENCE);
+        }
+
+        public Task(long id, DescriptionSource source, int sourceIndex, long createdAt, int priority, long dueDate, int recurrence) {
+            this.id = id;
+            this.description = null;
+            this.source = source;
+            this.sourceIndex = sourceIndex;
+            this.createdAt = createdAt;
+            this.priority = priority;
+            this.dueDate = dueDate;
+            this.recurrence = recurrence;
+        }
+
+        public long getId() {
+            return id;
+        }
+
+        public long getCreatedAt() {
+            return createdAt;
+        }
+
+        public String getDescription() {
+            return description != null ? description : source.description(sourceIndex);
+        }
+
+        public int getPriority() {
+            return priority;
+        }
+
+        public long getDueDate() {
+            return dueDate;
+        }
+
+        public int getRecurrence() {
+            return recurrence;
+        }
+
+        // Whether the task repeats: it has a rule and a date to repeat from
+        public boolean isRecurring() {
+            return recurrence != NO_RECURRENCE && dueDate != NO_DUE_DATE;
+        }
+
+        public Task withDescription(String description) {
+            return new Task(id, description, createdAt, priority, dueDate, recurrence);
+        }
+
+        public Task with(String description, int priority, long dueDate, int recurrence) {
+            return new Task(id, description, createdAt, priority, dueDate, recurrence);
+        }
+
+        // Keeps a description read from a source where it is
+        public Task withDueDate(long dueDate) {
+            return description != null ? new Task(id, description, createdAt, priority, dueDate, recurrence)
+                    : new Task(id, source, sourceIndex, createdAt, priority, dueDate, recurrence);
+        }
+
+        // The task as a line of a text file, marked up the way todo.txt does it: "(A) " in front
+        // for high priority, "(B) " for medium and "(C) " for low, then " due:YYYY-MM-DD" and
+        // " rec:1w" (see Recurrence) at the end.
+        //
+        // A description that would be read back as markup is escaped with a backslash: one in
+        // front of a description starting like a priority, and one after a description ending
+        // like a due date or recurrence. A description starting or ending with a backslash gets one there too,
+        // so every description reads back as it was written. Line breaks are written as "\n" and
+        // "\r" (see escapeLineBreaks) so a task stays on one line.
+        public String toLine() {
+            String description = escapeLineBreaks(getDescription());
+            boolean escapeStart = priority == NO_PRIORITY && startsLikeMarkup(description);
+            boolean escapeEnd = endsLikeMarkup(description);
+            if (priority == NO_PRIORITY && dueDate == NO_DUE_DATE && recurrence == NO_RECURRENCE && !escapeStart && !escapeEnd) {
+                return description;
+            }
+            StringBuilder line = new StringBuilder();
+            if (priority != NO_PRIORITY) {
+                line.append('(').append(priorityLetter(priority)).append(") ");
+            } else if (escapeStart) {
+                line.append(ESCAPE);
+            }
+            line.append(description);
+            if (escapeEnd) {
+                line.append(ESCAPE);
+            }
+            if (dueDate != NO_DUE_DATE) {
+                line.append(DUE_PREFIX).append(LocalDate.ofEpochDay(dueDate));
+            }
+            if (recurrence != NO_RECURRENCE) {
+                line.append(RECURRENCE_PREFIX).append(Recurrence.format(recurrence));
+            }
+            return line.toString();
+        }
+
+        // Read a line written by toLine. A line without the markup is all description.
+        public static Task fromLine(long id, String line) {
+            LineParts parts = parse(line);
+            if (parts.descriptionStart == 0 && parts.descriptionEnd == line.length()) {
+                return new Task(id, unescapeLineBreaks(line));
+            }
+            return new Task(id, unescapeLineBreaks(line.substring(parts.descriptionStart, parts.descriptionEnd)), 0, parts.priority,
+                    parts.dueDate, parts.recurrence);
+        }
+
+        // A line break is written as a backslash and n or r. Backslashes right before an n or r,
+        // or before a line break, are doubled so they read back as backslashes; all others are
+        // written as they are, as they were before line breaks were escaped.
+        static String escapeLineBreaks(String description) {
+            int i = 0;
+            int length = description.length();
+            while (i < length && description.charAt(i) != ESCAPE && description.charAt(i) != '\n' && description.charAt(i) != '\r') {
+                i++;
+            }
+            if (i == length) {
+                return description;
+            }
+            StringBuilder escaped = new StringBuilder(length + 8).append(description, 0, i);
+            while (i < length) {
+                char c = description.charAt(i);
+                if (c == ESCAPE) {
+                    int run = i;
+                    while (run < length && description.charAt(run) == ESCAPE) {
+                        run++;
+                    }
+                    int backslashes = run - i;
+                    if (run < length && isLineBreakEscape(description.charAt(run))) {
+                        backslashes *= 2;
+                    }
+                    appendEscapes(escaped, backslashes);
+                    i = run;
+                } else {
+                    if (c == '\n') {
+                        escaped.append(ESCAPE).append('n');
+                    } else if (c == '\r') {
+                        escaped.append(ESCAPE).append('r');
+                    } else {
+                        escaped.append(c);
+                    }
+                    i++;
+                }
+            }
+            return escaped.toString();
+        }
+
+        // Undo escapeLineBreaks: of a run of backslashes before an n or r, every second one is
+        // kept, and an odd one left over makes the n or r a line break
+        static String unescapeLineBreaks(String text) {
+            int i = text.indexOf(ESCAPE);
+            if (i < 0) {
+                return text;
+            }
+            int length = text.length();
+            StringBuilder description = new StringBuilder(length).append(text, 0, i);
+            while (i < length) {
+                char c = text.charAt(i);
+                if (c != ESCAPE) {
+                    description.append(c);
+                    i++;
+                    continue;
+                }
+                int run = i;
+                while (run < length && text.charAt(run) == ESCAPE) {
+                    run++;
+                }
+                int backslashes = run - i;
+                if (run < length && (text.charAt(run) == 'n' || text.charAt(run) == 'r')) {
+                    char letter = text.charAt(run);
+                    appendEscapes(description, backslashes / 2);
+                    description.append(backslashes % 2 == 0 ? letter : letter == 'n' ? '\n' : '\r');
+                    i = run + 1;
+                } else {
+                    appendEscapes(description, backslashes);
+                    i = run;
+                }
+            }
+            return description.toString();
+        }
+
+        private static void appendEscapes(StringBuilder text, int count) {
+            for (int i = 0; i < count; i++) {
+                text.append(ESCAPE);
+            }
+        }
+
+        private static boolean isLineBreakEscape(char c) {
+            return c == 'n' || c == 'r' || c == '\n' || c == '\r';
+        }
+
+        // Where the description of a line is and what its markup says
+        static final class LineParts {
+            int descriptionStart;
+            int descriptionEnd;
+            int priority;
+            long dueDate;
+            int recurrence;
+        }
+
+        // Split a line written by toLine into its description and markup. Takes any characters,
+        // so a mapped file can be parsed from its bytes as ISO-8859-1 without decoding it.
+        static LineParts parse(CharSequence line) {
+            LineParts parts = new LineParts();
+            int length = line.length();
+            parts.priority = length >= 4 ? linePriority(line.charAt(0), line.charAt(1), line.charAt(2), line.charAt(3)) : NO_PRIORITY;
+            int start = parts.priority != NO_PRIORITY ? 4 : length > 0 && line.charAt(0) == ESCAPE ? 1 : 0;
+            int end = length;
+            parts.dueDate = NO_DUE_DATE;
+            parts.recurrence = NO_RECURRENCE;
+            // The suffixes are read from the end until an escape says the description ends there
+            if (!isEscapeAt(line, start, end)) {
+                int recurrenceStart = recurrenceSuffixStart(line, start);
+                if (recurrenceStart >= 0) {
+                    parts.recurrence = Recurrence.parse(line.subSequence(recurrenceStart + RECURRENCE_PREFIX.length(), end).toString());
+                    end = recurrenceStart;
+                }
+                if (!isEscapeAt(line, start, end)) {
+                    int dueStart = dueSuffixStart(line, start, end);
+                    if (dueStart >= 0) {
+                        parts.dueDate = parseDueDate(line.subSequence(end - 10, end).toString());
+                        end = dueStart;
+                    }
+                }
+            }
+            if (isEscapeAt(line, start, end)) {
+                end--;
+            }
+            parts.descriptionStart = start;
+            parts.descriptionEnd = end;
+            return parts;
+        }
+
+        private static boolean isEscapeAt(CharSequence line, int start, int end) {
+            return end > start && line.charAt(end - 1) == ESCAPE;
+        }
+
+        // Whether a description without a priority needs an escape in front
+        private static boolean startsLikeMarkup(String description) {
+            if (description.isEmpty()) {
+                return false;
+            }
+            // "(A)" alone too, as the space of a due date or recurrence after it would complete it
+            return description.charAt(0) == ESCAPE || (description.length() >= 3 && linePriority(description.charAt(0),
+                    description.charAt(1), description.charAt(2), description.length() > 3 ? description.charAt(3) : ' ') != NO_PRIORITY);
+        }
+
+        // Whether a description needs an escape after it
+        private static boolean endsLikeMarkup(String description) {
+            if (description.isEmpty()) {
+                return false;
+            }
+            return description.charAt(description.length() - 1) == ESCAPE || dueSuffixStart(description, 0, description.length()) >= 0
+                    || recurrenceSuffixStart(description, 0) >= 0;
+        }
+
+        // Where a valid " due:" suffix ending at end starts, at or after from, or -1 if there is none
+        static int dueSuffixStart(CharSequence text, int from, int end) {
+            int start = end - DUE_SUFFIX_LENGTH;
+            if (start < from) {
+                return -1;
+            }
+            for (int i = 0; i < DUE_PREFIX.length(); i++) {
+                if (text.charAt(start + i) != DUE_PREFIX.charAt(i)) {
+                    return -1;
+                }
+            }
+            return parseDueDate(text.subSequence(end - 10, end).toString()) != NO_DUE_DATE ? start : -1;
+        }
+
+        // Where a valid " rec:" suffix starts in the text, at or after from, or -1 if there is none
+        static int recurrenceSuffixStart(CharSequence text, int from) {
+            int length = text.length();
+            for (int suffix = 2; suffix <= 4; suffix++) {
+                int start = length - RECURRENCE_PREFIX.length() - suffix;
+                if (start < from) {
+                    return -1;
+                }
+                boolean prefix = true;
+                for (int i = 0; i < RECURRENCE_PREFIX.length() && prefix; i++) {
+                    prefix = text.charAt(start + i) == RECURRENCE_PREFIX.charAt(i);
+                }
+                if (prefix) {
+                    return Recurrence.parse(text.subSequence(length - suffix, length).toString()) != NO_RECURRENCE ? start : -1;
+                }
+            }
+            return -1;
+        }
+
+        // The priority marked by the first four characters of a line, if they are "(A) ",
+        // "(B) " or "(C) "
+        static int linePriority(int open, int letter, int close, int space) {
+            if (open != '(' || close != ')' || space != ' ') {
+                return NO_PRIORITY;
+            }
+            return switch (letter) {
+                case 'A' -> HIGH;
+                case 'B' -> MEDIUM;
+                case 'C' -> LOW;
+                default -> NO_PRIORITY;
+            };
+        }
+
+        static char priorityLetter(int priority) {
+            return (char) ('A' + HIGH - priority);
+        }
+
+        // Days since 1970-01-01 for YYYY-MM-DD, or NO_DUE_DATE if it is not a valid date
+        static long parseDueDate(String text) {
+            try {
+                return LocalDate.parse(text).toEpochDay();
+            } catch (DateTimeParseException e) {
+                return NO_DUE_DATE;
+            }
+        }
+
+        // The line format, since list rows show the task as it is saved
+        @Override
+        public String toString() {
+            return toLine();
+        }
+    }
+
+    // Usage: ToDoListApp [--journal] [--fsync=always|interval|never] [--binary] [--db=jdbc-url]
+    //                   [--serve[=port]] [--lists=directory] [--max-open-lists=n] [--metrics]
+    //                   [--import=file.csv|file.json] [--export=file.csv|file.json]
+    //                   [--fast-start] [--startup-timing] [--history]
+    // --db keeps every list in one database, such as jdbc:sqlite:tasks.db, instead of in files;
+    // its JDBC driver must be on the class path.
+    // With --serve there is no window; the default list is served over HTTP by TaskServer
+    // instead. The window shows every list in the directory (the current one by default) and
+    // keeps up to n of them in memory. --metrics records operation latencies from the start and
+    // publishes them over JMX; the window's diagnostics overlay (Ctrl+Shift+D) also turns them on.
+    // --import and --export copy the default list from or to a file, without a window, and exit.
+    // --fast-start keeps a binary snapshot of each text-mode list (NAME.snapshot) and loads from
+    // it while the text files are unchanged. --startup-timing prints when the window, the first
+    // page and the whole list appeared, then exits; without a display it times the load alone.
+    // --history keeps a history of each list's past versions (NAME.txt.history and
+    // .history.chunks), browsed and restored from the History dialog. Recording one hashes the
+    // whole list, about 0.2 s per million tasks on the persistence thread, after loading and at
+    // most every 30 s while it changes; each version adds about 12 KB per change on disk, and
+    // nothing is pruned.
+    // Class data sharing cuts JVM startup further. Record an archive once by running from a jar:
+    //   java -XX:ArchiveClassesAtExit=todo.jsa -cp todo.jar ToDoListApp --startup-timing
+    // and then start with java -XX:SharedArchiveFile=todo.jsa -cp todo.jar ToDoListApp.
+    public static void main(String[] args) {
+        boolean journaled = false;
+        boolean binary = false;
+        String databaseUrl = null;
+        Path importFile = null;
+        Path exportFile = null;
+        boolean fastStart = false;
+        boolean keepHistory = false;
+        int servePort = -1;
+        Path directory = Paths.get(".");
+        int maxOpenLists = 8;
+        TaskJournal.FsyncPolicy fsyncPolicy = TaskJournal.FsyncPolicy.INTERVAL;
+        for (String arg : args) {
+            if (arg.startsWith("--lists=")) {
+                directory = Paths.get(arg.substring("--lists=".length()));
+            } else if (arg.startsWith("--max-open-lists=")) {
+                maxOpenLists = Integer.parseInt(arg.substring("--max-open-lists=".length()));
+            } else if (arg.equals("--journal")) {
+                journaled = true;
+            } else if (arg.equals("--binary")) {
+                binary = true;
+            } else if (arg.startsWith("--import=")) {
+                importFile = Paths.get(arg.substring("--import=".length()));
+            } else if (arg.startsWith("--export=")) {
+                exportFile = Paths.get(arg.substring("--export=".length()));
+            } else if (arg.startsWith("--db=")) {
+                databaseUrl = arg.substring("--db=".length());
+            } else if (arg.equals("--serve")) {
+                servePort = 8080;
+            } else if (arg.startsWith("--serve=")) {
+                servePort = Integer.parseInt(arg.substring("--serve=".length()));
+            } else if (arg.equals("--fast-start")) {
+                fastStart = true;
+            } else if (arg.equals("--history")) {
+                keepHistory = true;
+            } else if (arg.equals("--startup-timing")) {
+                startupTiming = true;
+            } else if (arg.equals("--metrics")) {
+                Metrics.enable();
+            } else if (arg.startsWith("--fsync=")) {
+                fsyncPolicy = TaskJournal.FsyncPolicy.valueOf(arg.substring("--fsync=".length()).toUpperCase());
+            }
+        }
+
+        Path listDirectory = directory;
+        TaskJournal.FsyncPolicy policy = fsyncPolicy;
+        boolean useJournal = journaled;
+        boolean useBinary = binary;
+        String useDatabase = databaseUrl;
+        boolean useStartupSnapshots = fastStart;
+        boolean useHistory = keepHistory;
+        Function<String, ToDoListApp> shards = name -> {
+            String tasksFileName = TaskLists.tasksFileName(listDirectory, name);
+            TaskRepository repository = useDatabase != null ? new JdbcTaskRepository(useDatabase, name)
+                    : useJournal ? new TaskJournal(tasksFileName, policy, 200, 10_000) : null;
+            ToDoListApp app = ToDoListApp.headless(tasksFileName, TaskLists.completedTasksFileName(listDirectory, name), repository,
+                    useBinary ? listDirectory.resolve(name + ".tdb").toString() : null);
+            if (useStartupSnapshots) {
+                app.useStartupSnapshot(listDirectory.resolve(name + ".snapshot").toString());
+            }
+            if (useHistory) {
+                app.useHistory(tasksFileName);
+            }
+            return app;
+        };
+        if (importFile != null || exportFile != null) {
+            transfer(shards.apply(TaskLists.DEFAULT_LIST), importFile, exportFile);
+            return;
+        }
+        if (servePort >= 0) {
+            serve(shards.apply(TaskLists.DEFAULT_LIST), servePort);
+            return;
+        }
+        TaskLists lists = new TaskLists(directory, shards, maxOpenLists);
+        if (startupTiming && GraphicsEnvironment.isHeadless()) {
+            try {
+                lists.open(TaskLists.DEFAULT_LIST, firstPage -> startupMilestone("first page"));
+                startupMilestone("loaded");
+            } catch (IOException e) {
+                System.out.println("Error loading tasks: " + e.getMessage());
+            }
+            lists.close();
+            return;
+        }
+        Runtime.getRuntime().addShutdownHook(new Thread(lists::close));
+        new GUI(lists).createAndShowGUI();
+    }
+
+    // Import and then export, reporting progress on standard output
+    private static void transfer(ToDoListApp app, Path importFile, Path exportFile) {
+        TaskTransfer.Progress progress = new TaskTransfer.Progress() {
+            private int lastPercent = -1;
+
+            @Override
+            public void progress(long done, long total) {
+                int percent = total == 0 ? 100 : (int) (done * 100 / total);
+                if (percent != lastPercent) {
+                    lastPercent = percent;
+                    System.out.print("\r" + percent + "%");
+                }
+            }
+
+            @Override
+            public boolean isCancelled() {
+                return false;
+            }
+        };
+        try {
+            app.loadNow();
+            if (importFile != null) {
+                long imported = TaskTransfer.importFile(importFile, app::importTasks, progress);
+                app.flush();
+                System.out.println("\rImported " + imported + " tasks from " + importFile);
+            }
+            if (exportFile != null) {
+                long exported = TaskTransfer.export(app.snapshot(), exportFile, progress);
+                System.out.println("\rExported " + exported + " tasks to " + exportFile);
+            }
+        } catch (IOException e) {
+            System.out.println("Error transferring tasks: " + e.getMessage());
+        } finally {
+            app.close();
+        }
+    }
+
+    private static void serve(ToDoListApp app, int port) {
+        try {
+            app.loadNow();
+            app.watchFiles();
+            TaskServer server = new TaskServer(app, new java.net.InetSocketAddress(port));
+            Runtime.getRuntime().addShutdownHook(new Thread(server::stop));
+            server.start();
+            System.out.println("Serving tasks on port " + server.getPort());
+        } catch (IOException e) {
+            System.out.println("Error starting task server: " + e.getMessage());
+            app.close();
+        }
+    }
+}